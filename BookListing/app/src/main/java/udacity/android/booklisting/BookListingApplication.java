@@ -0,0 +1,61 @@
+package udacity.android.booklisting;
+
+import android.app.Application;
+import android.content.ComponentCallbacks2;
+import android.util.Log;
+
+import udacity.android.booklisting.utility.BookDetails;
+import udacity.android.booklisting.utility.BookMemoryCache;
+import udacity.android.booklisting.utility.ImageLoader;
+import udacity.android.booklisting.utility.Metrics;
+import udacity.android.booklisting.utility.Startup;
+
+/**
+ * This is the Application for the app. It sizes the HTTP keep-alive pool,
+ * schedules the prefetch of frequent searches once the first screen is
+ * up, passes memory pressure callbacks on to the shared caches, and logs
+ * a snapshot of the search Metrics whenever the app leaves the foreground.
+ *
+ * @author Joseph Stewart
+ * @version 1.5
+ */
+public class BookListingApplication extends Application {
+
+    private static final String LOG_TAG = BookListingApplication.class.getSimpleName();
+
+    // Keep up to this many idle connections per host
+    private static final String MAX_CONNECTIONS = "5";
+
+    @Override
+    public void onCreate() {
+        Startup.processCreated();
+        super.onCreate();
+
+        // The pool of HttpURLConnection reads these system properties once, when
+        // the first connection is made. They apply to the whole process, so they
+        // are set here at startup rather than by a library class as it loads
+        System.setProperty("http.keepAlive", "true");
+        System.setProperty("http.maxConnections", MAX_CONNECTIONS);
+
+        // Scheduling the prefetch is not needed for the first frame
+        Startup.runWhenIdle(new Runnable() {
+            @Override
+            public void run() {
+                PrefetchJobService.schedule(BookListingApplication.this);
+            }
+        });
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        BookMemoryCache.trimMemory(level);
+        BookDetails.trimMemory(level);
+        ImageLoader.getInstance(this).trimMemory(level);
+
+        if(level == ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            Log.i(LOG_TAG, "Search metrics\n" + Metrics.snapshot());
+        }
+    }
+
+}
@@ -0,0 +1,185 @@
+package udacity.android.booklisting;
+
+import android.annotation.TargetApi;
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.AsyncTask;
+import android.os.Build;
+import android.util.Log;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import udacity.android.booklisting.display.SearchActivity;
+import udacity.android.booklisting.model.Book;
+import udacity.android.booklisting.model.BookQuery;
+import udacity.android.booklisting.utility.BookCache;
+import udacity.android.booklisting.utility.BookSearch;
+import udacity.android.booklisting.utility.FetchResult;
+import udacity.android.booklisting.utility.HttpClient;
+import udacity.android.booklisting.utility.ImageLoader;
+import udacity.android.booklisting.utility.QueryHistory;
+import udacity.android.booklisting.utility.RequestScheduler;
+
+/**
+ * This is a JobService that warms the caches for the searches the user
+ * is most likely to make again, so they start from warm data instead of
+ * the network. It runs while the device is charging on an unmetered
+ * network. For each of the top searches in the QueryHistory it fetches
+ * or revalidates the live results through the BookSearch, which stores
+ * them in the BookCache and the OfflineStore, then downloads their
+ * thumbnails into the ImageLoader's disk cache. A run stops once it has
+ * downloaded its byte budget. Its requests wait in the background lane
+ * of the RequestScheduler, behind any search the user makes meanwhile.
+ *
+ * @author Joseph Stewart
+ * @version 1.2
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class PrefetchJobService extends JobService {
+
+    private static final String LOG_TAG = PrefetchJobService.class.getSimpleName();
+
+    private static final int JOB_ID = 1;
+    private static final long PERIOD_MILLIS = TimeUnit.HOURS.toMillis(12);
+
+    // The searches warmed by a run and the most a run may download
+    private static final int MAX_QUERIES = 5;
+    private static final long BYTE_BUDGET = 2 * 1024 * 1024;
+
+    // The run in progress, only touched on the main thread
+    private Run run;
+
+    /**
+     * This method schedules the periodic prefetch unless it already is.
+     * Job scheduling needs Lollipop, so nothing is prefetched before it.
+     *
+     * @param context Any context of the application.
+     */
+    public static void schedule(Context context) {
+        if(Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return;
+        }
+
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+
+        // Scheduling the job again would restart its period
+        for(JobInfo pending : scheduler.getAllPendingJobs()) {
+            if(pending.getId() == JOB_ID) {
+                return;
+            }
+        }
+
+        JobInfo job = new JobInfo.Builder(JOB_ID, new ComponentName(context, PrefetchJobService.class))
+                .setRequiresCharging(true)
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED)
+                .setPeriodic(PERIOD_MILLIS)
+                .setPersisted(true)
+                .build();
+
+        if(scheduler.schedule(job) != JobScheduler.RESULT_SUCCESS) {
+            Log.e(LOG_TAG, "Unable to schedule the prefetch job");
+        }
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        run = new Run(params);
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(run);
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // The device was unplugged or left the unmetered network, try again later
+        if(run != null) {
+            run.stop();
+            run = null;
+        }
+        return true;
+    }
+
+    /**
+     * Inner class for one run of the job on a background thread.
+     */
+    private class Run implements Runnable {
+        private final JobParameters params;
+        private final HttpClient.Cancellation cancellation = new HttpClient.Cancellation();
+        private volatile boolean stopped;
+        private long remainingBytes = BYTE_BUDGET;
+
+        Run(JobParameters params) {
+            this.params = params;
+        }
+
+        void stop() {
+            stopped = true;
+            cancellation.cancel();
+        }
+
+        @Override
+        public void run() {
+            List<String> queries = QueryHistory.getInstance(getFilesDir()).top(MAX_QUERIES);
+            try {
+                for(String query : queries) {
+                    if(!prefetch(query)) {
+                        break;
+                    }
+                }
+                Log.i(LOG_TAG, "Prefetched " + queries.size() + " searches, "
+                        + (BYTE_BUDGET - remainingBytes) + " bytes");
+            } finally {
+                if(!stopped) {
+                    jobFinished(params, false);
+                }
+            }
+        }
+
+        /**
+         * Warm the results and thumbnails of a search, returning false once
+         * the run should end.
+         */
+        private boolean prefetch(String query) {
+            BookCache cache = BookCache.getInstance(getCacheDir());
+            ImageLoader imageLoader = ImageLoader.getInstance(PrefetchJobService.this);
+
+            for(BookQuery liveQuery : SearchActivity.liveQueries(query)) {
+                if(stopped || remainingBytes <= 0) {
+                    return false;
+                }
+
+                String url = liveQuery.toUrl();
+                List<Book> books;
+                BookCache.Entry cached = cache.get(url);
+                if(cached != null && !cached.isStale()) {
+                    books = cached.getBooks();
+                } else {
+                    FetchResult result = BookSearch.fetch(PrefetchJobService.this, url, cached, cancellation,
+                            RequestScheduler.Priority.BACKGROUND);
+                    if(result.getStatus() == FetchResult.Status.CIRCUIT_OPEN) {
+                        // The API is failing, so leave it alone until the next run
+                        return false;
+                    }
+                    if(!result.isSuccessful()) {
+                        continue;
+                    }
+                    remainingBytes -= result.getBytesReceived();
+                    books = result.getEntry().getBooks();
+                }
+
+                for(Book book : books) {
+                    if(stopped || remainingBytes <= 0) {
+                        return false;
+                    }
+                    remainingBytes -= imageLoader.prefetch(book.getThumbnailUrl());
+                }
+            }
+            return true;
+        }
+    }
+
+}
@@ -1,57 +1,148 @@
 package udacity.android.booklisting.display;
 
-import android.app.LoaderManager;
-import android.app.LoaderManager.LoaderCallbacks;
 import android.content.Context;
-import android.content.Loader;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.text.TextUtils;
+import android.util.SparseArray;
 import android.view.View;
-import android.widget.ListView;
 import android.widget.ProgressBar;
 import android.widget.TextView;
+import android.widget.Toast;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 
 import udacity.android.booklisting.R;
 import udacity.android.booklisting.model.Book;
+import udacity.android.booklisting.model.BookQuery;
+import udacity.android.booklisting.model.ParcelableBook;
 import udacity.android.booklisting.utility.BookAdapter;
-import udacity.android.booklisting.utility.BookLoader;
+import udacity.android.booklisting.utility.BookCache;
+import udacity.android.booklisting.utility.BookFacets;
+import udacity.android.booklisting.utility.BookRanker;
+import udacity.android.booklisting.utility.BookSearch;
+import udacity.android.booklisting.utility.BookSnapshot;
+import udacity.android.booklisting.utility.FetchResult;
+import udacity.android.booklisting.utility.Metrics;
+import udacity.android.booklisting.utility.OfflineSearch;
+import udacity.android.booklisting.utility.SearchFragment;
+import udacity.android.booklisting.utility.Startup;
 
 /**
- * This is the Activity too display the books. It implement the LoaderCallbacks
- * interface to allow the http request to be conducted in a background thread.
- * The internet connection is checked and a BookLoader is  created.
+ * This is the Activity too display the books. It implement the SearchFragment
+ * Callbacks interface to allow the http request to be conducted in a background
+ * thread that outlives a configuration change. The BookQuery to show is passed
+ * in by the SearchActivity. The internet connection is checked and a BookSearch
+ * is started.
+ * Results are loaded a page at a time using the startIndex parameter: the
+ * first small page is shown as soon as it arrives and later pages are
+ * fetched as the user scrolls towards the end of the list. Without a
+ * connection the books fetched before are searched instead. As each page
+ * is shown its books are counted by author, year and category in the
+ * background and the most common of each are summarized above the list.
+ * The details of the books left on screen are prefetched once the list
+ * stops scrolling, so opening one of them is instant.
+ * The books shown are saved to a snapshot of their query with the instance
+ * state, together with their facet counts, whenever more pages have been
+ * shown since the last one. When the Activity is restored in a new process
+ * they are shown from the memory mapped snapshot, decoding only the rows
+ * on screen, instead of fetching every page again.
+ * A page already shown is replaced when its search publishes fresh
+ * results after revalidating a stale cached page. A page that fails to
+ * load is requested again on the next scroll rather than ending the list.
+ * The request for the first page is sent before the layout is inflated,
+ * so the two overlap, and the time from submitting the search to its
+ * first results being shown is recorded.
  *
  * @author Joseph Stewart
- * @version 2.0
+ * @version 3.5
  */
-public class BookActivity extends AppCompatActivity implements LoaderCallbacks<List<Book>> {
+public class BookActivity extends AppCompatActivity implements SearchFragment.Callbacks {
 
-    private static final int BOOK_LOADER_ID = 1;
-    private String url;
+    // Each page has its own search with the id BOOK_SEARCH_ID + page
+    private static final int BOOK_SEARCH_ID = 1;
 
-    private ListView listView;
+    // Searches the books fetched before when there is no connection
+    private static final int OFFLINE_SEARCH_ID = 0;
+
+    // Intent extra holding the BookQuery to show the results of
+    static final String EXTRA_QUERY = "query";
+
+    // Intent extra holding a first page already loaded by the SearchActivity
+    static final String EXTRA_FIRST_PAGE = "first_page";
+
+    static final int FIRST_PAGE_SIZE = 10;
+    private static final int PAGE_SIZE = 20;
+
+    // Number of rows from the end of the list at which the next page is requested
+    private static final int PREFETCH_DISTANCE = 5;
+
+    // Number of authors, years and categories in the summary
+    private static final int FACET_VALUES = 3;
+
+    private static final String STATE_REQUESTED_PAGES = "requested_pages";
+    private static final String STATE_HAS_MORE = "has_more";
+    private static final String STATE_DISPLAYED_PAGES = "displayed_pages";
+    private static final String STATE_SNAPSHOT_PAGES = "snapshot_pages";
+
+    // The directory of the snapshots in the cache directory, each named by its query
+    private static final String SNAPSHOT_DIRECTORY = "snapshots";
+
+    // Number of snapshots kept, so more than one Activity can be restored
+    private static final int MAX_SNAPSHOTS = 3;
+
+    // Drops the books of a page that an earlier page already shows
+    private static final BookRanker DUPLICATES = new BookRanker(BookRanker.API_ORDER);
+
+    private BookQuery query;
+
+    // Pages that have been loaded but not yet added to the adapter
+    private SparseArray<List<Book>> pendingPages = new SparseArray<>();
+
+    // Pages that have been added to the adapter, the pages of a restored
+    // snapshot kept as one
+    private SparseArray<List<Book>> shownPages = new SparseArray<>();
+    private int requestedPages;
+    private int displayedPages;
+    private boolean hasMore = true;
+
+    // The number of pages in the last snapshot saved or restored
+    private int snapshotPages;
+
+    private RecyclerView listView;
     private TextView emptyStateTextView;
+    private TextView facetSummaryView;
     private BookAdapter adapter;
+    private SearchFragment searchFragment;
+
+    // Counts of the books shown, only updated on the serial executor
+    private final BookFacets facets = new BookFacets();
+
+    // Requests the next page once the list has scrolled near its end
+    private final Runnable nextPage = new Runnable() {
+        @Override
+        public void run() {
+            loadNextPage();
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        setContentView(R.layout.activity_book);
+        Startup.beginSection("BookActivity.onCreate");
 
-        // Get the url passed in as an extra
-        url = getIntent().getExtras().getString(getString(R.string.intent_url_key));
+        // Get the query passed in as an extra
+        query = (BookQuery) getIntent().getSerializableExtra(EXTRA_QUERY);
+        ArrayList<ParcelableBook> firstPage = getIntent().getParcelableArrayListExtra(EXTRA_FIRST_PAGE);
 
-        listView = (ListView) findViewById(R.id.list);
-
-        // Set view for empty state text view
-        emptyStateTextView = (TextView) findViewById(R.id.empty_view);
-        listView.setEmptyView(emptyStateTextView);
-
-        // Check the internet connection before created the new BookLoader
+        // Check the internet connection before starting the new BookSearch
         ConnectivityManager cm =
                 (ConnectivityManager)this.getSystemService(Context.CONNECTIVITY_SERVICE);
 
@@ -59,47 +150,445 @@ public class BookActivity extends AppCompatActivity implements LoaderCallbacks<L
         boolean isConnected = activeNetwork != null &&
                 activeNetwork.isConnectedOrConnecting();
 
+        // Send the request for the first page before inflating the layout
+        searchFragment = SearchFragment.get(this);
+        boolean startedEarly = isConnected && savedInstanceState == null && firstPage == null;
+        if(startedEarly) {
+            startPage(0);
+        }
+
+        setContentView(R.layout.activity_book);
+
+        listView = (RecyclerView) findViewById(R.id.list);
+        final LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        listView.setLayoutManager(layoutManager);
+
+        // Set view for empty state text view
+        emptyStateTextView = (TextView) findViewById(R.id.empty_view);
+        facetSummaryView = (TextView) findViewById(R.id.facet_summary);
+
+        // Try the first page again after it failed to load
+        emptyStateTextView.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                if(adapter.getItemCount() == 0 && displayedPages == requestedPages && hasMore) {
+                    emptyStateTextView.setVisibility(View.GONE);
+                    findViewById(R.id.loading_spinner).setVisibility(View.VISIBLE);
+                    loadNextPage();
+                }
+            }
+        });
+
+        // The adapter is created once and each page is appended to it
+        adapter = new BookAdapter(this);
+        listView.setAdapter(adapter);
+
+        // Request the next page as the user scrolls near the end of the list
+        listView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                int totalItemCount = adapter.getItemCount();
+                if(totalItemCount > 0 && layoutManager.findLastVisibleItemPosition()
+                        >= totalItemCount - 1 - PREFETCH_DISTANCE) {
+                    // A cached page is appended as soon as it is started, which
+                    // must not happen inside a scroll callback
+                    recyclerView.removeCallbacks(nextPage);
+                    recyclerView.post(nextPage);
+                }
+            }
+
+            @Override
+            public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+                if(newState == RecyclerView.SCROLL_STATE_IDLE) {
+                    prefetchVisibleDetails();
+                }
+            }
+        });
+
+        boolean restored = false;
+        if(savedInstanceState != null) {
+            requestedPages = savedInstanceState.getInt(STATE_REQUESTED_PAGES);
+            hasMore = savedInstanceState.getBoolean(STATE_HAS_MORE, true);
+            snapshotPages = savedInstanceState.getInt(STATE_SNAPSHOT_PAGES);
+            restored = restoreSnapshot(savedInstanceState.getInt(STATE_DISPLAYED_PAGES));
+        }
+
+        // Show the first page passed in without fetching it again
+        int firstSearchPage = startedEarly ? 1 : 0;
+        if(restored) {
+            firstSearchPage = displayedPages;
+        } else if(firstPage != null) {
+            findViewById(R.id.loading_spinner).setVisibility(View.GONE);
+            displayBooks(0, ParcelableBook.unwrap(firstPage));
+            firstSearchPage = 1;
+        }
+
         if(isConnected) {
-            LoaderManager loaderManager = getLoaderManager();
-            loaderManager.initLoader(BOOK_LOADER_ID, null, this);
+            // Reconnect to the searches of pages requested before a configuration change
+            for(int page = firstSearchPage; page < Math.max(requestedPages, 1); page++) {
+                startPage(page);
+            }
+            requestedPages = Math.max(requestedPages, 1);
         } else {
             emptyStateTextView.setText(R.string.no_internet_connection);
+            hasMore = false;
+
+            // Search the books fetched before instead
+            if(firstPage == null && !restored) {
+                searchFragment.start(OFFLINE_SEARCH_ID, new OfflineSearch(this, query.getTerms()));
+            }
+        }
+        Startup.endSection();
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putInt(STATE_REQUESTED_PAGES, requestedPages);
+        outState.putBoolean(STATE_HAS_MORE, hasMore);
+        outState.putInt(STATE_DISPLAYED_PAGES, displayedPages);
+        saveSnapshot();
+        outState.putInt(STATE_SNAPSHOT_PAGES, snapshotPages);
+    }
+
+    /**
+     * This method saves the books shown and their facet counts to the
+     * snapshot of the query in the background, unless no page has been
+     * shown since the last snapshot. The adapter returns a copy of its
+     * list, so it can be written while more pages are shown, and the
+     * facets are only updated on the same serial executor.
+     */
+    private void saveSnapshot() {
+        if(displayedPages == 0 || displayedPages == snapshotPages) {
+            return;
         }
+        snapshotPages = displayedPages;
+
+        final File directory = new File(getCacheDir(), SNAPSHOT_DIRECTORY);
+        final File file = snapshotFile();
+        final String key = snapshotKey(displayedPages);
+        final List<Book> books = adapter.getBooks();
+        AsyncTask.SERIAL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                if(BookSnapshot.write(file, key, books, facets)) {
+                    BookSnapshot.trim(directory, MAX_SNAPSHOTS);
+                }
+            }
+        });
     }
 
     /**
-     * This method creates a new BookAdapter that allows the
-     * list of books to be displayed.
+     * This method shows the books saved to the snapshot when the Activity
+     * is restored in a new process, where there are no searches to deliver
+     * them again. The snapshot is memory mapped and only the rows that are
+     * bound are decoded, so it is read on the main thread, and the facet
+     * counts are restored from it rather than counted from the rows.
      *
-     * @param books The list of books returned as a result of the query.
+     * @param pages The number of pages shown when the snapshot was saved.
+     * @return True if the books were restored.
      */
-    private void displayBooks(List<Book> books) {
-        if (books != null && !books.isEmpty()) {
-            // Set the adapter with the data list
-            adapter = new BookAdapter(this, books);
-            listView.setAdapter(adapter);
+    private boolean restoreSnapshot(int pages) {
+        if(pages == 0 || searchFragment.has(BOOK_SEARCH_ID) || searchFragment.has(OFFLINE_SEARCH_ID)) {
+            return false;
+        }
+
+        final BookSnapshot.Restored snapshot = BookSnapshot.read(snapshotFile(), snapshotKey(pages));
+        if(snapshot == null) {
+            // Nothing is saved for the pages, so the next snapshot must be written
+            snapshotPages = 0;
+            return false;
         }
 
-        // Set empty state text to display "No earthquakes found."
+        findViewById(R.id.loading_spinner).setVisibility(View.GONE);
+        adapter.restoreBooks(snapshot);
+        shownPages.put(0, snapshot.getBooks());
+        AsyncTask.SERIAL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                snapshot.restoreFacets(facets);
+                showFacets();
+            }
+        });
+        listView.post(new Runnable() {
+            @Override
+            public void run() {
+                prefetchVisibleDetails();
+            }
+        });
+
+        displayedPages = pages;
+        snapshotPages = pages;
+        requestedPages = Math.max(requestedPages, pages);
+
         emptyStateTextView.setText(R.string.no_books);
+        emptyStateTextView.setVisibility(adapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
+        return true;
     }
 
-    @Override
-    public Loader<List<Book>> onCreateLoader(int id, Bundle args) {
-        // Create a new loader for the given URL
-        return new BookLoader(this, url);
+    /**
+     * Return the snapshot file of the query.
+     */
+    private File snapshotFile() {
+        return new File(new File(getCacheDir(), SNAPSHOT_DIRECTORY), BookCache.hash(query.toUrl()));
+    }
+
+    /**
+     * Return the key of a snapshot of the given number of pages of results,
+     * so a snapshot of another query or of fewer pages is not restored.
+     */
+    private String snapshotKey(int pages) {
+        return query.toUrl() + "#pages=" + pages;
+    }
+
+    /**
+     * This method starts the search for the next page unless a page
+     * is still loading or the last page has been reached.
+     */
+    private void loadNextPage() {
+        if(!hasMore || displayedPages < requestedPages) {
+            return;
+        }
+        startPage(requestedPages);
+        requestedPages++;
+    }
+
+    /**
+     * This method starts the search for a page, or reconnects to it if it
+     * was started before a configuration change.
+     */
+    private void startPage(int page) {
+        searchFragment.start(BOOK_SEARCH_ID + page, new BookSearch(this, pageQuery(page)));
+    }
+
+    /**
+     * This method appends each loaded page to the adapter in order, so
+     * pages that arrive early wait for the ones before them.
+     *
+     * @param page The index of the page that was loaded.
+     * @param books The list of books returned for the page.
+     */
+    private void displayBooks(int page, List<Book> books) {
+        // A page already shown is published again when its stale cached
+        // results have been revalidated
+        if(page < displayedPages) {
+            replacePage(page, books);
+            return;
+        }
+
+        pendingPages.put(page, books != null ? books : new ArrayList<Book>());
+
+        List<Book> next = pendingPages.get(displayedPages);
+        while(next != null) {
+            pendingPages.remove(displayedPages);
+            shownPages.put(displayedPages, next);
+
+            // A short page means there are no more results. It is measured before the
+            // adapter drops duplicates, so a repeated edition does not end the list early
+            if(next.size() < pageSize(displayedPages)) {
+                hasMore = false;
+            }
+
+            // Append the page without rebuilding the adapter
+            countFacets(adapter.appendBooks(next));
+
+            // The first page fills the screen without any scrolling
+            if(displayedPages == 0) {
+                Startup.firstResultsShown(this);
+                listView.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        prefetchVisibleDetails();
+                    }
+                });
+            }
+            displayedPages++;
+            next = pendingPages.get(displayedPages);
+        }
+
+        // Set empty state text to display "No books found."
+        emptyStateTextView.setText(R.string.no_books);
+        emptyStateTextView.setVisibility(adapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
+    }
+
+    /**
+     * This method replaces a page already shown with the new results its
+     * search published after revalidating a stale cached page. The pages
+     * shown are joined again and applied to the adapter as a DiffUtil
+     * delta, and their facets are counted again. The same results
+     * delivered a second time are ignored, as are the pages of a restored
+     * snapshot, which have no searches.
+     *
+     * @param page The index of the page that was published again.
+     * @param books The new list of books for the page.
+     */
+    private void replacePage(int page, List<Book> books) {
+        List<Book> shown = shownPages.get(page);
+        if(books == null || shown == null || books == shown) {
+            return;
+        }
+        shownPages.put(page, books);
+
+        // A short last page still means there are no more results
+        if(page == displayedPages - 1 && requestedPages == displayedPages) {
+            hasMore = books.size() >= pageSize(page);
+        }
+
+        final List<List<Book>> pages = new ArrayList<>(displayedPages);
+        for(int i = 0; i < displayedPages; i++) {
+            if(shownPages.get(i) != null) {
+                pages.add(shownPages.get(i));
+            }
+        }
+        adapter.setPages(pages);
+
+        // The snapshot no longer holds the books shown
+        snapshotPages = 0;
+
+        AsyncTask.SERIAL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<Book> joined = new ArrayList<>();
+                for(List<Book> pageBooks : pages) {
+                    joined.addAll(pageBooks);
+                }
+                facets.clear();
+                facets.add(DUPLICATES.rank(joined));
+                showFacets();
+            }
+        });
+    }
+
+    /**
+     * This method prefetches the details of the books on screen.
+     */
+    private void prefetchVisibleDetails() {
+        LinearLayoutManager layoutManager = (LinearLayoutManager) listView.getLayoutManager();
+        adapter.prefetchDetails(layoutManager.findFirstVisibleItemPosition(),
+                layoutManager.findLastVisibleItemPosition());
+    }
+
+    /**
+     * This method adds a page to the facet counts in the background, one
+     * page at a time in order, and then shows the updated summary.
+     *
+     * @param books The books of the page.
+     */
+    private void countFacets(final List<Book> books) {
+        AsyncTask.SERIAL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                if(facets.add(books) > 0) {
+                    showFacets();
+                }
+            }
+        });
+    }
+
+    /**
+     * This method shows the summary of the facet counts. Called on the
+     * serial executor.
+     */
+    private void showFacets() {
+        final List<BookFacets.Count> authors = facets.top(BookFacets.Facet.AUTHOR, FACET_VALUES);
+        final List<BookFacets.Count> years = facets.top(BookFacets.Facet.YEAR, FACET_VALUES);
+        final List<BookFacets.Count> categories = facets.top(BookFacets.Facet.CATEGORY, FACET_VALUES);
+
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                displayFacets(authors, years, categories);
+            }
+        });
+    }
+
+    /**
+     * This method shows the most common authors, years and categories of
+     * the books shown, one line each, leaving out facets with no values.
+     */
+    private void displayFacets(List<BookFacets.Count> authors, List<BookFacets.Count> years,
+                               List<BookFacets.Count> categories) {
+        List<String> lines = new ArrayList<>();
+        if(!authors.isEmpty()) {
+            lines.add(getString(R.string.facet_authors, TextUtils.join(", ", authors)));
+        }
+        if(!years.isEmpty()) {
+            lines.add(getString(R.string.facet_years, TextUtils.join(", ", years)));
+        }
+        if(!categories.isEmpty()) {
+            lines.add(getString(R.string.facet_categories, TextUtils.join(", ", categories)));
+        }
+
+        facetSummaryView.setText(TextUtils.join("\n", lines));
+        facetSummaryView.setVisibility(lines.isEmpty() ? View.GONE : View.VISIBLE);
+    }
+
+    /**
+     * Return the query for the given page of results.
+     */
+    private BookQuery pageQuery(int page) {
+        int startIndex = page == 0 ? 0 : FIRST_PAGE_SIZE + (page - 1) * PAGE_SIZE;
+        return query.toBuilder().page(startIndex, pageSize(page)).build();
+    }
+
+    private static int pageSize(int page) {
+        return page == 0 ? FIRST_PAGE_SIZE : PAGE_SIZE;
     }
 
     @Override
-    public void onLoadFinished(Loader<List<Book>> loader, List<Book> books) {
+    public void onSearchResults(int id, List<Book> books, boolean complete) {
+        long bindStart = System.nanoTime();
+
         ProgressBar progressBar = (ProgressBar) findViewById(R.id.loading_spinner);
         progressBar.setVisibility(View.GONE);
-        displayBooks(books);
+
+        if(id == OFFLINE_SEARCH_ID) {
+            displayOfflineBooks(books);
+        } else {
+            displayBooks(id - BOOK_SEARCH_ID, books);
+        }
+
+        Metrics.BIND.record(Metrics.elapsedMicros(bindStart));
     }
 
+    /**
+     * This method forgets the search of a page that failed to load, so the
+     * page is requested again on the next scroll, or on a tap of the empty
+     * view if nothing is shown. A failure does not end the list.
+     */
     @Override
-    public void onLoaderReset(Loader<List<Book>> loader) {
-        loader = null;
+    public void onSearchFailed(int id, FetchResult.Status status) {
+        findViewById(R.id.loading_spinner).setVisibility(View.GONE);
+
+        int page = id - BOOK_SEARCH_ID;
+        searchFragment.cancel(id);
+        if(page < displayedPages) {
+            return;
+        }
+        requestedPages = Math.min(requestedPages, page);
+
+        if(adapter.getItemCount() == 0) {
+            emptyStateTextView.setText(R.string.search_failed);
+            emptyStateTextView.setVisibility(View.VISIBLE);
+        } else {
+            Toast.makeText(this, R.string.page_failed, Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    /**
+     * This method displays the stored books found for the query while
+     * there is no internet connection.
+     *
+     * @param books The matching books fetched before.
+     */
+    private void displayOfflineBooks(List<Book> books) {
+        displayBooks(0, books);
+
+        if(adapter.getItemCount() == 0) {
+            emptyStateTextView.setText(R.string.no_internet_connection);
+        } else {
+            Toast.makeText(this, R.string.offline_results, Toast.LENGTH_LONG).show();
+        }
     }
 
 }
@@ -0,0 +1,175 @@
+package udacity.android.booklisting.display;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.text.Html;
+import android.text.TextUtils;
+import android.view.View;
+import android.widget.Button;
+import android.widget.ImageView;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import udacity.android.booklisting.R;
+import udacity.android.booklisting.model.Book;
+import udacity.android.booklisting.model.BookDetail;
+import udacity.android.booklisting.model.ParcelableBook;
+import udacity.android.booklisting.utility.BookDetails;
+import udacity.android.booklisting.utility.ImageLoader;
+
+/**
+ * This is the Activity to display the details of a single Book in the
+ * app rather than in a browser. The Book from the list is shown straight
+ * away, and its description, publisher, publication date, page count and
+ * larger cover are filled in from the BookDetails, which has usually
+ * prefetched them while the user was looking at the row. The Book can
+ * still be opened on Google Books from here.
+ *
+ * @author Joseph Stewart
+ * @version 1.0
+ */
+public class DetailActivity extends AppCompatActivity implements BookDetails.Listener {
+
+    // Intent extra holding the ParcelableBook to show the details of
+    private static final String EXTRA_BOOK = "book";
+
+    private Book book;
+    private String previewUrl;
+
+    private ImageView cover;
+    private TextView subtitleTextView;
+    private TextView infoTextView;
+    private TextView descriptionTextView;
+    private ProgressBar progressBar;
+
+    private ImageLoader imageLoader;
+    private int coverWidth;
+    private int coverHeight;
+
+    /**
+     * This method returns the Intent that opens the details of a Book.
+     *
+     * @param context The calling context.
+     * @param book The Book, which should have a volume id.
+     * @return The Intent.
+     */
+    public static Intent newIntent(Context context, Book book) {
+        Intent intent = new Intent(context, DetailActivity.class);
+        intent.putExtra(EXTRA_BOOK, new ParcelableBook(book));
+        return intent;
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_detail);
+
+        ParcelableBook parcelable = getIntent().getParcelableExtra(EXTRA_BOOK);
+        book = parcelable.getBook();
+        previewUrl = book.getDescriptionUrl();
+
+        cover = (ImageView) findViewById(R.id.cover);
+        subtitleTextView = (TextView) findViewById(R.id.subtitle_text_view);
+        infoTextView = (TextView) findViewById(R.id.info_text_view);
+        descriptionTextView = (TextView) findViewById(R.id.description_text_view);
+        progressBar = (ProgressBar) findViewById(R.id.loading_spinner);
+
+        imageLoader = ImageLoader.getInstance(this);
+        coverWidth = getResources().getDimensionPixelSize(R.dimen.cover_width);
+        coverHeight = getResources().getDimensionPixelSize(R.dimen.cover_height);
+
+        // Show what the list already has, the thumbnail is on disk from the list
+        TextView titleTextView = (TextView) findViewById(R.id.title_text_view);
+        titleTextView.setText(book.getTitle());
+
+        TextView authorsTextView = (TextView) findViewById(R.id.author_text_view);
+        if(book.getAuthorsText() != null) {
+            authorsTextView.setText(book.getAuthorsText());
+        } else {
+            authorsTextView.setText(R.string.no_authors);
+        }
+        imageLoader.load(book.getThumbnailUrl(), cover, coverWidth, coverHeight);
+
+        // Navigate to the website of the book description
+        Button previewButton = (Button) findViewById(R.id.preview_button);
+        previewButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                if(previewUrl != null) {
+                    startActivity(new Intent(Intent.ACTION_VIEW, Uri.parse(previewUrl)));
+                }
+            }
+        });
+
+        if(book.getId() != null) {
+            BookDetails.load(book.getId(), this);
+        } else {
+            onDetail(null, null);
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        BookDetails.removeListener(this);
+        imageLoader.cancel(cover);
+        super.onDestroy();
+    }
+
+    @Override
+    public void onDetail(String id, BookDetail detail) {
+        progressBar.setVisibility(View.GONE);
+
+        if(detail == null) {
+            descriptionTextView.setText(R.string.no_details);
+            return;
+        }
+        displayDetail(detail);
+    }
+
+    /**
+     * This method fills in the details the list does not have.
+     *
+     * @param detail The BookDetail of the Book.
+     */
+    @SuppressWarnings("deprecation")
+    private void displayDetail(BookDetail detail) {
+        if(detail.getSubtitle() != null) {
+            subtitleTextView.setText(detail.getSubtitle());
+            subtitleTextView.setVisibility(View.VISIBLE);
+        }
+
+        List<String> info = new ArrayList<>();
+        if(detail.getPublisher() != null) {
+            info.add(detail.getPublisher());
+        }
+        if(detail.getPublishedDate() != null) {
+            info.add(detail.getPublishedDate());
+        }
+        if(detail.getPageCount() > 0) {
+            info.add(getString(R.string.page_count, detail.getPageCount()));
+        }
+        if(!info.isEmpty()) {
+            infoTextView.setText(TextUtils.join(", ", info));
+            infoTextView.setVisibility(View.VISIBLE);
+        }
+
+        // The API sends the description with simple HTML markup
+        if(detail.getDescription() != null) {
+            descriptionTextView.setText(Html.fromHtml(detail.getDescription()));
+        }
+
+        if(detail.getThumbnailUrl() != null) {
+            imageLoader.load(detail.getThumbnailUrl(), cover, coverWidth, coverHeight);
+        }
+        if(detail.getPreviewUrl() != null) {
+            previewUrl = detail.getPreviewUrl();
+        }
+    }
+
+}
@@ -1,46 +1,137 @@
 package udacity.android.booklisting.display;
 
 import android.content.Intent;
+import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Handler;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.KeyEvent;
 import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.Toast;
 
-import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
 
 import udacity.android.booklisting.R;
+import udacity.android.booklisting.model.Book;
+import udacity.android.booklisting.model.BookQuery;
+import udacity.android.booklisting.model.ParcelableBook;
+import udacity.android.booklisting.utility.BookAdapter;
+import udacity.android.booklisting.utility.BookMemoryCache;
+import udacity.android.booklisting.utility.BookSearch;
+import udacity.android.booklisting.utility.FetchResult;
+import udacity.android.booklisting.utility.OfflineStore;
+import udacity.android.booklisting.utility.QueryHistory;
+import udacity.android.booklisting.utility.QueryUtility;
+import udacity.android.booklisting.utility.SearchFragment;
+import udacity.android.booklisting.utility.Startup;
 
 /**
  * This is the activity for the search function. It displays an EditText
  * that allows the user to enter a search topic and a button that gets
- * the entered text and uses it to build a query url for the Google Books
- * API.
+ * the entered text and uses it to build a BookQuery for the Google Books
+ * API. Results are also shown live below the search box as the user types.
+ * Keystrokes are debounced, a query identical to the one already loading
+ * is not sent again, and a superseded query is cancelled. While a query
+ * loads, matching Books fetched before are suggested from the local index.
+ * A live search fans out to title and author sub-queries in parallel and
+ * its merged results are shown as each one arrives. Submitted searches
+ * are added to the QueryHistory. Live searches run on the SearchFragment,
+ * so a search in flight survives a configuration change. The connection
+ * to the API is warmed as soon as the user starts typing, and building
+ * the local index waits until the screen has been drawn.
  *
  * @author Joseph Stewart
- * @version 1.1
+ * @version 2.1
  */
-public class SearchActivity extends AppCompatActivity {
+public class SearchActivity extends AppCompatActivity implements SearchFragment.Callbacks {
+
+    private static final int LIVE_SEARCH_ID = 1;
+
+    // Wait this long after the last keystroke before querying
+    private static final long DEBOUNCE_MILLIS = 300;
+
+    // Live queries are only sent for at least this many characters
+    private static final int MIN_QUERY_LENGTH = 2;
+
+    // The plain live sub-query doubles as the first page of the BookActivity
+    private static final int LIVE_RESULTS = BookActivity.FIRST_PAGE_SIZE;
+
+    // Each live search also asks for title and author matches in parallel
+    private static final BookQuery.Scope[] LIVE_SCOPES =
+            {BookQuery.Scope.ANY, BookQuery.Scope.TITLE, BookQuery.Scope.AUTHOR};
+
+    private static final String STATE_LIVE_QUERY = "live_query";
 
     private EditText searchText;
+    private BookAdapter liveAdapter;
+    private SearchFragment searchFragment;
+
+    private final Handler handler = new Handler();
+
+    // The query text of the live results being loaded or shown
+    private String liveQuery;
+
+    // The live results for the liveQuery once they have loaded
+    private List<Book> liveBooks;
+
+    // Runs the live query once the user stops typing
+    private final Runnable liveSearch = new Runnable() {
+        @Override
+        public void run() {
+            startLiveQuery();
+        }
+    };
 
     /**
      * Called when the Activity is created. This method gets the
-     * entered text and passed the built url to the BookActivity.
+     * entered text and passes the built query to the BookActivity.
      *
      * @param savedInstanceState The saved instance state.
      */
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        Startup.beginSection("SearchActivity.onCreate");
         setContentView(R.layout.activity_search);
 
         searchText = (EditText) findViewById(R.id.search_text);
         Button searchButton = (Button) findViewById(R.id.search_button);
 
+        RecyclerView liveResults = (RecyclerView) findViewById(R.id.live_results);
+        liveResults.setLayoutManager(new LinearLayoutManager(this));
+        liveAdapter = new BookAdapter(this);
+        liveResults.setAdapter(liveAdapter);
+
+        // Build the local index in the background once the screen is up
+        Startup.runWhenIdle(new Runnable() {
+            @Override
+            public void run() {
+                final OfflineStore offlineStore = OfflineStore.getInstance(SearchActivity.this);
+                AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        offlineStore.prepare();
+                    }
+                });
+            }
+        });
+
+        // Reconnect to the live search after a configuration change
+        searchFragment = SearchFragment.get(this);
+        if(savedInstanceState != null) {
+            liveQuery = savedInstanceState.getString(STATE_LIVE_QUERY);
+            if(liveQuery != null) {
+                searchFragment.start(LIVE_SEARCH_ID, new BookSearch(this, liveQueries(liveQuery)));
+            }
+        }
+
         // Set action listener for pressing the enter key
         searchText.setOnKeyListener(new View.OnKeyListener() {
             @Override
@@ -54,6 +145,26 @@ public class SearchActivity extends AppCompatActivity {
             }
         });
 
+        // Restart the debounce delay on every change to the search text
+        searchText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                if(s.length() > 0) {
+                    prewarm();
+                }
+                handler.removeCallbacks(liveSearch);
+                handler.postDelayed(liveSearch, DEBOUNCE_MILLIS);
+            }
+        });
+
         // Set action listener for clicking the search button
         searchButton.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -61,6 +172,21 @@ public class SearchActivity extends AppCompatActivity {
                 startQuery();
             }
         });
+
+        Startup.recordLaunch(this, searchText);
+        Startup.endSection();
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(STATE_LIVE_QUERY, liveQuery);
+    }
+
+    @Override
+    protected void onDestroy() {
+        handler.removeCallbacks(liveSearch);
+        super.onDestroy();
     }
 
     /**
@@ -72,23 +198,121 @@ public class SearchActivity extends AppCompatActivity {
         String queryText = searchText.getText().toString().trim();
 
         if(!queryText.equals("")) {
-            // Encode the queryText
-            try {
-                queryText = URLEncoder.encode(queryText, getString(R.string.encoding_scheme));
-            } catch (UnsupportedEncodingException e) {
-                e.printStackTrace();
-            }
-
-            // Build the query url
-            String url = "https://www.googleapis.com/books/v1/volumes?q=" + queryText + "&maxResults=40";
+            Startup.searchSubmitted();
+            recordQuery(queryText);
 
             // Go to the BookActivity to display the results
             Intent intent = new Intent(SearchActivity.this, BookActivity.class);
-            intent.putExtra("URL", url);
+            intent.putExtra(BookActivity.EXTRA_QUERY, new BookQuery.Builder(queryText).build());
+
+            // Pass on the plain sub-query's live results so the first page is not
+            // fetched again. The title and author matches merged into the live
+            // results are left out, as the later pages only continue the plain query.
+            List<Book> firstPage = queryText.equals(liveQuery) && liveBooks != null
+                    ? BookMemoryCache.get(liveQueries(queryText).get(0).toUrl()) : null;
+            if(firstPage != null) {
+                intent.putParcelableArrayListExtra(BookActivity.EXTRA_FIRST_PAGE,
+                        ParcelableBook.wrap(firstPage));
+            }
             startActivity(intent);
         } else {
             Toast.makeText(getApplicationContext(), getString(R.string.empty_search_term), Toast.LENGTH_LONG).show();
         }
     }
 
+    /**
+     * This method adds the search to the QueryHistory in the background,
+     * so that the PrefetchJobService can warm its results.
+     */
+    private void recordQuery(final String queryText) {
+        final QueryHistory history = QueryHistory.getInstance(getFilesDir());
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                history.record(queryText);
+            }
+        });
+    }
+
+    /**
+     * This method warms the connection to the API in the background while
+     * the user types, so the first query does not wait for the DNS lookup
+     * and the TLS handshake. QueryUtility skips it if it was done recently.
+     */
+    private void prewarm() {
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                QueryUtility.prewarm(BookQuery.BASE_URL);
+            }
+        });
+    }
+
+    /**
+     * This method loads the live results for the current search text.
+     * Restarting the search cancels the search of the previous query.
+     */
+    private void startLiveQuery() {
+        String queryText = searchText.getText().toString().trim();
+
+        // The same query is already loading or shown
+        if(queryText.equals(liveQuery)) {
+            return;
+        }
+
+        if(queryText.length() < MIN_QUERY_LENGTH) {
+            liveQuery = null;
+            liveBooks = null;
+            searchFragment.cancel(LIVE_SEARCH_ID);
+            liveAdapter.setBooks(new ArrayList<Book>());
+            return;
+        }
+
+        liveQuery = queryText;
+        liveBooks = null;
+
+        // Suggest stored Books until the network results arrive
+        List<Book> suggestions = OfflineStore.getInstance(this).searchIfReady(queryText, LIVE_RESULTS);
+        if(suggestions != null && !suggestions.isEmpty()) {
+            liveAdapter.setBooks(suggestions);
+        }
+
+        searchFragment.restart(LIVE_SEARCH_ID, new BookSearch(this, liveQueries(queryText)));
+    }
+
+    /**
+     * This method returns the live sub-queries for the search text, which
+     * are also the queries warmed ahead of time for it. The plain search
+     * comes first so that its results lead the merged list.
+     *
+     * @param queryText The search text.
+     * @return The sub-queries, the plain search first.
+     */
+    public static ArrayList<BookQuery> liveQueries(String queryText) {
+        ArrayList<BookQuery> queries = new ArrayList<>();
+        for(BookQuery.Scope scope : LIVE_SCOPES) {
+            queries.add(new BookQuery.Builder(queryText)
+                    .scope(scope)
+                    .page(0, LIVE_RESULTS)
+                    .build());
+        }
+        return queries;
+    }
+
+    @Override
+    public void onSearchResults(int id, List<Book> books, boolean complete) {
+        // Only complete results are passed on as the first page
+        liveBooks = complete ? books : null;
+
+        // Apply the new results as a delta against the ones shown
+        liveAdapter.setBooks(books);
+    }
+
+    @Override
+    public void onSearchFailed(int id, FetchResult.Status status) {
+        // Keep the suggestions shown, and send the query again if it is typed again
+        liveQuery = null;
+        liveBooks = null;
+    }
+
 }
@@ -0,0 +1,99 @@
+package udacity.android.booklisting.model;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class wraps a Book so it can be passed between activities. Book
+ * itself lives in the plain Java core and does not depend on Android.
+ *
+ * @author Joseph Stewart
+ * @version 1.1
+ */
+public final class ParcelableBook implements Parcelable {
+
+    private final Book book;
+
+    public ParcelableBook(Book book) {
+        this.book = book;
+    }
+
+    /**
+     * This method returns the wrapped Book.
+     *
+     * @return The Book.
+     */
+    public Book getBook() {
+        return book;
+    }
+
+    /**
+     * Wrap every Book of the list.
+     *
+     * @param books The Books to wrap.
+     * @return The wrapped Books.
+     */
+    public static ArrayList<ParcelableBook> wrap(List<Book> books) {
+        ArrayList<ParcelableBook> wrapped = new ArrayList<>(books.size());
+        for(Book book : books) {
+            wrapped.add(new ParcelableBook(book));
+        }
+        return wrapped;
+    }
+
+    /**
+     * Unwrap every Book of the list.
+     *
+     * @param wrapped The wrapped Books.
+     * @return The Books.
+     */
+    public static List<Book> unwrap(List<ParcelableBook> wrapped) {
+        List<Book> books = new ArrayList<>(wrapped.size());
+        for(ParcelableBook parcelable : wrapped) {
+            books.add(parcelable.getBook());
+        }
+        return books;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeString(book.getId());
+        dest.writeString(book.getTitle());
+        dest.writeStringList(book.getAuthors());
+        dest.writeString(book.getDescriptionUrl());
+        dest.writeString(book.getThumbnailUrl());
+        dest.writeInt(book.getPublishedYear());
+        dest.writeStringList(book.getCategories());
+    }
+
+    public static final Parcelable.Creator<ParcelableBook> CREATOR = new Parcelable.Creator<ParcelableBook>() {
+        @Override
+        public ParcelableBook createFromParcel(Parcel source) {
+            String id = source.readString();
+            String title = source.readString();
+            List<String> authors = source.createStringArrayList();
+            String descriptionUrl = source.readString();
+            String thumbnailUrl = source.readString();
+            int publishedYear = source.readInt();
+            List<String> categories = source.createStringArrayList();
+
+            // The Book constructor interns the author and category names again
+            return new ParcelableBook(new Book(id, title, authors, descriptionUrl, thumbnailUrl,
+                    publishedYear, categories));
+        }
+
+        @Override
+        public ParcelableBook[] newArray(int size) {
+            return new ParcelableBook[size];
+        }
+    };
+
+}
@@ -1,103 +1,442 @@
 package udacity.android.booklisting.utility;
 
-import android.app.Activity;
+import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
 import android.widget.ImageView;
 import android.widget.TextView;
 
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
 
 import udacity.android.booklisting.R;
+import udacity.android.booklisting.display.DetailActivity;
 import udacity.android.booklisting.model.Book;
 
 /**
- * This is a custom extension of the ArrayAdapter which allows a list of
- * books from the Google Books API to be displayed in a list view.
+ * This is a RecyclerView adapter which allows a list of books from the
+ * Google Books API to be displayed. A new result set is applied as a
+ * DiffUtil delta computed off the main thread, and pages are appended
+ * in place as range inserts, so the adapter is never rebuilt. A Book
+ * already in the list, or another edition of the same work, is not
+ * appended again, which is checked against a set of the keys added so
+ * far. Binding a row only sets precomputed values and every row shares
+ * one click listener. Cover thumbnails are loaded through the
+ * ImageLoader. A row opens the details of its Book in a DetailActivity,
+ * which are prefetched when the row is touched or hovered and for the
+ * rows left on screen. A restored snapshot is shown as it is, so its
+ * rows are only decoded when bound; pages appended after it are kept in
+ * a separate list and checked against its key index, so the restored
+ * rows are never copied or rehashed.
  *
  * @author Joseph Stewart
- * @version 1.2
+ * @version 3.1
  */
-public class BookAdapter extends ArrayAdapter<Book> {
+public class BookAdapter extends RecyclerView.Adapter<BookAdapter.ViewHolder> {
 
     /**
      * Inner class to implement the ViewHolder pattern to
      * maintain references to the views to be displayed.
      */
-    private static class ViewHolder {
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        ImageView thumbnail;
         TextView titleTextView;
         TextView authorsTextView;
         ImageView internetIcon;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            thumbnail = (ImageView) itemView.findViewById(R.id.thumbnail);
+            titleTextView = (TextView) itemView.findViewById(R.id.title_text_view);
+            authorsTextView = (TextView) itemView.findViewById(R.id.author_text_view);
+            internetIcon = (ImageView) itemView.findViewById(R.id.internet_icon);
+        }
     }
 
+    // Drops the Books already in a new result set, keeping their order
+    private static final BookRanker DUPLICATES = new BookRanker(BookRanker.API_ORDER);
+
+    private final Context context;
+    private final LayoutInflater inflater;
+    private final ImageLoader imageLoader;
+    private final int thumbnailWidth;
+    private final int thumbnailHeight;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Pages are appended in place, only on the main thread
+    private List<Book> books = new ArrayList<>();
+
+    // The keys and work keys of the books, added to as pages are appended.
+    // Only holds the books after the restored snapshot, if there is one
+    private Set<String> keys = new HashSet<>();
+
+    // The snapshot at the start of the list, and the books appended after it
+    private BookSnapshot.Restored restored;
+    private List<Book> appendedBooks;
+
+    // Incremented for every new result set and page so out of date diffs are dropped
+    private int generation;
+
+    // Open the details of the book when a row is clicked, or the website
+    // of the book description if it has no volume id to fetch them with
+    private final View.OnClickListener clickListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            ViewHolder holder = (ViewHolder) v.getTag();
+            int position = holder.getAdapterPosition();
+
+            if(position != RecyclerView.NO_POSITION) {
+                Book book = books.get(position);
+                String descriptionUrl = book.getDescriptionUrl();
+                if(book.getId() != null) {
+                    context.startActivity(DetailActivity.newIntent(context, book));
+                } else if(descriptionUrl != null) {
+                    Intent intent = new Intent(Intent.ACTION_VIEW, Uri.parse(descriptionUrl));
+                    context.startActivity(intent);
+                }
+            }
+        }
+    };
+
+    // Start fetching the details as soon as a row is touched, ahead of the click
+    private final View.OnTouchListener touchListener = new View.OnTouchListener() {
+        @Override
+        public boolean onTouch(View v, MotionEvent event) {
+            if(event.getActionMasked() == MotionEvent.ACTION_DOWN) {
+                prefetchDetails(v);
+            }
+            return false;
+        }
+    };
+
+    // Or as soon as a mouse or stylus hovers over it
+    private final View.OnHoverListener hoverListener = new View.OnHoverListener() {
+        @Override
+        public boolean onHover(View v, MotionEvent event) {
+            if(event.getActionMasked() == MotionEvent.ACTION_HOVER_ENTER) {
+                prefetchDetails(v);
+            }
+            return false;
+        }
+    };
+
     /** Constructor */
-    public BookAdapter(Activity context, List<Book> books) {
-        super(context, 0, books);
+    public BookAdapter(Context context) {
+        this.context = context;
+        this.inflater = LayoutInflater.from(context);
+        this.imageLoader = ImageLoader.getInstance(context);
+        this.thumbnailWidth = context.getResources().getDimensionPixelSize(R.dimen.thumbnail_width);
+        this.thumbnailHeight = context.getResources().getDimensionPixelSize(R.dimen.thumbnail_height);
+    }
+
+    @Override
+    public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        View itemView = inflater.inflate(R.layout.list_item, parent, false);
+        ViewHolder holder = new ViewHolder(itemView);
+
+        itemView.setTag(holder);
+        itemView.setOnClickListener(clickListener);
+        itemView.setOnTouchListener(touchListener);
+        itemView.setOnHoverListener(hoverListener);
+        return holder;
     }
 
     /**
      * This method sets up the view for the current Book.
      *
+     * @param holder The ViewHolder of the row.
      * @param position The current position in the list.
-     * @param convertView The current view being set up.
-     * @param parent The parent view.
-     * @return The completed view.
      */
     @Override
-    public View getView(int position, View convertView, ViewGroup parent) {
+    public void onBindViewHolder(ViewHolder holder, int position) {
+        Book currentBook = books.get(position);
 
-        final Book currentBook = getItem(position);
-        ViewHolder holder;
-
-        // Check if the existing view is being reused, otherwise inflate the view
-        if(convertView == null) {
-            convertView = LayoutInflater.from(getContext()).inflate(
-                    R.layout.list_item, parent, false);
+        // Set the view data
+        holder.titleTextView.setText(currentBook.getTitle());
 
-            holder = new ViewHolder();
-            holder.titleTextView = (TextView) convertView.findViewById(R.id.title_text_view);
-            holder.authorsTextView = (TextView) convertView.findViewById(R.id.author_text_view);
-            holder.internetIcon = (ImageView) convertView.findViewById(R.id.internet_icon);
-            convertView.setTag(holder);
+        if(currentBook.getAuthorsText() != null) {
+            holder.authorsTextView.setText(currentBook.getAuthorsText());
         } else {
-            holder = (ViewHolder) convertView.getTag();
+            holder.authorsTextView.setText(R.string.no_authors);
         }
 
-        // Set the view data
-        holder.titleTextView.setText(currentBook.getTitle());
+        holder.internetIcon.setVisibility(
+                currentBook.getDescriptionUrl() != null ? View.VISIBLE : View.INVISIBLE);
+
+        imageLoader.load(currentBook.getThumbnailUrl(), holder.thumbnail,
+                thumbnailWidth, thumbnailHeight);
+    }
+
+    /**
+     * Stop loading the thumbnail of a row that has scrolled out of view.
+     *
+     * @param holder The ViewHolder being recycled.
+     */
+    @Override
+    public void onViewRecycled(ViewHolder holder) {
+        imageLoader.cancel(holder.thumbnail);
+    }
+
+    @Override
+    public int getItemCount() {
+        return books.size();
+    }
+
+    /**
+     * This method returns the Book at the given position.
+     *
+     * @param position The position in the list.
+     * @return The Book.
+     */
+    public Book getItem(int position) {
+        return books.get(position);
+    }
 
-        if(currentBook.getAuthors() != null && currentBook.getAuthors().size() > 0) {
-            StringBuilder builder = new StringBuilder();
+    /**
+     * This method returns a copy of the books in the list, which later
+     * pages do not change, so it may be read on another thread. The rows
+     * of a restored snapshot are not copied.
+     *
+     * @return The books.
+     */
+    public List<Book> getBooks() {
+        if(restored != null) {
+            return new JoinedList(restored.getBooks(), new ArrayList<>(appendedBooks));
+        }
+        return new ArrayList<>(books);
+    }
+
+    /**
+     * This method prefetches the details of the books in a range of rows,
+     * such as the rows left on screen once scrolling stops.
+     *
+     * @param first The position of the first row.
+     * @param last The position of the last row, inclusive.
+     */
+    public void prefetchDetails(int first, int last) {
+        if(first == RecyclerView.NO_POSITION || last == RecyclerView.NO_POSITION) {
+            return;
+        }
+        for(int position = first; position <= last && position < books.size(); position++) {
+            BookDetails.prefetch(books.get(position).getId());
+        }
+    }
+
+    /**
+     * Prefetch the details of the book in the row of the given view.
+     */
+    private void prefetchDetails(View itemView) {
+        int position = ((ViewHolder) itemView.getTag()).getAdapterPosition();
+        if(position != RecyclerView.NO_POSITION) {
+            BookDetails.prefetch(books.get(position).getId());
+        }
+    }
 
-            for(String author: currentBook.getAuthors()) {
-                builder.append(author).append(" ");
+    /**
+     * This method appends a page of books to the end of the list, skipping
+     * books already shown by an earlier page or sub-query.
+     *
+     * @param page The books to append.
+     * @return The books that were appended.
+     */
+    public List<Book> appendBooks(List<Book> page) {
+        List<Book> added = new ArrayList<>(page.size());
+        for(Book book : page) {
+            String workKey = BookRanker.workKey(book);
+            if(!isShown(book.getKey()) && (workKey == null || !isShown(workKey))) {
+                addKeys(book, workKey);
+                added.add(book);
             }
+        }
 
-            holder.authorsTextView.setText(builder.toString().trim());
-        } else {
-            holder.authorsTextView.setText(R.string.no_authors);
+        if(added.isEmpty()) {
+            return added;
+        }
+
+        // A diff computed against the list without the page is dropped
+        generation++;
+        int start = books.size();
+        (restored != null ? appendedBooks : books).addAll(added);
+        notifyItemRangeInserted(start, added.size());
+        return added;
+    }
+
+    /**
+     * Return whether a book with the key or work key is in the list.
+     */
+    private boolean isShown(String key) {
+        return keys.contains(key) || (restored != null && restored.containsKey(key));
+    }
+
+    /**
+     * Remember the key of a Book and the work it is an edition of.
+     */
+    private void addKeys(Book book, String workKey) {
+        keys.add(book.getKey());
+        if(workKey != null) {
+            keys.add(workKey);
         }
+    }
 
-        // Navigate to the website of the book description when clicked
-        if(currentBook.getDescriptionUrl() != null) {
+    /**
+     * This method shows the books of a restored snapshot without copying
+     * them, or appends them if the list is not empty.
+     *
+     * @param snapshot The restored snapshot.
+     */
+    public void restoreBooks(BookSnapshot.Restored snapshot) {
+        if(!books.isEmpty()) {
+            appendBooks(snapshot.getBooks());
+            return;
+        }
+        restored = snapshot;
+        appendedBooks = new ArrayList<>();
+        books = new JoinedList(snapshot.getBooks(), appendedBooks);
+        keys = new HashSet<>();
+        notifyItemRangeInserted(0, books.size());
+    }
 
-            holder.internetIcon.setImageResource(R.drawable.ic_open_in_new_white_24dp);
+    /**
+     * This method replaces the list with a new result set. The changes
+     * are computed on a background thread and then applied as a delta.
+     *
+     * @param newBooks The new list of books.
+     */
+    public void setBooks(List<Book> newBooks) {
+        setPages(Collections.singletonList(newBooks));
+    }
+
+    /**
+     * This method replaces the list with the books of several pages, such
+     * as the pages shown so far with one of them updated. The pages are
+     * joined and their duplicates dropped on a background thread, so the
+     * rows of a restored snapshot are not decoded on the main thread.
+     *
+     * @param pages The pages of books in order.
+     */
+    public void setPages(List<List<Book>> pages) {
+        final int diffGeneration = ++generation;
+        final List<Book> oldBooks = getBooks();
+        final List<List<Book>> newPages = new ArrayList<>(pages);
 
-            convertView.setOnClickListener(new View.OnClickListener() {
-                @Override
-                public void onClick(View v) {
-                    Uri uri = Uri.parse(currentBook.getDescriptionUrl());
-                    Intent intent = new Intent(Intent.ACTION_VIEW, uri);
-                    getContext().startActivity(intent);
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<Book> joined = new ArrayList<>();
+                for(List<Book> page : newPages) {
+                    joined.addAll(page);
                 }
-            });
+                final List<Book> updated = DUPLICATES.rank(joined);
+                final Set<String> updatedKeys = new HashSet<>();
+                for(Book book : updated) {
+                    updatedKeys.add(book.getKey());
+                    String workKey = BookRanker.workKey(book);
+                    if(workKey != null) {
+                        updatedKeys.add(workKey);
+                    }
+                }
+
+                final DiffUtil.DiffResult result =
+                        DiffUtil.calculateDiff(new BookDiffCallback(oldBooks, updated));
+
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // A newer result set or a page was applied in the meantime
+                        if(diffGeneration != generation) {
+                            return;
+                        }
+                        books = updated;
+                        keys = updatedKeys;
+                        restored = null;
+                        appendedBooks = null;
+                        result.dispatchUpdatesTo(BookAdapter.this);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Inner class for a read-only view of the books of a restored snapshot
+     * followed by the books appended after it.
+     */
+    private static class JoinedList extends AbstractList<Book> implements RandomAccess {
+        private final List<Book> head;
+        private final List<Book> tail;
+
+        JoinedList(List<Book> head, List<Book> tail) {
+            this.head = head;
+            this.tail = tail;
+        }
+
+        @Override
+        public Book get(int index) {
+            return index < head.size() ? head.get(index) : tail.get(index - head.size());
+        }
+
+        @Override
+        public int size() {
+            return head.size() + tail.size();
+        }
+    }
+
+    /**
+     * Inner class that compares two lists of books for DiffUtil.
+     */
+    private static class BookDiffCallback extends DiffUtil.Callback {
+        private final List<Book> oldBooks;
+        private final List<Book> newBooks;
+
+        BookDiffCallback(List<Book> oldBooks, List<Book> newBooks) {
+            this.oldBooks = oldBooks;
+            this.newBooks = newBooks;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldBooks.size();
         }
 
-        return convertView;
+        @Override
+        public int getNewListSize() {
+            return newBooks.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldPosition, int newPosition) {
+            return oldBooks.get(oldPosition).getKey().equals(newBooks.get(newPosition).getKey());
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldPosition, int newPosition) {
+            Book oldBook = oldBooks.get(oldPosition);
+            Book newBook = newBooks.get(newPosition);
+            return equal(oldBook.getTitle(), newBook.getTitle())
+                    && equal(oldBook.getAuthorsText(), newBook.getAuthorsText())
+                    && equal(oldBook.getThumbnailUrl(), newBook.getThumbnailUrl())
+                    && equal(oldBook.getDescriptionUrl(), newBook.getDescriptionUrl())
+                    && oldBook.getPublishedYear() == newBook.getPublishedYear()
+                    && oldBook.getCategories().equals(newBook.getCategories());
+        }
+
+        private static boolean equal(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
     }
 
 }
@@ -0,0 +1,286 @@
+package udacity.android.booklisting.utility;
+
+import android.content.ComponentCallbacks2;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import udacity.android.booklisting.model.BookDetail;
+import udacity.android.booklisting.model.BookQuery;
+
+/**
+ * This class fetches the BookDetail of a volume on demand and keeps the
+ * most recently used ones in a process wide, in memory LRU cache bounded
+ * by their approximate size. Details are prefetched for the rows the user
+ * is looking at or about to tap, so opening a row is usually instant, and
+ * only those rows are ever fetched. Concurrent requests for the same
+ * volume share one fetch, and when more rows are waiting than there are
+ * threads the most recent requests are served first. All methods must be
+ * called on the main thread and listeners are called on it.
+ *
+ * @author Joseph Stewart
+ * @version 1.0
+ */
+public final class BookDetails {
+
+    // Use a sixty-fourth of the heap available to the application
+    private static final int MAX_BYTES = (int) Math.min(Runtime.getRuntime().maxMemory() / 64,
+            Integer.MAX_VALUE);
+
+    // Approximate sizes of the objects making up a cached BookDetail
+    private static final int OBJECT_BYTES = 16;
+    private static final int REFERENCE_BYTES = 4;
+    private static final int STRING_BYTES = 40;
+
+    private static final int THREADS = 2;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    // Requests beyond this many waiting are dropped, oldest first
+    private static final int MAX_WAITING = 8;
+
+    private static final LruCache<String, BookDetail> cache =
+            new LruCache<String, BookDetail>(MAX_BYTES) {
+                @Override
+                protected int sizeOf(String id, BookDetail detail) {
+                    return sizeOfString(id) + sizeOfDetail(detail);
+                }
+            };
+
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // The listeners of each volume being fetched, empty for a prefetch
+    private static final Map<String, List<Listener>> pending = new HashMap<>();
+
+    private static final LifoQueue waiting = new LifoQueue();
+    private static final ExecutorService executor = newExecutor();
+
+    /**
+     * Interface for a caller waiting for the details of a volume.
+     */
+    public interface Listener {
+
+        /**
+         * Called with the details of the volume.
+         *
+         * @param id The volume id.
+         * @param detail The BookDetail, or null if it could not be fetched.
+         */
+        void onDetail(String id, BookDetail detail);
+    }
+
+    /**
+     * Private constructor to avoid instantiation.
+     */
+    private BookDetails() {
+        throw new AssertionError("BookDetails class cannot be instantiated.");
+    }
+
+    /**
+     * Return the cached details of a volume.
+     *
+     * @param id The volume id.
+     * @return The BookDetail, or null if it has not been fetched.
+     */
+    public static BookDetail get(String id) {
+        return id != null ? cache.get(id) : null;
+    }
+
+    /**
+     * Fetch the details of a volume in the background unless they are
+     * cached or already being fetched.
+     *
+     * @param id The volume id, ignored if null.
+     */
+    public static void prefetch(String id) {
+        if(id == null || cache.get(id) != null || pending.containsKey(id)) {
+            return;
+        }
+        pending.put(id, new ArrayList<Listener>());
+        executor.execute(new Fetch(id));
+    }
+
+    /**
+     * Return the details of a volume to the listener, straight away if
+     * they are cached and otherwise once they have been fetched.
+     *
+     * @param id The volume id.
+     * @param listener The Listener.
+     */
+    public static void load(String id, Listener listener) {
+        BookDetail detail = cache.get(id);
+        if(detail != null) {
+            listener.onDetail(id, detail);
+            return;
+        }
+
+        prefetch(id);
+        pending.get(id).add(listener);
+
+        // A prefetch waiting behind others is moved to the front
+        Fetch fetch = new Fetch(id);
+        if(waiting.remove(fetch)) {
+            waiting.offerFirst(fetch);
+        }
+    }
+
+    /**
+     * Stop calling the listener, for example when its Activity is destroyed.
+     * The fetch itself carries on so the details are cached for next time.
+     *
+     * @param listener The Listener.
+     */
+    public static void removeListener(Listener listener) {
+        for(List<Listener> listeners : pending.values()) {
+            listeners.remove(listener);
+        }
+    }
+
+    /**
+     * Release memory according to the level passed to onTrimMemory.
+     *
+     * @param level The trim level from ComponentCallbacks2.
+     */
+    public static void trimMemory(int level) {
+        if(level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            cache.evictAll();
+        } else if(level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            cache.trimToSize(cache.maxSize() / 2);
+        }
+    }
+
+    /**
+     * Inner class for the fetch of one volume, equal to any other fetch of
+     * the same volume so that it can be found in the queue.
+     */
+    private static class Fetch implements Runnable {
+        private final String id;
+
+        Fetch(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public void run() {
+            final BookDetail detail = QueryUtility.fetchDetail(BookQuery.volumeUrl(id), null);
+
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if(detail != null) {
+                        cache.put(id, detail);
+                    }
+                    List<Listener> listeners = pending.remove(id);
+                    if(listeners != null) {
+                        for(Listener listener : listeners) {
+                            listener.onDetail(id, detail);
+                        }
+                    }
+                }
+            });
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Fetch && id.equals(((Fetch) o).id);
+        }
+
+        @Override
+        public int hashCode() {
+            return id.hashCode();
+        }
+    }
+
+    /**
+     * Return the approximate heap size of a BookDetail.
+     */
+    static int sizeOfDetail(BookDetail detail) {
+        int size = OBJECT_BYTES + 10 * REFERENCE_BYTES;
+        size += sizeOfString(detail.getTitle());
+        size += sizeOfString(detail.getSubtitle());
+        size += sizeOfString(detail.getPublisher());
+        size += sizeOfString(detail.getPublishedDate());
+        size += sizeOfString(detail.getDescription());
+        size += sizeOfString(detail.getThumbnailUrl());
+        size += sizeOfString(detail.getPreviewUrl());
+        for(String author : detail.getAuthors()) {
+            size += REFERENCE_BYTES + sizeOfString(author);
+        }
+        return size;
+    }
+
+    private static int sizeOfString(String value) {
+        return value == null ? 0 : STRING_BYTES + 2 * value.length();
+    }
+
+    /**
+     * Create the executor, which takes waiting fetches from the front of
+     * the queue while new prefetches are also added to the front, so the
+     * rows the user is looking at now are fetched before older ones.
+     */
+    private static ExecutorService newExecutor() {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(THREADS, THREADS,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, waiting,
+                new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Detail #" + count.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Inner class for the queue of waiting fetches: last in, first out,
+     * dropping the oldest fetch once MAX_WAITING are waiting. A dropped
+     * prefetch is forgotten so the row is fetched again if it comes back,
+     * while a dropped fetch with listeners is queued again.
+     */
+    private static class LifoQueue extends LinkedBlockingDeque<Runnable> {
+
+        @Override
+        public boolean offer(Runnable runnable) {
+            synchronized (this) {
+                while(size() >= MAX_WAITING) {
+                    final Fetch dropped = (Fetch) pollLast();
+                    if(dropped != null) {
+                        mainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                List<Listener> listeners = pending.get(dropped.id);
+                                if(listeners == null) {
+                                    return;
+                                }
+                                if(listeners.isEmpty()) {
+                                    pending.remove(dropped.id);
+                                } else {
+                                    executor.execute(dropped);
+                                }
+                            }
+                        });
+                    }
+                }
+                return offerFirst(runnable);
+            }
+        }
+    }
+
+}
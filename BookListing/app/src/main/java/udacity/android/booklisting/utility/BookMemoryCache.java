@@ -0,0 +1,110 @@
+package udacity.android.booklisting.utility;
+
+import android.content.ComponentCallbacks2;
+import android.util.LruCache;
+
+import java.util.List;
+
+import udacity.android.booklisting.model.Book;
+
+/**
+ * This class is a process wide, in memory LRU cache of query results
+ * shared by every BookSearch. It is bounded by the approximate number of
+ * bytes the cached Books occupy rather than by the number of queries, and
+ * gives memory back to the system when the application is asked to trim.
+ *
+ * @author Joseph Stewart
+ * @version 1.2
+ */
+public final class BookMemoryCache {
+
+    // Use an eighth of the heap available to the application
+    private static final int MAX_BYTES = (int) Math.min(Runtime.getRuntime().maxMemory() / 8,
+            Integer.MAX_VALUE);
+
+    // Approximate sizes of the objects making up a cached result
+    private static final int OBJECT_BYTES = 16;
+    private static final int REFERENCE_BYTES = 4;
+    private static final int STRING_BYTES = 40;
+
+    private static final LruCache<String, List<Book>> cache =
+            new LruCache<String, List<Book>>(MAX_BYTES) {
+                @Override
+                protected int sizeOf(String key, List<Book> books) {
+                    return sizeOfString(key) + sizeOfBooks(books);
+                }
+            };
+
+    /**
+     * Private constructor to avoid instantiation.
+     */
+    private BookMemoryCache() {
+        throw new AssertionError("BookMemoryCache class cannot be instantiated.");
+    }
+
+    /**
+     * Return the cached Books for the query url, or null if there are none.
+     *
+     * @param url The query url.
+     * @return The cached list of Books or null.
+     */
+    public static List<Book> get(String url) {
+        return cache.get(BookCache.normalize(url));
+    }
+
+    /**
+     * Store the Books returned for the query url.
+     *
+     * @param url The query url.
+     * @param books The list of Books.
+     */
+    public static void put(String url, List<Book> books) {
+        cache.put(BookCache.normalize(url), books);
+    }
+
+    /**
+     * Release memory according to the level passed to onTrimMemory.
+     *
+     * @param level The trim level from ComponentCallbacks2.
+     */
+    public static void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            cache.evictAll();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            cache.trimToSize(cache.maxSize() / 2);
+        }
+    }
+
+    /**
+     * Return the approximate heap size of a list of Books.
+     */
+    static int sizeOfBooks(List<Book> books) {
+        int size = OBJECT_BYTES + REFERENCE_BYTES * books.size();
+        for (Book book : books) {
+            size += OBJECT_BYTES + 6 * REFERENCE_BYTES + 4;
+            size += sizeOfString(book.getTitle());
+            size += sizeOfString(book.getDescriptionUrl());
+            size += sizeOfString(book.getThumbnailUrl());
+
+            // Author names are interned and shared, so only the packed array
+            // and the display string are counted for each Book
+            if (book.getAuthorCount() > 0) {
+                size += OBJECT_BYTES + REFERENCE_BYTES * book.getAuthorCount();
+                size += sizeOfString(book.getAuthorsText());
+            }
+
+            // Category names are interned too
+            if (book.getCategoryCount() > 0) {
+                size += OBJECT_BYTES + REFERENCE_BYTES * book.getCategoryCount();
+            }
+        }
+        return size;
+    }
+
+    private static int sizeOfString(String value) {
+        return value == null ? 0 : STRING_BYTES + 2 * value.length();
+    }
+
+}
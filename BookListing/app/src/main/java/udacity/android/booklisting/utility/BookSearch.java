@@ -0,0 +1,330 @@
+package udacity.android.booklisting.utility;
+
+import android.content.Context;
+import android.os.AsyncTask;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import udacity.android.booklisting.model.Book;
+import udacity.android.booklisting.model.BookQuery;
+
+/**
+ * This class allows the http request to the Google Books API to be run
+ * in a background thread. It takes in a BookQuery and sends its url to
+ * the QueryUtility to query the API. Results are kept in the
+ * BookMemoryCache and the BookCache, and a stale cache entry is
+ * published straight away and only then revalidated with a conditional
+ * request, so the fresh results always follow it. Given several
+ * queries, the search fans out to them in parallel as a MultiQuery and
+ * publishes the merged results as each sub-query arrives. While the
+ * circuit breaker of the fetch layer is open, queries without a cached
+ * entry search the OfflineStore. Searches are sent as interactive
+ * requests and revalidations as background ones, so refreshing the
+ * cache never delays a search. A search whose requests all failed
+ * publishes the failure rather than an empty result, so it is not
+ * mistaken for the end of the results.
+ *
+ * @author Joseph Stewart
+ * @version 2.4
+ */
+public class BookSearch implements SearchFragment.Task {
+
+    // Sub-queries of every search share these threads
+    private static final int FAN_OUT_THREADS = 4;
+    private static final int FAN_OUT_QUEUE = 16;
+    private static final ExecutorService FAN_OUT_EXECUTOR =
+            MultiQuery.newExecutor(FAN_OUT_THREADS, FAN_OUT_QUEUE);
+
+    // The longest a fan-out search waits for its sub-queries
+    private static final long FAN_OUT_DEADLINE_MILLIS = 8000;
+
+    // The most stored Books shown while the API is unavailable
+    private static final int OFFLINE_LIMIT = 40;
+
+    private final Context context;
+
+    // The user-defined queries, more than one for a fan-out search, and their urls
+    private final List<BookQuery> queries;
+    private final List<String> urls = new ArrayList<>();
+
+    // The stale cache entries to revalidate once they have been published
+    private final Map<String, BookCache.Entry> staleEntries = new LinkedHashMap<>();
+
+    // Aborts the request of a single url search
+    private final HttpClient.Cancellation cancellation = new HttpClient.Cancellation();
+
+    // The fan-out search while it runs
+    private MultiQuery multiQuery;
+
+    // The status of the last request that failed
+    private volatile FetchResult.Status failure = FetchResult.Status.NETWORK_ERROR;
+
+    private boolean canceled;
+
+    /**
+     * Constructor that accepts the calling context and the query.
+     *
+     * @param context The Activity creating this BookSearch.
+     * @param query The query defined by the user.
+     */
+    public BookSearch(Context context, BookQuery query) {
+        this(context, query != null ? Collections.singletonList(query) : Collections.<BookQuery>emptyList());
+    }
+
+    /**
+     * Constructor that accepts the calling context and the sub-queries
+     * of one search, in order of precedence.
+     *
+     * @param context The Activity creating this BookSearch.
+     * @param queries The sub-queries.
+     */
+    public BookSearch(Context context, List<BookQuery> queries) {
+        // The search may outlive the Activity across a configuration change
+        this.context = context.getApplicationContext();
+        this.queries = new ArrayList<>(queries);
+        for(BookQuery query : queries) {
+            urls.add(query.toUrl());
+        }
+    }
+
+    /**
+     * Return the results of every url from the memory cache, so a search
+     * cached by an earlier one is shown without a background thread.
+     */
+    @Override
+    public List<Book> cached() {
+        return urls.isEmpty() ? null : memoryCached();
+    }
+
+    @Override
+    public void run(SearchFragment.Publisher publisher) {
+        if(urls.isEmpty()) {
+            return;
+        }
+
+        // Results cached by an earlier search need no requests
+        List<Book> cached = memoryCached();
+        if(cached != null) {
+            publisher.publish(cached, true);
+            return;
+        }
+
+        if(urls.size() > 1) {
+            runAll(publisher);
+        } else {
+            List<Book> books = load(urls.get(0), cancellation);
+            if(isCanceled()) {
+                return;
+            } else if(books != null) {
+                publisher.publish(books, true);
+            } else {
+                publisher.fail(failure);
+            }
+        }
+        revalidate(publisher);
+    }
+
+    /**
+     * Abort the requests of a search that has been replaced or canceled.
+     */
+    @Override
+    public void cancel() {
+        cancellation.cancel();
+        synchronized (this) {
+            canceled = true;
+            if(multiQuery != null) {
+                multiQuery.cancel();
+                multiQuery = null;
+            }
+        }
+    }
+
+    private synchronized boolean isCanceled() {
+        return canceled;
+    }
+
+    /**
+     * Run the sub-queries in parallel, publishing the merged results of
+     * those that have arrived while the rest are still loading.
+     */
+    private void runAll(final SearchFragment.Publisher publisher) {
+        final MultiQuery query = new MultiQuery(FAN_OUT_EXECUTOR, urls, FAN_OUT_DEADLINE_MILLIS,
+                new MultiQuery.Fetcher() {
+                    @Override
+                    public List<Book> fetch(String url, HttpClient.Cancellation cancellation) {
+                        return load(url, cancellation);
+                    }
+                });
+        synchronized (this) {
+            if(canceled) {
+                return;
+            }
+            multiQuery = query;
+        }
+
+        // Set once a sub-query returns results, on this thread
+        final AtomicBoolean found = new AtomicBoolean();
+        try {
+            List<Book> books = query.run(new MultiQuery.Listener() {
+                @Override
+                public void onResults(List<Book> books, int completed, int total) {
+                    found.set(true);
+                    if(completed < total) {
+                        publisher.publish(books, false);
+                    }
+                }
+            });
+            if(isCanceled()) {
+                return;
+            } else if(found.get()) {
+                publisher.publish(books, true);
+            } else {
+                publisher.fail(failure);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized (this) {
+                if(multiQuery == query) {
+                    multiQuery = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the Books for a url from the memory cache, the BookCache or
+     * the API, or null if the request failed. A stale entry is returned
+     * and kept to revalidate once it has been published.
+     */
+    private List<Book> load(String url, HttpClient.Cancellation loadCancellation) {
+        List<Book> books = BookMemoryCache.get(url);
+        if(books != null) {
+            return books;
+        }
+
+        BookCache.Entry entry = BookCache.getInstance(context.getCacheDir()).get(url);
+
+        if(entry == null) {
+            FetchResult result = fetch(context, url, null, loadCancellation,
+                    RequestScheduler.Priority.INTERACTIVE);
+            if(!result.isSuccessful()) {
+                failure = result.getStatus();
+            }
+            if(result.getStatus() == FetchResult.Status.CIRCUIT_OPEN) {
+                return searchOffline(queries.get(urls.indexOf(url)));
+            }
+            return result.isSuccessful() ? result.getEntry().getBooks() : null;
+        }
+
+        if(entry.isStale()) {
+            synchronized (this) {
+                staleEntries.put(url, entry);
+            }
+        }
+        BookMemoryCache.put(url, entry.getBooks());
+        return entry.getBooks();
+    }
+
+    /**
+     * Return the merged results of every url from the memory cache, or
+     * null unless all of them are cached.
+     */
+    private List<Book> memoryCached() {
+        List<List<Book>> results = new ArrayList<>();
+        for(String url : urls) {
+            List<Book> books = BookMemoryCache.get(url);
+            if(books == null) {
+                return null;
+            }
+            results.add(books);
+        }
+        return results.size() == 1 ? results.get(0) : MultiQuery.merge(results);
+    }
+
+    /**
+     * Query the API, sending the validators of the cached entry if there
+     * is one, and store the result in the caches. Also used to warm the
+     * caches from the background.
+     *
+     * @param context Any context of the application.
+     * @param url The query url.
+     * @param cached The entry currently cached for the url, or null.
+     * @param cancellation The Cancellation for the request, or null.
+     * @param priority The priority of the request.
+     * @return The FetchResult.
+     */
+    public static FetchResult fetch(Context context, String url, BookCache.Entry cached,
+                                    HttpClient.Cancellation cancellation,
+                                    RequestScheduler.Priority priority) {
+        FetchResult result = QueryUtility.fetch(url, cached, cancellation, priority);
+
+        if(result.isSuccessful()) {
+            BookCache.Entry entry = result.getEntry();
+            BookCache.getInstance(context.getCacheDir()).put(url, entry);
+            BookMemoryCache.put(url, entry.getBooks());
+            OfflineStore.getInstance(context).add(entry.getBooks());
+        }
+        return result;
+    }
+
+    /**
+     * Search the books fetched before for the terms of the first page of
+     * a query, used while the API is failing and the circuit is open.
+     */
+    private List<Book> searchOffline(BookQuery query) {
+        if(query.getStartIndex() != 0) {
+            return null;
+        }
+        return OfflineStore.getInstance(context).search(query.getTerms(), OFFLINE_LIMIT);
+    }
+
+    /**
+     * Revalidate the stale entries that were published, each on another
+     * thread, and publish the results again if the server sent new ones.
+     */
+    private void revalidate(final SearchFragment.Publisher publisher) {
+        List<Map.Entry<String, BookCache.Entry>> entries;
+        synchronized (this) {
+            entries = new ArrayList<>(staleEntries.entrySet());
+            staleEntries.clear();
+        }
+
+        for(final Map.Entry<String, BookCache.Entry> stale : entries) {
+            AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    FetchResult result = fetch(context, stale.getKey(), stale.getValue(), null,
+                            RequestScheduler.Priority.BACKGROUND);
+
+                    // A 304 response keeps the same list so there is nothing to publish
+                    if(result.getStatus() == FetchResult.Status.OK) {
+                        publishCached(publisher);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Publish the merged results of every url from the memory cache. They
+     * are read and posted under the lock, so results read by one
+     * revalidation are never published after newer ones read by another.
+     */
+    private synchronized void publishCached(SearchFragment.Publisher publisher) {
+        if(canceled) {
+            return;
+        }
+        List<Book> updated = memoryCached();
+        if(updated != null) {
+            publisher.publish(updated, true);
+        }
+    }
+
+}
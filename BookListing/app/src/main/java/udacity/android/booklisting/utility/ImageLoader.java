@@ -0,0 +1,439 @@
+package udacity.android.booklisting.utility;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import udacity.android.booklisting.R;
+
+/**
+ * This class loads cover thumbnails into ImageViews. Decoded bitmaps are
+ * kept in a memory cache bounded by their byte count and the encoded
+ * images in a size bounded disk cache. Images are decoded downsampled to
+ * the size of the view. Requests for the same url share one download,
+ * and a request is cancelled once none of its views still want it, which
+ * aborts its connection. Images are written to a temporary file and then
+ * renamed into place, so loader threads never wait for each other's disk
+ * access and never read a partly written image. Images can also be
+ * prefetched into the disk cache in the background.
+ *
+ * @author Joseph Stewart
+ * @version 1.4
+ */
+public class ImageLoader {
+
+    private static final String LOG_TAG = ImageLoader.class.getSimpleName();
+
+    private static final String DIRECTORY_NAME = "thumbnails";
+    private static final String TEMP_PREFIX = "download";
+    private static final long MAX_DISK_BYTES = 10 * 1024 * 1024;
+
+    // Use an eighth of the heap available to the application
+    private static final int MAX_MEMORY_BYTES = (int) Math.min(Runtime.getRuntime().maxMemory() / 8,
+            Integer.MAX_VALUE);
+
+    private static final int THREADS = 3;
+
+    private static ImageLoader instance;
+
+    private final File directory;
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final LruCache<String, Bitmap> memoryCache = new LruCache<String, Bitmap>(MAX_MEMORY_BYTES) {
+        @Override
+        protected int sizeOf(String key, Bitmap bitmap) {
+            return bitmap.getByteCount();
+        }
+    };
+
+    // Requests being loaded, only touched on the main thread
+    private final Map<String, Request> requests = new HashMap<>();
+
+    /**
+     * Inner class for a request in progress and the views waiting on it.
+     */
+    private static class Request {
+        final List<ImageView> views = new ArrayList<>();
+        final HttpClient.Cancellation cancellation = new HttpClient.Cancellation();
+        Future<?> future;
+    }
+
+    private ImageLoader(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Return the process wide ImageLoader.
+     *
+     * @param context Any context of the application.
+     * @return The shared ImageLoader.
+     */
+    public static synchronized ImageLoader getInstance(Context context) {
+        if (instance == null) {
+            instance = new ImageLoader(new File(context.getApplicationContext().getCacheDir(),
+                    DIRECTORY_NAME));
+        }
+        return instance;
+    }
+
+    /**
+     * Load the image at the url into the view, replacing any request the
+     * view was waiting on. Must be called on the main thread.
+     *
+     * @param url The image url, or null to clear the view.
+     * @param view The ImageView to display the image.
+     * @param width The width the image is displayed at, in pixels.
+     * @param height The height the image is displayed at, in pixels.
+     */
+    public void load(String url, ImageView view, int width, int height) {
+        cancel(view);
+
+        final String key = key(url, width, height);
+        Bitmap bitmap = key != null ? memoryCache.get(key) : null;
+
+        if (bitmap != null) {
+            view.setImageBitmap(bitmap);
+            return;
+        }
+
+        view.setImageResource(R.drawable.ic_book_placeholder);
+
+        if (key == null) {
+            return;
+        }
+
+        view.setTag(R.id.image_request, key);
+
+        // Join a request already loading the same image
+        Request request = requests.get(key);
+        if (request != null) {
+            request.views.add(view);
+            return;
+        }
+
+        request = new Request();
+        request.views.add(view);
+        requests.put(key, request);
+        request.future = executor.submit(new LoadTask(request, key, secure(url), width, height));
+    }
+
+    /**
+     * Stop waiting for the image requested for the view, for example when
+     * its row is recycled. The download is cancelled if no other view is
+     * waiting for it. Must be called on the main thread.
+     *
+     * @param view The ImageView.
+     */
+    public void cancel(ImageView view) {
+        String key = (String) view.getTag(R.id.image_request);
+        if (key == null) {
+            return;
+        }
+        view.setTag(R.id.image_request, null);
+
+        Request request = requests.get(key);
+        if (request != null) {
+            request.views.remove(view);
+            if (request.views.isEmpty()) {
+                // Interrupting the thread does not abort a blocked connect or read
+                request.cancellation.cancel();
+                request.future.cancel(true);
+                requests.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Download the image at the url into the disk cache unless it is
+     * already there, so it loads without the network later. Must not be
+     * called on the main thread.
+     *
+     * @param url The image url, or null.
+     * @return The number of bytes downloaded, 0 if none were.
+     */
+    public int prefetch(String url) {
+        if (url == null) {
+            return 0;
+        }
+
+        String secureUrl = secure(url);
+        try {
+            if (isOnDisk(secureUrl)) {
+                return 0;
+            }
+            byte[] encoded = download(secureUrl, null);
+            if (encoded == null) {
+                return 0;
+            }
+            writeDisk(secureUrl, encoded);
+            return encoded.length;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem prefetching image " + url, e);
+            return 0;
+        }
+    }
+
+    /**
+     * Release memory according to the level passed to onTrimMemory.
+     *
+     * @param level The trim level from ComponentCallbacks2.
+     */
+    public void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            memoryCache.evictAll();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            memoryCache.trimToSize(memoryCache.maxSize() / 2);
+        }
+    }
+
+    /**
+     * Background task that reads the encoded image from the disk cache or
+     * the network, decodes it and hands it to the waiting views.
+     */
+    private class LoadTask implements Runnable {
+        private final Request request;
+        private final String key;
+        private final String url;
+        private final int width;
+        private final int height;
+
+        LoadTask(Request request, String key, String url, int width, int height) {
+            this.request = request;
+            this.key = key;
+            this.url = url;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public void run() {
+            Bitmap bitmap = null;
+            try {
+                byte[] encoded = readDisk(url);
+                if (encoded == null && !request.cancellation.isCanceled()) {
+                    encoded = download(url, request.cancellation);
+                    if (encoded != null) {
+                        writeDisk(url, encoded);
+                    }
+                }
+                if (encoded != null && !request.cancellation.isCanceled()) {
+                    bitmap = decode(encoded, width, height);
+                }
+            } catch (IOException e) {
+                if (!request.cancellation.isCanceled()) {
+                    Log.e(LOG_TAG, "Problem loading image " + url, e);
+                }
+            }
+
+            final Bitmap result = bitmap;
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    deliver(request, key, result);
+                }
+            });
+        }
+    }
+
+    /**
+     * Cache the decoded image and show it in every view still waiting for it.
+     */
+    private void deliver(Request request, String key, Bitmap bitmap) {
+        // A cancelled request may already have been replaced by a new one
+        if (requests.get(key) == request) {
+            requests.remove(key);
+        }
+
+        if (bitmap == null) {
+            return;
+        }
+        memoryCache.put(key, bitmap);
+
+        for (ImageView view : request.views) {
+            if (key.equals(view.getTag(R.id.image_request))) {
+                view.setTag(R.id.image_request, null);
+                view.setImageBitmap(bitmap);
+            }
+        }
+    }
+
+    /**
+     * Decode the image at the largest power of two reduction that is still
+     * at least the requested size.
+     */
+    static Bitmap decode(byte[] encoded, int width, int height) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(encoded, 0, encoded.length, options);
+
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= width
+                && options.outHeight / (sampleSize * 2) >= height) {
+            sampleSize *= 2;
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        return BitmapFactory.decodeByteArray(encoded, 0, encoded.length, options);
+    }
+
+    private byte[] download(String url, HttpClient.Cancellation cancellation) throws IOException {
+        HttpClient.Response response = HttpClient.download(new URL(url), cancellation);
+        try {
+            if (!response.isSuccessful()) {
+                Log.e(LOG_TAG, "Error response code: " + response.getResponseCode());
+                return null;
+            }
+            return readFully(response.getBody());
+        } finally {
+            response.close();
+        }
+    }
+
+    private boolean isOnDisk(String url) {
+        return new File(directory, BookCache.hash(url)).exists();
+    }
+
+    private byte[] readDisk(String url) throws IOException {
+        File file = new File(directory, BookCache.hash(url));
+        InputStream in;
+        try {
+            in = new FileInputStream(file);
+        } catch (FileNotFoundException e) {
+            // Not cached, or just trimmed by another thread
+            return null;
+        }
+
+        try {
+            // Mark the file as recently used
+            file.setLastModified(System.currentTimeMillis());
+            return readFully(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Write the image to a temporary file and rename it into place, which
+     * is atomic, so a reader sees either the whole image or none of it.
+     */
+    private void writeDisk(String url, byte[] encoded) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            return;
+        }
+
+        File temp = File.createTempFile(TEMP_PREFIX, null, directory);
+        try {
+            FileOutputStream out = new FileOutputStream(temp);
+            try {
+                out.write(encoded);
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(new File(directory, BookCache.hash(url)))) {
+                return;
+            }
+        } finally {
+            // Only left behind if the rename failed
+            temp.delete();
+        }
+
+        trimDisk();
+    }
+
+    /**
+     * Delete the least recently used images until the disk cache is
+     * within its maximum size. Temporary files are left out, since other
+     * loader threads are still writing them and rename them into place.
+     */
+    private void trimDisk() {
+        File[] files = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return !file.getName().startsWith(TEMP_PREFIX);
+            }
+        });
+        if (files == null) {
+            return;
+        }
+
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+
+        if (size <= MAX_DISK_BYTES) {
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long difference = a.lastModified() - b.lastModified();
+                return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+            }
+        });
+
+        for (int i = 0; i < files.length && size > MAX_DISK_BYTES; i++) {
+            long length = files[i].length();
+            if (files[i].delete()) {
+                size -= length;
+            }
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Return the memory cache key for an image decoded at a size, or null
+     * if there is no url.
+     */
+    private static String key(String url, int width, int height) {
+        return url == null ? null : url + '#' + width + 'x' + height;
+    }
+
+    /**
+     * The API returns thumbnail links over http, request them over https.
+     */
+    private static String secure(String url) {
+        return url.startsWith("http://") ? "https://" + url.substring("http://".length()) : url;
+    }
+
+}
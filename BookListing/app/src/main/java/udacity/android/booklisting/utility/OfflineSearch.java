@@ -0,0 +1,56 @@
+package udacity.android.booklisting.utility;
+
+import android.content.Context;
+
+import java.util.List;
+
+import udacity.android.booklisting.model.Book;
+
+/**
+ * This class searches the OfflineStore in a background thread when
+ * there is no internet connection.
+ *
+ * @author Joseph Stewart
+ * @version 1.2
+ */
+public class OfflineSearch implements SearchFragment.Task {
+
+    // The maximum number of stored Books to show
+    private static final int LIMIT = 100;
+
+    private final Context context;
+
+    // The user-defined search text
+    private String queryText;
+
+    /**
+     * Constructor that accepts the calling context and the search text.
+     *
+     * @param context The Activity creating this OfflineSearch.
+     * @param queryText The search text entered by the user.
+     */
+    public OfflineSearch(Context context, String queryText) {
+        // The search may outlive the Activity across a configuration change
+        this.context = context.getApplicationContext();
+        this.queryText = queryText;
+    }
+
+    @Override
+    public List<Book> cached() {
+        return null;
+    }
+
+    @Override
+    public void run(SearchFragment.Publisher publisher) {
+        if(queryText == null) {
+            return;
+        }
+        publisher.publish(OfflineStore.getInstance(context).search(queryText, LIMIT), true);
+    }
+
+    @Override
+    public void cancel() {
+        // The search is local and short, so it is left to finish
+    }
+
+}
@@ -0,0 +1,111 @@
+package udacity.android.booklisting.utility;
+
+import android.content.Context;
+
+import java.util.List;
+
+import udacity.android.booklisting.model.Book;
+
+/**
+ * This class searches every Book that has been fetched before, so that
+ * results can be shown without a network connection. The BookIndex is
+ * built from the BookCache the first time it is searched and then kept
+ * up to date as new results are fetched. The index holds at most
+ * MAX_INDEXED_BOOKS Books: it is built from the cache entries least
+ * recently used first, and once full every newly fetched Book evicts the
+ * Book indexed longest ago, so the most recent results can always be
+ * found offline. Once built, the index is fast enough to suggest results
+ * on the main thread while a query is loading, and such a search never
+ * waits for the index to be built or updated.
+ *
+ * @author Joseph Stewart
+ * @version 1.3
+ */
+public class OfflineStore {
+
+    // The most Books kept in the index, the oldest are evicted beyond it
+    private static final int MAX_INDEXED_BOOKS = 5000;
+
+    private static OfflineStore instance;
+
+    private final BookCache cache;
+
+    // Built on the first search, and read without the lock once built
+    private volatile BookIndex index;
+
+    private OfflineStore(BookCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Return the process wide OfflineStore.
+     *
+     * @param context Any context of the application.
+     * @return The shared OfflineStore.
+     */
+    public static synchronized OfflineStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new OfflineStore(BookCache.getInstance(context.getCacheDir()));
+        }
+        return instance;
+    }
+
+    /**
+     * Return the stored Books matching the query text, best match first.
+     * The first call reads the whole BookCache so it must not be made on
+     * the main thread.
+     *
+     * @param queryText The search text.
+     * @param limit The maximum number of Books to return.
+     * @return The matching Books.
+     */
+    public List<Book> search(String queryText, int limit) {
+        return getIndex().search(queryText, limit);
+    }
+
+    /**
+     * Return the stored Books matching the query text if the index has
+     * already been built and is not being updated, without ever reading
+     * the BookCache or waiting, so it may be called on the main thread.
+     *
+     * @param queryText The search text.
+     * @param limit The maximum number of Books to return.
+     * @return The matching Books, or null if the index is not ready.
+     */
+    public List<Book> searchIfReady(String queryText, int limit) {
+        BookIndex current = index;
+        return current != null ? current.trySearch(queryText, limit) : null;
+    }
+
+    /**
+     * Build the index now so that later searches are fast. Reads the whole
+     * BookCache so it must not be made on the main thread.
+     */
+    public void prepare() {
+        getIndex();
+    }
+
+    /**
+     * Add newly fetched Books to the index if it has been built.
+     *
+     * @param books The fetched Books.
+     */
+    public void add(List<Book> books) {
+        BookIndex current = index;
+        if (current != null) {
+            current.addAll(books);
+        }
+    }
+
+    private synchronized BookIndex getIndex() {
+        if (index == null) {
+            BookIndex built = new BookIndex(MAX_INDEXED_BOOKS);
+            for (List<Book> books : cache.getAllBooks()) {
+                built.addAll(books);
+            }
+            index = built;
+        }
+        return index;
+    }
+
+}
@@ -0,0 +1,371 @@
+package udacity.android.booklisting.utility;
+
+import android.app.Activity;
+import android.app.Fragment;
+import android.app.FragmentManager;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.SparseArray;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import udacity.android.booklisting.model.Book;
+
+/**
+ * This is a headless Fragment that runs the searches of an Activity on a
+ * dedicated thread pool and delivers their results. Results that are
+ * already cached are delivered as the search starts, without running it
+ * on the pool. It is retained across configuration changes, so a search
+ * keeps running while the Activity is recreated and its latest results
+ * are delivered to the new instance without being loaded again. Results,
+ * partial ones included, are only delivered while the Activity is started
+ * and are kept until then. A search that fails is reported apart from one
+ * that finds nothing, so the Activity can try it again. Every search is
+ * canceled when the Activity finishes.
+ *
+ * @author Joseph Stewart
+ * @version 1.4
+ */
+public class SearchFragment extends Fragment {
+
+    private static final String TAG = SearchFragment.class.getName();
+
+    // Searches of every Activity share these threads
+    private static final int THREADS = 3;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+    private static final ExecutorService EXECUTOR = newExecutor();
+
+    /**
+     * Interface for the Activity receiving the results, called on the
+     * main thread while it is started.
+     */
+    public interface Callbacks {
+
+        /**
+         * Called with the latest results of a search.
+         *
+         * @param id The id the search was started with.
+         * @param books The Books found so far.
+         * @param complete False while more results may follow.
+         */
+        void onSearchResults(int id, List<Book> books, boolean complete);
+
+        /**
+         * Called instead of onSearchResults when a search failed.
+         *
+         * @param id The id the search was started with.
+         * @param status The status of the failed request.
+         */
+        void onSearchFailed(int id, FetchResult.Status status);
+    }
+
+    /**
+     * Interface for the work of a search.
+     */
+    public interface Task {
+
+        /**
+         * Return the results of the search if they are at hand without
+         * running it, such as results in the BookMemoryCache, or null.
+         * Called on the main thread, so it must not block.
+         *
+         * @return The Books or null.
+         */
+        List<Book> cached();
+
+        /**
+         * Run the search on a pool thread, publishing its results.
+         *
+         * @param publisher Receives the partial and final results.
+         */
+        void run(Publisher publisher);
+
+        /**
+         * Abort the search, called on the main thread.
+         */
+        void cancel();
+    }
+
+    /**
+     * Interface through which a Task publishes results from any thread.
+     */
+    public interface Publisher {
+
+        /**
+         * Publish the latest results, replacing those published before.
+         *
+         * @param books The Books found so far.
+         * @param complete False while more results may follow.
+         */
+        void publish(List<Book> books, boolean complete);
+
+        /**
+         * Publish that the search failed, replacing any results published
+         * before. A failure is final.
+         *
+         * @param status The status of the failed request.
+         */
+        void fail(FetchResult.Status status);
+    }
+
+    /**
+     * Inner class for a running or finished search and its latest results.
+     */
+    private class Search implements Publisher {
+        final int id;
+        final Task task;
+        Future<?> future;
+
+        // Only touched on the main thread
+        List<Book> books;
+        boolean complete;
+        FetchResult.Status failure;
+        boolean delivered;
+
+        Search(int id, Task task) {
+            this.id = id;
+            this.task = task;
+        }
+
+        @Override
+        public void publish(final List<Book> newBooks, final boolean newComplete) {
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    // Ignore a search that has been replaced or canceled
+                    if(searches.get(id) != Search.this) {
+                        return;
+                    }
+                    books = newBooks;
+                    complete = newComplete;
+                    failure = null;
+                    delivered = false;
+                    deliver(Search.this);
+                }
+            });
+        }
+
+        @Override
+        public void fail(final FetchResult.Status status) {
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if(searches.get(id) != Search.this) {
+                        return;
+                    }
+                    books = null;
+                    complete = true;
+                    failure = status;
+                    delivered = false;
+                    deliver(Search.this);
+                }
+            });
+        }
+
+        boolean isPublished() {
+            return books != null || failure != null;
+        }
+    }
+
+    private final SparseArray<Search> searches = new SparseArray<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // The Activity while it is started, null otherwise
+    private Callbacks callbacks;
+
+    // The Activity results were last delivered to
+    private Callbacks lastHost;
+
+    /**
+     * Return the SearchFragment of the Activity, adding it the first time.
+     * The Activity must implement Callbacks.
+     *
+     * @param activity The Activity.
+     * @return The SearchFragment.
+     */
+    public static SearchFragment get(Activity activity) {
+        FragmentManager fragmentManager = activity.getFragmentManager();
+        SearchFragment fragment = (SearchFragment) fragmentManager.findFragmentByTag(TAG);
+        if(fragment == null) {
+            fragment = new SearchFragment();
+            fragmentManager.beginTransaction().add(fragment, TAG).commit();
+            fragmentManager.executePendingTransactions();
+        }
+        return fragment;
+    }
+
+    @Override
+    public void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setRetainInstance(true);
+    }
+
+    @Override
+    public void onStart() {
+        super.onStart();
+        Callbacks host = (Callbacks) getActivity();
+
+        // A recreated Activity gets the results delivered to the one before it
+        boolean newHost = host != lastHost;
+        lastHost = host;
+        callbacks = host;
+
+        for(int i = 0; i < searches.size(); i++) {
+            Search search = searches.valueAt(i);
+            if(newHost) {
+                search.delivered = false;
+            }
+            deliver(search);
+        }
+    }
+
+    @Override
+    public void onStop() {
+        callbacks = null;
+        super.onStop();
+    }
+
+    @Override
+    public void onDetach() {
+        lastHost = null;
+        super.onDetach();
+    }
+
+    /**
+     * Called when the Activity finishes, as the Fragment is retained
+     * across configuration changes.
+     */
+    @Override
+    public void onDestroy() {
+        for(int i = 0; i < searches.size(); i++) {
+            abort(searches.valueAt(i));
+        }
+        searches.clear();
+        super.onDestroy();
+    }
+
+    /**
+     * Start a search unless one with the id is already running or has
+     * finished, in which case its results are delivered again instead.
+     *
+     * @param id The id of the search within the Activity.
+     * @param task The search to run if there is none with the id.
+     */
+    public void start(int id, Task task) {
+        Search search = searches.get(id);
+        if(search == null) {
+            submit(id, task);
+        } else if(search.isPublished()) {
+            search.delivered = false;
+            deliver(search);
+        }
+    }
+
+    /**
+     * Start a search, canceling the one with the same id.
+     *
+     * @param id The id of the search within the Activity.
+     * @param task The search to run.
+     */
+    public void restart(int id, Task task) {
+        cancel(id);
+        submit(id, task);
+    }
+
+    /**
+     * Return whether there is a search with the id, running or finished.
+     * There is none in a new process, even if the Activity is restored.
+     *
+     * @param id The id of the search within the Activity.
+     * @return True if the search exists.
+     */
+    public boolean has(int id) {
+        return searches.get(id) != null;
+    }
+
+    /**
+     * Cancel the search with the id and forget its results.
+     *
+     * @param id The id of the search within the Activity.
+     */
+    public void cancel(int id) {
+        Search search = searches.get(id);
+        if(search != null) {
+            searches.remove(id);
+            abort(search);
+        }
+    }
+
+    private void submit(int id, Task task) {
+        final Search search = new Search(id, task);
+        searches.put(id, search);
+
+        // Cached results are delivered at once, without waiting for a thread
+        List<Book> cached = task.cached();
+        if(cached != null) {
+            search.books = cached;
+            search.complete = true;
+            deliver(search);
+            return;
+        }
+
+        search.future = EXECUTOR.submit(new Runnable() {
+            @Override
+            public void run() {
+                search.task.run(search);
+            }
+        });
+    }
+
+    private static void abort(Search search) {
+        search.task.cancel();
+
+        // A search still waiting for a thread never runs
+        if(search.future != null) {
+            search.future.cancel(false);
+        }
+    }
+
+    /**
+     * Deliver the latest results or the failure of the search if the
+     * Activity is started and has not had them yet.
+     */
+    private void deliver(Search search) {
+        if(callbacks == null || !search.isPublished() || search.delivered) {
+            return;
+        }
+        search.delivered = true;
+        if(search.failure != null) {
+            callbacks.onSearchFailed(search.id, search.failure);
+        } else {
+            callbacks.onSearchResults(search.id, search.books, search.complete);
+        }
+    }
+
+    private static ExecutorService newExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Search #" + count.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+}
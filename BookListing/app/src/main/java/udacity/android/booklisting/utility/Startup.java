@@ -0,0 +1,149 @@
+package udacity.android.booklisting.utility;
+
+import android.app.Activity;
+import android.os.Build;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.Trace;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+/**
+ * This is a utility class for the start of the app and of each search.
+ * It marks sections of the startup path in systrace, records the time
+ * from the creation of the Application to the first frame of the search
+ * screen and from submitting a search to its first results in the
+ * Metrics, and logs both, so a change to the startup path can be timed.
+ * Work that is not needed for the first frame is run once the main
+ * thread is idle instead of delaying it.
+ *
+ * @author Joseph Stewart
+ * @version 1.0
+ */
+public final class Startup {
+
+    private static final String LOG_TAG = Startup.class.getSimpleName();
+
+    // When the Application was created, or 0 once the launch has been recorded
+    private static volatile long processStart;
+
+    // When the last search was submitted, or 0 once its results were shown
+    private static volatile long searchStart;
+
+    /**
+     * Private constructor to avoid instantiation.
+     */
+    private Startup() {
+        throw new AssertionError("Startup class cannot be instantiated.");
+    }
+
+    /**
+     * Called first thing when the Application is created.
+     */
+    public static void processCreated() {
+        processStart = System.nanoTime();
+    }
+
+    /**
+     * Begin a systrace section on the calling thread, on API 18 and up.
+     *
+     * @param sectionName The name of the section.
+     */
+    public static void beginSection(String sectionName) {
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection(sectionName);
+        }
+    }
+
+    /**
+     * End the last systrace section begun on the calling thread.
+     */
+    public static void endSection() {
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Run the work on the main thread once it has nothing else to do,
+     * which is after the first frame has been drawn. Called on the main
+     * thread.
+     *
+     * @param work The work to defer.
+     */
+    public static void runWhenIdle(final Runnable work) {
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                work.run();
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Record the launch when the first frame of the Activity is about to
+     * be drawn, if it is the first Activity of a cold start.
+     *
+     * @param activity The Activity launched.
+     * @param content A view of its content.
+     */
+    public static void recordLaunch(final Activity activity, final View content) {
+        if(processStart == 0) {
+            return;
+        }
+
+        final ViewTreeObserver observer = content.getViewTreeObserver();
+        observer.addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                if(observer.isAlive()) {
+                    observer.removeOnPreDrawListener(this);
+                }
+
+                long start = processStart;
+                if(start != 0) {
+                    processStart = 0;
+                    long micros = Metrics.elapsedMicros(start);
+                    Metrics.STARTUP_LAUNCH.record(micros);
+                    Log.i(LOG_TAG, "Launched " + activity.getClass().getSimpleName()
+                            + " in " + micros / 1000 + " ms");
+                }
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Called when the user submits a search.
+     */
+    public static void searchSubmitted() {
+        searchStart = System.nanoTime();
+    }
+
+    /**
+     * Called when the first results of a search are shown. The first
+     * call after a search is submitted records the time it took, and
+     * reports the Activity fully drawn on API 21 and up, as API 19 needs a
+     * system permission for it.
+     *
+     * @param activity The Activity showing the results.
+     */
+    public static void firstResultsShown(Activity activity) {
+        long start = searchStart;
+        if(start == 0) {
+            return;
+        }
+        searchStart = 0;
+
+        long micros = Metrics.elapsedMicros(start);
+        Metrics.STARTUP_FIRST_RESULT.record(micros);
+        Log.i(LOG_TAG, "First results shown " + micros / 1000 + " ms after the search");
+
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            activity.reportFullyDrawn();
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+package udacity.android.booklisting.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import udacity.android.booklisting.model.Book;
+import udacity.android.booklisting.utility.BookParser;
+
+/**
+ * Benchmarks building Books and the per Book work done when a page of
+ * results is displayed. The authors text the adapter binds is joined
+ * when the Book is built, so bind only reads the precomputed fields.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookBenchmark {
+
+    @Param({"4", "10", "40"})
+    public int items;
+
+    private List<Book> books;
+
+    // The parsed fields of each Book, to build them again
+    private List<String> titles;
+    private List<List<String>> authors;
+    private List<String> descriptionUrls;
+    private List<String> thumbnailUrls;
+
+    @Setup
+    public void setUp() throws IOException {
+        books = BookParser.parse(new ByteArrayInputStream(Fixtures.volumes(items)));
+
+        titles = new ArrayList<>();
+        authors = new ArrayList<>();
+        descriptionUrls = new ArrayList<>();
+        thumbnailUrls = new ArrayList<>();
+        for (Book book : books) {
+            titles.add(book.getTitle());
+            authors.add(new ArrayList<>(book.getAuthors()));
+            descriptionUrls.add(book.getDescriptionUrl());
+            thumbnailUrls.add(book.getThumbnailUrl());
+        }
+    }
+
+    /**
+     * Build the Books of a page, including interning the author names and
+     * joining the authors text.
+     */
+    @Benchmark
+    public void build(Blackhole blackhole) {
+        for (int i = 0; i < titles.size(); i++) {
+            blackhole.consume(new Book(titles.get(i), authors.get(i), descriptionUrls.get(i),
+                    thumbnailUrls.get(i)));
+        }
+    }
+
+    @Benchmark
+    public void toString(Blackhole blackhole) {
+        for (Book book : books) {
+            blackhole.consume(book.toString());
+        }
+    }
+
+    /**
+     * Read the fields BookAdapter.onBindViewHolder sets on a row.
+     */
+    @Benchmark
+    public void bind(Blackhole blackhole) {
+        for (Book book : books) {
+            blackhole.consume(book.getTitle());
+            blackhole.consume(book.getAuthorsText());
+            blackhole.consume(book.getDescriptionUrl() != null);
+            blackhole.consume(book.getThumbnailUrl());
+        }
+    }
+
+}
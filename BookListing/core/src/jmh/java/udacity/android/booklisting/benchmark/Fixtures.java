@@ -0,0 +1,60 @@
+package udacity.android.booklisting.benchmark;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Payloads for the benchmarks, built from the Google Books API response
+ * recorded in the test resources.
+ */
+final class Fixtures {
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String RECORDED = "volumes_response.json";
+
+    private Fixtures() {
+        throw new AssertionError("Fixtures class cannot be instantiated.");
+    }
+
+    /**
+     * Return a volumes response with the given number of items, repeating
+     * the recorded items as often as needed.
+     */
+    static byte[] volumes(int items) throws IOException {
+        JsonObject response = new JsonParser().parse(new String(recorded(), UTF_8)).getAsJsonObject();
+        JsonArray recordedItems = response.getAsJsonArray("items");
+
+        JsonArray repeated = new JsonArray();
+        for (int i = 0; i < items; i++) {
+            repeated.add(recordedItems.get(i % recordedItems.size()));
+        }
+        response.add("items", repeated);
+        return response.toString().getBytes(UTF_8);
+    }
+
+    private static byte[] recorded() throws IOException {
+        InputStream in = Fixtures.class.getClassLoader().getResourceAsStream(RECORDED);
+        if (in == null) {
+            throw new IOException("Missing fixture " + RECORDED);
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+}
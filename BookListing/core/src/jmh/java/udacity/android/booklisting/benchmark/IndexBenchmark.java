@@ -0,0 +1,119 @@
+package udacity.android.booklisting.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import udacity.android.booklisting.model.Book;
+import udacity.android.booklisting.utility.BookIndex;
+
+/**
+ * Benchmarks local suggestions from a BookIndex of 100k synthetic Books.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IndexBenchmark {
+
+    private static final int BOOKS = 100000;
+    private static final int QUERIES = 1024;
+    private static final int LIMIT = 10;
+
+    private static final String[] SYLLABLES = {
+            "an", "dro", "id", "ja", "va", "pro", "gram", "ming", "kot", "lin",
+            "de", "sign", "pat", "tern", "net", "work", "da", "ta", "ba", "se",
+            "al", "go", "rithm", "struc", "ture", "sys", "tem", "cloud", "mo", "bile"
+    };
+
+    private BookIndex index;
+    private String[] exactQueries;
+    private String[] prefixQueries;
+    private String[] typoQueries;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        List<String> words = vocabulary(random, 5000);
+        List<String> names = vocabulary(random, 3000);
+
+        index = new BookIndex();
+        for (int i = 0; i < BOOKS; i++) {
+            Book book = new Book(phrase(random, words, 2 + random.nextInt(4)),
+                    Collections.singletonList(phrase(random, names, 2)), "https://books/" + i);
+            index.addAll(Collections.singletonList(book));
+        }
+
+        exactQueries = new String[QUERIES];
+        prefixQueries = new String[QUERIES];
+        typoQueries = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            String word = words.get(random.nextInt(words.size()));
+            exactQueries[i] = word + " " + words.get(random.nextInt(words.size()));
+            prefixQueries[i] = word.substring(0, 3);
+
+            char[] letters = word.toCharArray();
+            int position = 1 + random.nextInt(letters.length - 1);
+            letters[position] = letters[position] == 'x' ? 'q' : 'x';
+            typoQueries[i] = new String(letters);
+        }
+    }
+
+    @Benchmark
+    public List<Book> exact() {
+        return index.search(exactQueries[next++ & (QUERIES - 1)], LIMIT);
+    }
+
+    @Benchmark
+    public List<Book> prefix() {
+        return index.search(prefixQueries[next++ & (QUERIES - 1)], LIMIT);
+    }
+
+    @Benchmark
+    public List<Book> typo() {
+        return index.search(typoQueries[next++ & (QUERIES - 1)], LIMIT);
+    }
+
+    private static List<String> vocabulary(Random random, int size) {
+        List<String> words = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        while (words.size() < size) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 2 + random.nextInt(3);
+            for (int i = 0; i < syllables; i++) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            if (seen.add(word.toString())) {
+                words.add(word.toString());
+            }
+        }
+        return words;
+    }
+
+    private static String phrase(Random random, List<String> words, int length) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            builder.append(i == 0 ? "" : " ").append(words.get(random.nextInt(words.size())));
+        }
+        return builder.toString();
+    }
+
+}
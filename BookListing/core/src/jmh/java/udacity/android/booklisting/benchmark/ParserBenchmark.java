@@ -0,0 +1,52 @@
+package udacity.android.booklisting.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import udacity.android.booklisting.model.Book;
+import udacity.android.booklisting.utility.BookParser;
+
+/**
+ * Benchmarks reading a volumes response into Books. The response is read
+ * and turned into Books in a single streaming pass, so this covers both
+ * reading the stream and extracting the Books.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    // The recorded response, a live results page and a full page
+    @Param({"4", "10", "40"})
+    public int items;
+
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        payload = Fixtures.volumes(items);
+    }
+
+    @Benchmark
+    public List<Book> parse() throws IOException {
+        return BookParser.parse(new ByteArrayInputStream(payload));
+    }
+
+}
@@ -0,0 +1,65 @@
+package udacity.android.booklisting.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import udacity.android.booklisting.model.Book;
+import udacity.android.booklisting.utility.BookRanker;
+
+/**
+ * Benchmarks removing duplicate editions from and ranking merged results.
+ * Every work comes in two editions, so ten times the Books should take
+ * about ten times as long.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RankerBenchmark {
+
+    @Param({"5000", "50000"})
+    public int books;
+
+    // Puts the works with the most editions first, so the works are sorted
+    private final BookRanker ranker = new BookRanker(new BookRanker.Scorer() {
+        @Override
+        public double score(Book book, int position, int editions) {
+            return editions;
+        }
+    });
+    private List<Book> results;
+
+    @Setup
+    public void setUp() {
+        results = new ArrayList<>(books);
+        for (int i = 0; i < books; i++) {
+            int work = i / 2;
+            String title = "Title of work " + work;
+            results.add(new Book("id" + i, i % 2 == 0 ? title : title.toUpperCase(),
+                    Collections.singletonList("Author " + work % 700), null, null, 1900 + work % 120,
+                    Collections.<String>emptyList()));
+        }
+    }
+
+    @Benchmark
+    public List<Book> rank() {
+        return ranker.rank(results);
+    }
+
+}
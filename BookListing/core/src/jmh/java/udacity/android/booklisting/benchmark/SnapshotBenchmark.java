@@ -0,0 +1,141 @@
+package udacity.android.booklisting.benchmark;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import udacity.android.booklisting.model.Book;
+import udacity.android.booklisting.utility.BookParser;
+import udacity.android.booklisting.utility.BookSnapshot;
+
+/**
+ * Benchmarks restoring 2,000 Books from a BookSnapshot against parsing
+ * the same Books from a volumes response, both for the first screen of
+ * rows and for every row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotBenchmark {
+
+    private static final String KEY = "https://www.googleapis.com/books/v1/volumes?q=android";
+
+    private static final int BOOKS = 2000;
+    private static final int SCREEN_ROWS = 20;
+
+    private byte[] json;
+    private File file;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<Book> books = generate(BOOKS);
+        json = toJson(books);
+
+        file = File.createTempFile("snapshot", null);
+        if (!BookSnapshot.write(file, KEY, books, null)) {
+            throw new IOException("Unable to write " + file);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public List<Book> parseJson() throws IOException {
+        return BookParser.parse(new ByteArrayInputStream(json));
+    }
+
+    @Benchmark
+    public void restoreFirstScreen(Blackhole blackhole) {
+        List<Book> books = BookSnapshot.read(file, KEY).getBooks();
+        for (int row = 0; row < SCREEN_ROWS; row++) {
+            blackhole.consume(books.get(row));
+        }
+    }
+
+    @Benchmark
+    public void restoreAll(Blackhole blackhole) {
+        List<Book> books = BookSnapshot.read(file, KEY).getBooks();
+        for (int row = 0; row < books.size(); row++) {
+            blackhole.consume(books.get(row));
+        }
+    }
+
+    private static List<Book> generate(int count) {
+        List<Book> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String id = "volume" + i;
+            books.add(new Book(id, "Title of book " + i,
+                    Arrays.asList("Author " + i % 300, "Author " + (i + 7) % 300),
+                    "http://books.google.com/books?id=" + id,
+                    "http://books.google.com/books/content?id=" + id + "&zoom=5",
+                    1950 + i % 70, Collections.singletonList("Category " + i % 25)));
+        }
+        return books;
+    }
+
+    /**
+     * Write the Books as a Google Books API response.
+     */
+    private static byte[] toJson(List<Book> books) {
+        JsonArray items = new JsonArray();
+        for (Book book : books) {
+            JsonArray authors = new JsonArray();
+            for (String author : book.getAuthors()) {
+                authors.add(new JsonPrimitive(author));
+            }
+            JsonArray categories = new JsonArray();
+            for (String category : book.getCategories()) {
+                categories.add(new JsonPrimitive(category));
+            }
+            JsonObject imageLinks = new JsonObject();
+            imageLinks.addProperty("smallThumbnail", book.getThumbnailUrl());
+
+            JsonObject volumeInfo = new JsonObject();
+            volumeInfo.addProperty("title", book.getTitle());
+            volumeInfo.add("authors", authors);
+            volumeInfo.addProperty("publishedDate", String.valueOf(book.getPublishedYear()));
+            volumeInfo.add("categories", categories);
+            volumeInfo.addProperty("previewLink", book.getDescriptionUrl());
+            volumeInfo.add("imageLinks", imageLinks);
+
+            JsonObject item = new JsonObject();
+            item.addProperty("id", book.getId());
+            item.add("volumeInfo", volumeInfo);
+            items.add(item);
+        }
+
+        JsonObject response = new JsonObject();
+        response.addProperty("totalItems", books.size());
+        response.add("items", items);
+        return response.toString().getBytes(Fixtures.UTF_8);
+    }
+
+}
@@ -0,0 +1,297 @@
+package udacity.android.booklisting.model;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * This class represents a Book from the Google Books API. It
+ * contains data for the volume id, title, list of authors, a url string
+ * for a description, a url string for a cover thumbnail, the year it was
+ * published and its categories. A Book is immutable and free of Android
+ * dependencies. The authors and categories are each packed into a single
+ * array, shared by every Book without any, and each name is interned so
+ * that it is stored once across results.
+ *
+ * @author Joseph Stewart
+ * @version 2.4
+ *
+ */
+public final class Book {
+
+    /** The published year of a Book whose publication date is not known */
+    public static final int UNKNOWN_YEAR = 0;
+
+    // Shared by every Book without authors or categories
+    private static final String[] NO_NAMES = new String[0];
+
+    // Canonical copy of each author and category name still referenced by a Book
+    private static final Map<String, WeakReference<String>> namePool = new WeakHashMap<>();
+
+    private final String id;
+    private final String title;
+    private final String[] authors;
+    private final String descriptionUrl;
+    private final String thumbnailUrl;
+    private final int publishedYear;
+    private final String[] categories;
+
+    // Authors joined for display, computed once when the Book is built
+    private final String authorsText;
+
+    /** Constructors */
+
+    public Book(String title, List<String> authors) {
+        this(title, authors, null);
+    }
+
+    public Book(String title, List<String> authors, String descriptionUrl) {
+        this(title, authors, descriptionUrl, null);
+    }
+
+    public Book(String title, List<String> authors, String descriptionUrl, String thumbnailUrl) {
+        this(null, title, authors, descriptionUrl, thumbnailUrl);
+    }
+
+    public Book(String id, String title, List<String> authors, String descriptionUrl, String thumbnailUrl) {
+        this(id, title, authors, descriptionUrl, thumbnailUrl, UNKNOWN_YEAR, null);
+    }
+
+    public Book(String id, String title, List<String> authors, String descriptionUrl,
+                String thumbnailUrl, int publishedYear, List<String> categories) {
+        this.id = id;
+        this.title = title;
+        this.authors = packNames(authors);
+        this.descriptionUrl = descriptionUrl;
+        this.thumbnailUrl = thumbnailUrl;
+        this.publishedYear = publishedYear;
+        this.categories = packNames(categories);
+        this.authorsText = joinAuthors(this.authors);
+    }
+
+    /**
+     * This method returns the Google Books volume id.
+     *
+     * @return The volume id, or null if it is not known.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * This method returns a key identifying the Book across queries and
+     * pages: the volume id, or the description url or title and authors
+     * when there is no id.
+     *
+     * @return The identifying key.
+     */
+    public String getKey() {
+        if(id != null) {
+            return id;
+        }
+        return descriptionUrl != null ? descriptionUrl : title + '\n' + authorsText;
+    }
+
+    /**
+     * This method returns the Book's title.
+     *
+     * @return The title.
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * This method returns the list of authors for the Book.
+     *
+     * @return An unmodifiable list of the authors.
+     */
+    public List<String> getAuthors() {
+        if(authors.length == 0) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(Arrays.asList(authors));
+    }
+
+    /**
+     * This method returns the number of authors of the Book.
+     *
+     * @return The number of authors.
+     */
+    public int getAuthorCount() {
+        return authors.length;
+    }
+
+    /**
+     * This method returns the authors joined into a single String for
+     * display.
+     *
+     * @return The authors separated by spaces, or null if there are none.
+     */
+    public String getAuthorsText() {
+        return authorsText;
+    }
+
+    /**
+     * This method returns the description url.
+     *
+     * @return The url for the Book's description.
+     */
+    public String getDescriptionUrl() {
+        return descriptionUrl;
+    }
+
+    /**
+     * This method returns the url of the cover thumbnail.
+     *
+     * @return The thumbnail url, or null if the Book has no cover image.
+     */
+    public String getThumbnailUrl() {
+        return thumbnailUrl;
+    }
+
+    /**
+     * This method returns the year the Book was published.
+     *
+     * @return The year, or UNKNOWN_YEAR if it is not known.
+     */
+    public int getPublishedYear() {
+        return publishedYear;
+    }
+
+    /**
+     * This method returns the categories of the Book.
+     *
+     * @return An unmodifiable list of the categories.
+     */
+    public List<String> getCategories() {
+        if(categories.length == 0) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(Arrays.asList(categories));
+    }
+
+    /**
+     * This method returns the number of categories of the Book.
+     *
+     * @return The number of categories.
+     */
+    public int getCategoryCount() {
+        return categories.length;
+    }
+
+    /**
+     * This method returns one of the authors without creating a list.
+     *
+     * @param index The index of the author, from 0 to getAuthorCount() - 1.
+     * @return The author name.
+     */
+    public String getAuthor(int index) {
+        return authors[index];
+    }
+
+    /**
+     * This method returns one of the categories without creating a list.
+     *
+     * @param index The index of the category, from 0 to getCategoryCount() - 1.
+     * @return The category name.
+     */
+    public String getCategory(int index) {
+        return categories[index];
+    }
+
+    /**
+     * This method returns the year at the start of a publication date as
+     * sent by the API, such as "2016", "2016-08" or "2016-08-12".
+     *
+     * @param publishedDate The publication date, or null.
+     * @return The year, or UNKNOWN_YEAR if the date does not start with one.
+     */
+    public static int parseYear(String publishedDate) {
+        if(publishedDate == null || publishedDate.length() < 4) {
+            return UNKNOWN_YEAR;
+        }
+
+        int year = 0;
+        for(int i = 0; i < 4; i++) {
+            char c = publishedDate.charAt(i);
+            if(c < '0' || c > '9') {
+                return UNKNOWN_YEAR;
+            }
+            year = year * 10 + (c - '0');
+        }
+        return year;
+    }
+
+    /**
+     * This method provides a String representation fo this Book.
+     *
+     * @return The String representation.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("Title: " + title + " Author: ");
+
+        if(authorsText != null) {
+            builder.append(authorsText).append(" ");
+        }
+
+        builder.append(" URL: " + descriptionUrl);
+
+        return builder.toString().trim();
+    }
+
+    /**
+     * Copy the authors or categories into an array of interned names, or
+     * return the shared empty array if there are none.
+     */
+    private static String[] packNames(List<String> names) {
+        if(names == null || names.isEmpty()) {
+            return NO_NAMES;
+        }
+
+        String[] packed = names.toArray(new String[names.size()]);
+        for(int i = 0; i < packed.length; i++) {
+            packed[i] = intern(packed[i]);
+        }
+        return packed;
+    }
+
+    /**
+     * Return the canonical copy of a name. Names are only held weakly, so
+     * they are released once no Book refers to them.
+     */
+    private static String intern(String name) {
+        synchronized (namePool) {
+            WeakReference<String> reference = namePool.get(name);
+            String canonical = reference != null ? reference.get() : null;
+
+            if(canonical == null) {
+                canonical = name;
+                namePool.put(canonical, new WeakReference<>(canonical));
+            }
+            return canonical;
+        }
+    }
+
+    /**
+     * Join the authors with spaces, or return null if there are none.
+     */
+    private static String joinAuthors(String[] authors) {
+        if(authors.length == 0) {
+            return null;
+        } else if(authors.length == 1) {
+            // Share the interned name rather than copying it
+            return authors[0];
+        }
+
+        StringBuilder builder = new StringBuilder();
+        for(String author : authors) {
+            builder.append(author).append(" ");
+        }
+        return builder.toString().trim();
+    }
+}
@@ -0,0 +1,183 @@
+package udacity.android.booklisting.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class holds the details of a single volume of the Google Books
+ * API that a Book in a list of results leaves out: the subtitle, the
+ * publisher, the publication date, the page count, the full description
+ * and a larger cover image. It is fetched on its own, only for the Books
+ * the user is likely to open, and is immutable once built.
+ *
+ * @author Joseph Stewart
+ * @version 1.0
+ */
+public final class BookDetail {
+
+    private final String id;
+    private final String title;
+    private final String subtitle;
+    private final List<String> authors;
+    private final String publisher;
+    private final String publishedDate;
+    private final int pageCount;
+    private final String description;
+    private final String thumbnailUrl;
+    private final String previewUrl;
+
+    private BookDetail(Builder builder) {
+        this.id = builder.id;
+        this.title = builder.title;
+        this.subtitle = builder.subtitle;
+        this.authors = builder.authors;
+        this.publisher = builder.publisher;
+        this.publishedDate = builder.publishedDate;
+        this.pageCount = builder.pageCount;
+        this.description = builder.description;
+        this.thumbnailUrl = builder.thumbnailUrl;
+        this.previewUrl = builder.previewUrl;
+    }
+
+    /**
+     * Inner class that builds a BookDetail. Every value is optional.
+     */
+    public static final class Builder {
+        private String id;
+        private String title;
+        private String subtitle;
+        private List<String> authors = Collections.emptyList();
+        private String publisher;
+        private String publishedDate;
+        private int pageCount;
+        private String description;
+        private String thumbnailUrl;
+        private String previewUrl;
+
+        public Builder id(String id) {
+            this.id = id;
+            return this;
+        }
+
+        public Builder title(String title) {
+            this.title = title;
+            return this;
+        }
+
+        public Builder subtitle(String subtitle) {
+            this.subtitle = subtitle;
+            return this;
+        }
+
+        public Builder authors(List<String> authors) {
+            this.authors = authors == null || authors.isEmpty() ? Collections.<String>emptyList()
+                    : Collections.unmodifiableList(new ArrayList<>(authors));
+            return this;
+        }
+
+        public Builder publisher(String publisher) {
+            this.publisher = publisher;
+            return this;
+        }
+
+        /**
+         * @param publishedDate The date as sent by the API, such as "2016" or "2016-08-12".
+         */
+        public Builder publishedDate(String publishedDate) {
+            this.publishedDate = publishedDate;
+            return this;
+        }
+
+        public Builder pageCount(int pageCount) {
+            this.pageCount = pageCount;
+            return this;
+        }
+
+        /**
+         * @param description The description, which may contain simple HTML markup.
+         */
+        public Builder description(String description) {
+            this.description = description;
+            return this;
+        }
+
+        public Builder thumbnailUrl(String thumbnailUrl) {
+            this.thumbnailUrl = thumbnailUrl;
+            return this;
+        }
+
+        public Builder previewUrl(String previewUrl) {
+            this.previewUrl = previewUrl;
+            return this;
+        }
+
+        public BookDetail build() {
+            return new BookDetail(this);
+        }
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * @return The subtitle, or null if the volume has none.
+     */
+    public String getSubtitle() {
+        return subtitle;
+    }
+
+    /**
+     * @return An unmodifiable list of the authors.
+     */
+    public List<String> getAuthors() {
+        return authors;
+    }
+
+    public String getPublisher() {
+        return publisher;
+    }
+
+    public String getPublishedDate() {
+        return publishedDate;
+    }
+
+    /**
+     * @return The number of pages, or 0 if it is not known.
+     */
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * @return The description, which may contain simple HTML markup, or null.
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return The url of the larger cover image, or null.
+     */
+    public String getThumbnailUrl() {
+        return thumbnailUrl;
+    }
+
+    /**
+     * @return The url of the volume's page on Google Books, or null.
+     */
+    public String getPreviewUrl() {
+        return previewUrl;
+    }
+
+    @Override
+    public String toString() {
+        return "Id: " + id + " Title: " + title + " Pages: " + pageCount;
+    }
+
+}
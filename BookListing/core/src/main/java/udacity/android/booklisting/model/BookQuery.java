@@ -0,0 +1,329 @@
+package udacity.android.booklisting.model;
+
+import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+
+/**
+ * This class is a search of the Google Books API: the search terms and
+ * the part of each volume they must match, the filters and ordering of
+ * the results and the page to return. It is built with a Builder and is
+ * immutable, so it can be passed between activities and loaders. Its url
+ * always asks for only the parts of each volume the BookParser reads and
+ * lists its parameters in a fixed order, so equal queries have equal urls
+ * and share cache entries.
+ *
+ * @author Joseph Stewart
+ * @version 1.3
+ */
+public final class BookQuery implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The volumes endpoint, which the connection to the API is warmed with */
+    public static final String BASE_URL = "https://www.googleapis.com/books/v1/volumes";
+
+    private static final String UTF_8 = "UTF-8";
+
+    /** The parts of each volume requested, everything else is left out of the response */
+    public static final String FIELDS =
+            "items(id,volumeInfo(title,authors,publishedDate,categories,previewLink,"
+                    + "imageLinks/smallThumbnail)),totalItems";
+
+    /** The parts of a single volume requested for its details */
+    public static final String DETAIL_FIELDS = "id,volumeInfo(title,subtitle,authors,publisher,"
+            + "publishedDate,description,pageCount,previewLink,imageLinks/thumbnail)";
+
+    /** The most results the API returns for one request */
+    public static final int MAX_RESULTS_LIMIT = 40;
+
+    private static final int DEFAULT_MAX_RESULTS = 10;
+
+    /**
+     * The part of a volume the search terms must match.
+     */
+    public enum Scope {
+        ANY(""),
+        TITLE("intitle:"),
+        AUTHOR("inauthor:"),
+        PUBLISHER("inpublisher:"),
+        SUBJECT("subject:"),
+        ISBN("isbn:");
+
+        private final String keyword;
+
+        Scope(String keyword) {
+            this.keyword = keyword;
+        }
+    }
+
+    /**
+     * The availability of the volumes returned.
+     */
+    public enum Filter {
+        PARTIAL("partial"),
+        FULL("full"),
+        FREE_EBOOKS("free-ebooks"),
+        PAID_EBOOKS("paid-ebooks"),
+        EBOOKS("ebooks");
+
+        private final String value;
+
+        Filter(String value) {
+            this.value = value;
+        }
+    }
+
+    /**
+     * The kind of publication returned.
+     */
+    public enum PrintType {
+        ALL("all"),
+        BOOKS("books"),
+        MAGAZINES("magazines");
+
+        private final String value;
+
+        PrintType(String value) {
+            this.value = value;
+        }
+    }
+
+    /**
+     * The order of the results.
+     */
+    public enum OrderBy {
+        RELEVANCE("relevance"),
+        NEWEST("newest");
+
+        private final String value;
+
+        OrderBy(String value) {
+            this.value = value;
+        }
+    }
+
+    private final String terms;
+    private final Scope scope;
+    private final Filter filter;
+    private final PrintType printType;
+    private final OrderBy orderBy;
+    private final String language;
+    private final int startIndex;
+    private final int maxResults;
+
+    private BookQuery(Builder builder) {
+        this.terms = builder.terms;
+        this.scope = builder.scope;
+        this.filter = builder.filter;
+        this.printType = builder.printType;
+        this.orderBy = builder.orderBy;
+        this.language = builder.language;
+        this.startIndex = builder.startIndex;
+        this.maxResults = builder.maxResults;
+    }
+
+    /**
+     * Inner class that builds a BookQuery. Only the search terms are
+     * required, the first page of 10 results is returned by default.
+     */
+    public static final class Builder {
+        private String terms;
+        private Scope scope = Scope.ANY;
+        private Filter filter;
+        private PrintType printType;
+        private OrderBy orderBy;
+        private String language;
+        private int startIndex;
+        private int maxResults = DEFAULT_MAX_RESULTS;
+
+        /**
+         * Constructor that accepts the search terms.
+         *
+         * @param terms The search text entered by the user.
+         */
+        public Builder(String terms) {
+            terms(terms);
+        }
+
+        private Builder(BookQuery query) {
+            terms = query.terms;
+            scope = query.scope;
+            filter = query.filter;
+            printType = query.printType;
+            orderBy = query.orderBy;
+            language = query.language;
+            startIndex = query.startIndex;
+            maxResults = query.maxResults;
+        }
+
+        public Builder terms(String terms) {
+            if (terms == null || terms.trim().isEmpty()) {
+                throw new IllegalArgumentException("A query needs search terms");
+            }
+            this.terms = terms.trim();
+            return this;
+        }
+
+        public Builder scope(Scope scope) {
+            this.scope = scope != null ? scope : Scope.ANY;
+            return this;
+        }
+
+        /**
+         * @param filter The availability filter, or null for every volume.
+         */
+        public Builder filter(Filter filter) {
+            this.filter = filter;
+            return this;
+        }
+
+        /**
+         * @param printType The kind of publication, or null for the API default.
+         */
+        public Builder printType(PrintType printType) {
+            this.printType = printType;
+            return this;
+        }
+
+        /**
+         * @param orderBy The order of the results, or null for the API default.
+         */
+        public Builder orderBy(OrderBy orderBy) {
+            this.orderBy = orderBy;
+            return this;
+        }
+
+        /**
+         * @param language A two letter ISO-639-1 code, or null for any language.
+         */
+        public Builder language(String language) {
+            this.language = language;
+            return this;
+        }
+
+        /**
+         * Set the page of results to return.
+         *
+         * @param startIndex The index of the first result, from 0.
+         * @param maxResults The number of results, from 1 to MAX_RESULTS_LIMIT.
+         * @return This Builder.
+         */
+        public Builder page(int startIndex, int maxResults) {
+            if (startIndex < 0 || maxResults < 1 || maxResults > MAX_RESULTS_LIMIT) {
+                throw new IllegalArgumentException("Invalid page " + startIndex + "+" + maxResults);
+            }
+            this.startIndex = startIndex;
+            this.maxResults = maxResults;
+            return this;
+        }
+
+        public BookQuery build() {
+            return new BookQuery(this);
+        }
+    }
+
+    /**
+     * Return a Builder holding this query, to build a variation of it
+     * such as another page.
+     *
+     * @return A new Builder.
+     */
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    public String getTerms() {
+        return terms;
+    }
+
+    public Scope getScope() {
+        return scope;
+    }
+
+    public Filter getFilter() {
+        return filter;
+    }
+
+    public PrintType getPrintType() {
+        return printType;
+    }
+
+    public OrderBy getOrderBy() {
+        return orderBy;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public int getStartIndex() {
+        return startIndex;
+    }
+
+    public int getMaxResults() {
+        return maxResults;
+    }
+
+    /**
+     * Return the request url, with the parameters after q in alphabetical
+     * order so that it doubles as the cache key of the query.
+     *
+     * @return The url.
+     */
+    public String toUrl() {
+        StringBuilder url = new StringBuilder(BASE_URL);
+        url.append("?q=").append(encode(scope.keyword + terms));
+        url.append("&fields=").append(encode(FIELDS));
+        if (filter != null) {
+            url.append("&filter=").append(filter.value);
+        }
+        if (language != null) {
+            url.append("&langRestrict=").append(encode(language));
+        }
+        url.append("&maxResults=").append(maxResults);
+        if (orderBy != null) {
+            url.append("&orderBy=").append(orderBy.value);
+        }
+        if (printType != null) {
+            url.append("&printType=").append(printType.value);
+        }
+        url.append("&startIndex=").append(startIndex);
+        return url.toString();
+    }
+
+    /**
+     * Return the url of a single volume, asking only for the parts shown
+     * as its details.
+     *
+     * @param volumeId The Google Books volume id.
+     * @return The url.
+     */
+    public static String volumeUrl(String volumeId) {
+        return BASE_URL + "/" + encode(volumeId) + "?fields=" + encode(DETAIL_FIELDS);
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, UTF_8);
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError("UTF-8 is always supported");
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof BookQuery && toUrl().equals(((BookQuery) o).toUrl());
+    }
+
+    @Override
+    public int hashCode() {
+        return toUrl().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return toUrl();
+    }
+
+}
@@ -0,0 +1,521 @@
+package udacity.android.booklisting.utility;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import udacity.android.booklisting.model.Book;
+
+/**
+ * This class is a size bounded disk cache for query results. Each entry
+ * holds the parsed Books for one query url in a compact binary record,
+ * so a cache hit never touches the JSON response again. Entries older
+ * than the time to live are still returned but marked stale, and the
+ * least recently used entries are evicted once the cache grows past
+ * its maximum size. Entries are read and written outside the lock, which
+ * only guards an in memory index of the entry sizes in order of use, so
+ * a slow read never holds up the lookups of other searches.
+ *
+ * @author Joseph Stewart
+ * @version 1.5
+ */
+public class BookCache {
+
+    private static final Logger LOG = Logger.getLogger(BookCache.class.getName());
+
+    private static final String UTF_8 = "UTF-8";
+
+    private static final String DIRECTORY_NAME = "books";
+
+    // Entries are written to files with this prefix and renamed into place
+    private static final String TEMP_PREFIX = "entry";
+    private static final int RECORD_VERSION = 5;
+
+    private static final long DEFAULT_MAX_BYTES = 2 * 1024 * 1024;
+    private static final long DEFAULT_TTL_MILLIS = TimeUnit.HOURS.toMillis(12);
+
+    private static BookCache instance;
+
+    private final File directory;
+    private final long maxBytes;
+    private final long ttlMillis;
+
+    // The size of each entry file by name, the least recently used first,
+    // and their total. Guarded by the lock and loaded on first use
+    private Map<String, Long> sizes;
+    private long totalBytes;
+
+    /**
+     * Inner class holding the Books for a query, the validators the
+     * server sent with them and whether they have outlived the time
+     * to live.
+     */
+    public static class Entry {
+        private final List<Book> books;
+        private final String etag;
+        private final String lastModified;
+        private final long fetchedAt;
+        private final boolean stale;
+
+        Entry(List<Book> books, String etag, String lastModified, long fetchedAt, boolean stale) {
+            this.books = books;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.fetchedAt = fetchedAt;
+            this.stale = stale;
+        }
+
+        public List<Book> getBooks() {
+            return books;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        public long getFetchedAt() {
+            return fetchedAt;
+        }
+
+        public boolean isStale() {
+            return stale;
+        }
+    }
+
+    /**
+     * Constructor that accepts the cache directory, the maximum size of
+     * the cache in bytes and the time to live of each entry.
+     *
+     * @param directory The directory the entries are written to.
+     * @param maxBytes The maximum total size of the entries.
+     * @param ttlMillis The time after which an entry is stale.
+     */
+    public BookCache(File directory, long maxBytes, long ttlMillis) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Return the process wide cache stored in the given cache directory.
+     *
+     * @param cacheDir The application's cache directory.
+     * @return The shared BookCache.
+     */
+    public static synchronized BookCache getInstance(File cacheDir) {
+        if (instance == null) {
+            File directory = new File(cacheDir, DIRECTORY_NAME);
+            instance = new BookCache(directory, DEFAULT_MAX_BYTES, DEFAULT_TTL_MILLIS);
+        }
+        return instance;
+    }
+
+    /**
+     * Return the cached entry for the query url, or null if there is none.
+     * The file is read outside the lock, so reading one entry never waits
+     * for another to be read or written.
+     *
+     * @param url The query url.
+     * @return The cached Entry or null.
+     */
+    public Entry get(String url) {
+        String key = normalize(url);
+        File file = fileFor(key);
+
+        DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        } catch (FileNotFoundException e) {
+            // Not cached, or just evicted by another thread
+            forget(file.getName());
+            return null;
+        }
+
+        try {
+            if (in.readInt() != RECORD_VERSION || !key.equals(in.readUTF())) {
+                return null;
+            }
+
+            long fetchedAt = in.readLong();
+            String etag = readNullableString(in);
+            String lastModified = readNullableString(in);
+            List<Book> books = readBooks(in);
+
+            // Mark the entry as recently used, also for the next process
+            touch(file.getName());
+            file.setLastModified(System.currentTimeMillis());
+
+            boolean stale = System.currentTimeMillis() - fetchedAt > ttlMillis;
+            return new Entry(books, etag, lastModified, fetchedAt, stale);
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "Problem reading cache entry", e);
+            closeQuietly(in);
+            in = null;
+            forget(file.getName());
+            file.delete();
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Return the Books of every entry in the cache, the least recently
+     * used first, without marking the entries as used. Only the list of
+     * entries is taken under the lock; the files are read outside it.
+     *
+     * @return A list of the Books of each entry.
+     */
+    public List<List<Book>> getAllBooks() {
+        List<String> names;
+        synchronized (this) {
+            names = new ArrayList<>(index().keySet());
+        }
+
+        List<List<Book>> all = new ArrayList<>();
+        for (String name : names) {
+            DataInputStream in = null;
+            try {
+                in = new DataInputStream(new BufferedInputStream(
+                        new FileInputStream(new File(directory, name))));
+                if (in.readInt() != RECORD_VERSION) {
+                    continue;
+                }
+
+                // Skip the key, fetch time and validators
+                in.readUTF();
+                in.readLong();
+                readNullableString(in);
+                readNullableString(in);
+
+                all.add(readBooks(in));
+            } catch (FileNotFoundException e) {
+                // Evicted since the list was taken
+            } catch (IOException e) {
+                LOG.log(Level.SEVERE, "Problem reading cache entry", e);
+            } finally {
+                closeQuietly(in);
+            }
+        }
+        return all;
+    }
+
+    /**
+     * Store the entry fetched for the query url, then evict the least
+     * recently used entries if the cache is over its maximum size. The
+     * entry is written to a temporary file and renamed into place, which
+     * is atomic, so a reader sees either the whole entry or none of it.
+     * Only the bookkeeping of the sizes is done under the lock.
+     *
+     * @param url The query url.
+     * @param entry The Books and validators returned for the query.
+     */
+    public void put(String url, Entry entry) {
+        String key = normalize(url);
+
+        if (!directory.exists() && !directory.mkdirs()) {
+            LOG.severe("Unable to create cache directory " + directory);
+            return;
+        }
+
+        File file = fileFor(key);
+        File temp = null;
+        DataOutputStream out = null;
+        try {
+            temp = File.createTempFile(TEMP_PREFIX, null, directory);
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(RECORD_VERSION);
+            out.writeUTF(key);
+            out.writeLong(entry.getFetchedAt());
+            writeNullableString(out, entry.getEtag());
+            writeNullableString(out, entry.getLastModified());
+            writeBooks(out, entry.getBooks());
+            out.close();
+            out = null;
+
+            if (!temp.renameTo(file)) {
+                LOG.severe("Unable to rename cache entry to " + file);
+                return;
+            }
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "Problem writing cache entry", e);
+            return;
+        } finally {
+            closeQuietly(out);
+            // Only left behind if writing or the rename failed
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+
+        List<String> evicted;
+        synchronized (this) {
+            evicted = add(file.getName(), file.length());
+        }
+        for (String name : evicted) {
+            new File(directory, name).delete();
+        }
+    }
+
+    /**
+     * Return the sizes of the entries in order of use, the least recently
+     * used first, listing the directory the first time. Called with the
+     * lock held.
+     */
+    private Map<String, Long> index() {
+        if (sizes == null) {
+            sizes = new LinkedHashMap<>(16, 0.75f, true);
+            File[] files = directory.listFiles();
+            if (files != null) {
+                sortByLastUse(files);
+                for (File file : files) {
+                    // Entries still being written by another thread
+                    if (!file.getName().startsWith(TEMP_PREFIX)) {
+                        sizes.put(file.getName(), file.length());
+                        totalBytes += file.length();
+                    }
+                }
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * Record an entry as the most recently used and return the names of
+     * the least recently used entries to delete until the cache is within
+     * its maximum size. Called with the lock held.
+     */
+    private List<String> add(String name, long length) {
+        Map<String, Long> index = index();
+        Long previous = index.put(name, length);
+        totalBytes += length - (previous != null ? previous : 0);
+
+        List<String> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, Long>> iterator = index.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            if (eldest.getKey().equals(name)) {
+                break;
+            }
+            totalBytes -= eldest.getValue();
+            evicted.add(eldest.getKey());
+            iterator.remove();
+        }
+        return evicted;
+    }
+
+    private synchronized void touch(String name) {
+        index().get(name);
+    }
+
+    private synchronized void forget(String name) {
+        Long length = index().remove(name);
+        if (length != null) {
+            totalBytes -= length;
+        }
+    }
+
+    /**
+     * Sort entry files the least recently used first.
+     */
+    private static void sortByLastUse(File[] files) {
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long difference = a.lastModified() - b.lastModified();
+                return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+            }
+        });
+    }
+
+    private static void writeBooks(DataOutputStream out, List<Book> books) throws IOException {
+        out.writeInt(books.size());
+        for (Book book : books) {
+            writeNullableString(out, book.getId());
+            writeNullableString(out, book.getTitle());
+
+            List<String> authors = book.getAuthors();
+            out.writeInt(authors.size());
+            for (String author : authors) {
+                out.writeUTF(author);
+            }
+
+            writeNullableString(out, book.getDescriptionUrl());
+            writeNullableString(out, book.getThumbnailUrl());
+            out.writeShort(book.getPublishedYear());
+
+            out.writeInt(book.getCategoryCount());
+            for (int index = 0; index < book.getCategoryCount(); index++) {
+                out.writeUTF(book.getCategory(index));
+            }
+        }
+    }
+
+    private static List<Book> readBooks(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<Book> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String id = readNullableString(in);
+            String title = readNullableString(in);
+
+            int authorCount = in.readInt();
+            List<String> authors = new ArrayList<>(authorCount);
+            for (int index = 0; index < authorCount; index++) {
+                authors.add(in.readUTF());
+            }
+
+            String descriptionUrl = readNullableString(in);
+            String thumbnailUrl = readNullableString(in);
+            int publishedYear = in.readShort();
+
+            int categoryCount = in.readInt();
+            List<String> categories = new ArrayList<>(categoryCount);
+            for (int index = 0; index < categoryCount; index++) {
+                categories.add(in.readUTF());
+            }
+            books.add(new Book(id, title, authors, descriptionUrl, thumbnailUrl, publishedYear,
+                    categories));
+        }
+        return books;
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private File fileFor(String key) {
+        return new File(directory, hash(key));
+    }
+
+    /**
+     * Return the cache key for a query url. The query parameters are
+     * sorted and the search terms lower cased so that equivalent queries
+     * share an entry.
+     *
+     * @param url The query url.
+     * @return The normalized url.
+     */
+    public static String normalize(String url) {
+        URL parsed;
+        try {
+            parsed = new URL(url);
+        } catch (MalformedURLException e) {
+            return url;
+        }
+
+        // Keep the first value of each parameter, sorted by name
+        Map<String, String> parameters = new TreeMap<>();
+        if (parsed.getQuery() != null) {
+            for (String parameter : parsed.getQuery().split("&")) {
+                int equals = parameter.indexOf('=');
+                String name = decode(equals >= 0 ? parameter.substring(0, equals) : parameter);
+                String value = equals >= 0 ? decode(parameter.substring(equals + 1)) : "";
+                if (!name.isEmpty() && !parameters.containsKey(name)) {
+                    parameters.put(name, value);
+                }
+            }
+        }
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(parsed.getProtocol()).append("://")
+                .append(String.valueOf(parsed.getAuthority()).toLowerCase(Locale.US))
+                .append(parsed.getPath());
+
+        char separator = '?';
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            String value = parameter.getValue();
+            if ("q".equals(parameter.getKey())) {
+                value = value.trim().toLowerCase(Locale.US);
+            }
+            builder.append(separator).append(parameter.getKey()).append('=').append(encode(value));
+            separator = '&';
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Return the hex MD5 digest of a key, used as a file name.
+     *
+     * @param key The key.
+     * @return The digest.
+     */
+    public static String hash(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] bytes = digest.digest(key.getBytes(Charset.forName(UTF_8)));
+            StringBuilder builder = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) {
+                builder.append(String.format(Locale.US, "%02x", b));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(key.hashCode());
+        }
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, UTF_8);
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return value;
+        }
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, UTF_8).replace("+", "%20");
+        } catch (UnsupportedEncodingException e) {
+            return value;
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                LOG.log(Level.SEVERE, "Error closing cache file", e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,401 @@
+package udacity.android.booklisting.utility;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import udacity.android.booklisting.model.Book;
+
+/**
+ * This class counts the Books of a search by author, publication year and
+ * category. Books are added incrementally as pages of results arrive and
+ * a Book already counted is skipped, so partial results that are
+ * delivered again do not inflate the counts. The counts are held in open
+ * addressing tables of names or years to primitive ints, so counting
+ * thousands of Books allocates nothing per Book beyond growing the tables.
+ * Counting should be kept off the main thread; every method is
+ * synchronized so the counts may be read from another thread. The counts
+ * can be saved with a BookSnapshot and restored without the Books.
+ *
+ * @author Joseph Stewart
+ * @version 1.1
+ */
+public class BookFacets {
+
+    /**
+     * The properties the Books are counted by.
+     */
+    public enum Facet {
+        AUTHOR,
+        YEAR,
+        CATEGORY
+    }
+
+    /**
+     * Inner class for the number of Books sharing a value of a facet.
+     */
+    public static final class Count {
+        private final String label;
+        private final int count;
+
+        Count(String label, int count) {
+            this.label = label;
+            this.count = count;
+        }
+
+        /**
+         * @return The author, year or category.
+         */
+        public String getLabel() {
+            return label;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            return label + " (" + count + ")";
+        }
+    }
+
+    // The keys of the Books counted so far
+    private final Set<String> counted = new HashSet<>();
+
+    // The number of Books whose counts were restored rather than counted
+    private int restoredBooks;
+
+    private final NameCounts authors = new NameCounts();
+    private final NameCounts categories = new NameCounts();
+    private final YearCounts years = new YearCounts();
+
+    /**
+     * Count the Books not counted before.
+     *
+     * @param books A page or partial list of results.
+     * @return The number of Books that were new.
+     */
+    public synchronized int add(List<Book> books) {
+        int added = 0;
+        for (int i = 0; i < books.size(); i++) {
+            Book book = books.get(i);
+            if (!counted.add(book.getKey())) {
+                continue;
+            }
+            added++;
+
+            for (int index = 0; index < book.getAuthorCount(); index++) {
+                authors.add(book.getAuthor(index), 1);
+            }
+            for (int index = 0; index < book.getCategoryCount(); index++) {
+                categories.add(book.getCategory(index), 1);
+            }
+            if (book.getPublishedYear() != Book.UNKNOWN_YEAR) {
+                years.add(book.getPublishedYear(), 1);
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Return the number of distinct Books counted.
+     */
+    public synchronized int getBookCount() {
+        return counted.size() + restoredBooks;
+    }
+
+    /**
+     * Return the number of Books with the given value of a facet.
+     *
+     * @param facet The facet.
+     * @param label The author, category or year as text.
+     * @return The number of Books, 0 if there are none.
+     */
+    public synchronized int getCount(Facet facet, String label) {
+        if (facet == Facet.YEAR) {
+            try {
+                return years.get(Integer.parseInt(label));
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return (facet == Facet.AUTHOR ? authors : categories).get(label);
+    }
+
+    /**
+     * Return the values of a facet shared by the most Books, most first
+     * and in order of their labels when tied.
+     *
+     * @param facet The facet.
+     * @param limit The maximum number of values.
+     * @return The counts.
+     */
+    public synchronized List<Count> top(Facet facet, int limit) {
+        TopCounts top = new TopCounts(limit);
+        if (facet == Facet.YEAR) {
+            years.collect(top);
+        } else {
+            (facet == Facet.AUTHOR ? authors : categories).collect(top);
+        }
+        return top.toList();
+    }
+
+    /**
+     * Return every value of a facet with its count, in no order, for a
+     * BookSnapshot to save.
+     */
+    synchronized List<Count> counts(Facet facet) {
+        final List<Count> counts = new ArrayList<>();
+        Collector all = new Collector() {
+            @Override
+            public void offer(String label, int count) {
+                counts.add(new Count(label, count));
+            }
+        };
+        if (facet == Facet.YEAR) {
+            years.collect(all);
+        } else {
+            (facet == Facet.AUTHOR ? authors : categories).collect(all);
+        }
+        return counts;
+    }
+
+    /**
+     * Add a count saved by a BookSnapshot. The keys of the restored Books
+     * are not saved, so they must not be added again.
+     *
+     * @param facet The facet.
+     * @param label The author, category or year as text.
+     * @param count The number of Books.
+     */
+    synchronized void restore(Facet facet, String label, int count) {
+        if (facet == Facet.YEAR) {
+            years.add(Integer.parseInt(label), count);
+        } else {
+            (facet == Facet.AUTHOR ? authors : categories).add(label, count);
+        }
+    }
+
+    /**
+     * Add the number of Books whose counts were restored.
+     */
+    synchronized void restoreBookCount(int bookCount) {
+        restoredBooks += bookCount;
+    }
+
+    /**
+     * Forget every Book counted so far.
+     */
+    public synchronized void clear() {
+        restoredBooks = 0;
+        counted.clear();
+        authors.clear();
+        categories.clear();
+        years.clear();
+    }
+
+    /**
+     * Interface for visiting the values of a facet with their counts.
+     */
+    private interface Collector {
+        void offer(String label, int count);
+    }
+
+    /**
+     * Inner class that keeps the largest counts offered to it in a pair
+     * of small arrays, so only the values returned become Count objects.
+     */
+    private static class TopCounts implements Collector {
+        private final String[] labels;
+        private final int[] counts;
+        private int size;
+
+        TopCounts(int limit) {
+            labels = new String[Math.max(limit, 0)];
+            counts = new int[labels.length];
+        }
+
+        @Override
+        public void offer(String label, int count) {
+            // Find where the value would go, keeping the arrays sorted
+            int position = size;
+            while (position > 0 && ranksBefore(label, count, position - 1)) {
+                position--;
+            }
+            if (position == labels.length) {
+                return;
+            }
+
+            int last = Math.min(size, labels.length - 1);
+            System.arraycopy(labels, position, labels, position + 1, last - position);
+            System.arraycopy(counts, position, counts, position + 1, last - position);
+            labels[position] = label;
+            counts[position] = count;
+            size = Math.min(size + 1, labels.length);
+        }
+
+        private boolean ranksBefore(String label, int count, int index) {
+            return count > counts[index] || (count == counts[index] && label.compareTo(labels[index]) < 0);
+        }
+
+        List<Count> toList() {
+            List<Count> list = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                list.add(new Count(labels[i], counts[i]));
+            }
+            return list;
+        }
+    }
+
+    /**
+     * Inner class mapping author or category names to counts with linear
+     * probing. Names are interned by the Book, so a reference comparison
+     * usually finds the slot before equals is needed.
+     */
+    private static class NameCounts {
+        private static final int INITIAL_CAPACITY = 64;
+
+        private String[] keys = new String[INITIAL_CAPACITY];
+        private int[] values = new int[INITIAL_CAPACITY];
+        private int size;
+
+        void add(String key, int count) {
+            int slot = slot(keys, key);
+            if (keys[slot] == null) {
+                keys[slot] = key;
+                if (++size * 2 > keys.length) {
+                    grow();
+                    slot = slot(keys, key);
+                }
+            }
+            values[slot] += count;
+        }
+
+        int get(String key) {
+            int slot = slot(keys, key);
+            return keys[slot] != null ? values[slot] : 0;
+        }
+
+        void collect(Collector top) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != null) {
+                    top.offer(keys[i], values[i]);
+                }
+            }
+        }
+
+        void clear() {
+            keys = new String[INITIAL_CAPACITY];
+            values = new int[INITIAL_CAPACITY];
+            size = 0;
+        }
+
+        private void grow() {
+            String[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new String[oldKeys.length * 2];
+            values = new int[keys.length];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    int slot = slot(keys, oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        /**
+         * Return the slot holding the key, or the empty slot it belongs in.
+         */
+        private static int slot(String[] keys, String key) {
+            int mask = keys.length - 1;
+            int slot = mix(key.hashCode()) & mask;
+            while (keys[slot] != null && keys[slot] != key && !keys[slot].equals(key)) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+
+    /**
+     * Inner class mapping publication years to counts with linear probing.
+     * Year 0 is UNKNOWN_YEAR and never counted, so it marks an empty slot.
+     */
+    private static class YearCounts {
+        private static final int INITIAL_CAPACITY = 32;
+        private static final int EMPTY = Book.UNKNOWN_YEAR;
+
+        private int[] keys = new int[INITIAL_CAPACITY];
+        private int[] values = new int[INITIAL_CAPACITY];
+        private int size;
+
+        void add(int key, int count) {
+            int slot = slot(keys, key);
+            if (keys[slot] == EMPTY) {
+                keys[slot] = key;
+                if (++size * 2 > keys.length) {
+                    grow();
+                    slot = slot(keys, key);
+                }
+            }
+            values[slot] += count;
+        }
+
+        int get(int key) {
+            if (key == EMPTY) {
+                return 0;
+            }
+            int slot = slot(keys, key);
+            return keys[slot] != EMPTY ? values[slot] : 0;
+        }
+
+        void collect(Collector top) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY) {
+                    top.offer(String.valueOf(keys[i]), values[i]);
+                }
+            }
+        }
+
+        void clear() {
+            keys = new int[INITIAL_CAPACITY];
+            values = new int[INITIAL_CAPACITY];
+            size = 0;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new int[keys.length];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    int slot = slot(keys, oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int slot(int[] keys, int key) {
+            int mask = keys.length - 1;
+            int slot = mix(key) & mask;
+            while (keys[slot] != EMPTY && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+
+    /**
+     * Spread the bits of a hash code so that runs of similar keys, such as
+     * consecutive years, do not fill neighbouring slots.
+     */
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+}
@@ -0,0 +1,531 @@
+package udacity.android.booklisting.utility;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+import udacity.android.booklisting.model.Book;
+
+/**
+ * This class is an in memory index of Books by the words in their titles
+ * and author names. The words are stored in a trie whose nodes hold the
+ * postings of the Books containing them, so a query word can be matched
+ * exactly, as a prefix of longer words and, for longer words, within one
+ * or two typos. Books are added incrementally and a search ranks the
+ * Books by how well each query word matched, with title matches counting
+ * for more than author matches. An index may be given a maximum number of
+ * Books, after which each new Book evicts the Book indexed longest ago.
+ * Evicted Books are skipped by searches until as many have been evicted
+ * as the index holds, when the trie is rebuilt from the rest, so the cost
+ * of evicting is constant on average. A search can also be tried without
+ * waiting for Books being added, for callers on the main thread.
+ *
+ * @author Joseph Stewart
+ * @version 2.2
+ */
+public class BookIndex {
+
+    /** Match kinds */
+    private static final int EXACT = 0;
+    private static final int PREFIX = 1;
+    private static final int FUZZY = 2;
+
+    /** Fields, stored in the lowest bit of each posting */
+    private static final int TITLE = 0;
+    private static final int AUTHOR = 1;
+
+    // Score of a query word by match kind and field
+    private static final int[][] SCORES = {
+            {6, 3},
+            {4, 2},
+            {2, 1}
+    };
+
+    // Query words shorter than this are only matched exactly
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final int MIN_FUZZY_LENGTH = 4;
+
+    // Query words at least this long may have two typos
+    private static final int TWO_TYPO_LENGTH = 8;
+
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final int[] NO_POSTINGS = new int[0];
+
+    // Guards the index, and the scratch space shared by searches
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // The most Books indexed
+    private final int maxBooks;
+
+    // Every indexed Book, its position is its document id
+    private final List<Book> books = new ArrayList<>();
+
+    // The document id of the oldest Book not evicted, ids before it are evicted
+    private int firstLive;
+
+    // Keys of the indexed Books so a Book fetched twice is indexed once
+    private final Set<String> keys = new HashSet<>();
+
+    private Node root = new Node();
+
+    // Scratch space for searches, grown with the index and left zeroed
+    private int[] scores = new int[0];
+    private int[] tokenScores = new int[0];
+
+    /**
+     * Inner class for a trie node. Children are kept in arrays sorted by
+     * character, and a node that ends a word holds the postings of that
+     * word as document id and field pairs.
+     */
+    private static final class Node {
+        char[] childKeys = NO_KEYS;
+        Node[] children = NO_CHILDREN;
+        int childCount;
+
+        int[] postings = NO_POSTINGS;
+        int postingCount;
+
+        Node child(char c) {
+            int index = Arrays.binarySearch(childKeys, 0, childCount, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node addChild(char c) {
+            int index = Arrays.binarySearch(childKeys, 0, childCount, c);
+            if (index >= 0) {
+                return children[index];
+            }
+
+            index = -index - 1;
+            if (childCount == childKeys.length) {
+                int capacity = Math.max(2, childCount * 2);
+                childKeys = Arrays.copyOf(childKeys, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            System.arraycopy(childKeys, index, childKeys, index + 1, childCount - index);
+            System.arraycopy(children, index, children, index + 1, childCount - index);
+
+            Node node = new Node();
+            childKeys[index] = c;
+            children[index] = node;
+            childCount++;
+            return node;
+        }
+
+        void addPosting(int posting) {
+            // A word repeated within one field of a Book is posted once
+            if (postingCount > 0 && postings[postingCount - 1] == posting) {
+                return;
+            }
+            if (postingCount == postings.length) {
+                postings = Arrays.copyOf(postings, Math.max(2, postingCount * 2));
+            }
+            postings[postingCount++] = posting;
+        }
+    }
+
+    /**
+     * Constructor for an index without a maximum number of Books.
+     */
+    public BookIndex() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Constructor for an index of at most the given number of Books.
+     *
+     * @param maxBooks The most Books to index.
+     */
+    public BookIndex(int maxBooks) {
+        this.maxBooks = maxBooks;
+    }
+
+    /**
+     * Add the Books to the index, skipping any already indexed. Once the
+     * index is full each Book added evicts the oldest one.
+     *
+     * @param newBooks The Books to add.
+     */
+    public void addAll(List<Book> newBooks) {
+        lock.lock();
+        try {
+            for (Book book : newBooks) {
+                add(book);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void add(Book book) {
+        if (maxBooks <= 0 || !keys.add(book.getKey())) {
+            return;
+        }
+
+        if (books.size() - firstLive >= maxBooks) {
+            evictOldest();
+        }
+        index(book);
+    }
+
+    /**
+     * Evict the oldest Book, and rebuild the trie without the evicted Books
+     * once there are as many of them as Books left.
+     */
+    private void evictOldest() {
+        keys.remove(books.get(firstLive).getKey());
+        books.set(firstLive, null);
+        firstLive++;
+
+        if (firstLive >= books.size() - firstLive) {
+            List<Book> live = new ArrayList<>(books.subList(firstLive, books.size()));
+            books.clear();
+            firstLive = 0;
+            root = new Node();
+            for (Book book : live) {
+                index(book);
+            }
+        }
+    }
+
+    private void index(Book book) {
+        int id = books.size();
+        books.add(book);
+
+        for (String token : tokenize(book.getTitle())) {
+            insert(token, id, TITLE);
+        }
+        for (String author : book.getAuthors()) {
+            for (String token : tokenize(author)) {
+                insert(token, id, AUTHOR);
+            }
+        }
+    }
+
+    /**
+     * Return the Books matching the words of the query, best match first.
+     * Every word is matched exactly and with typos, and the last word is
+     * also matched as a prefix since it may still be being typed.
+     *
+     * @param query The search text.
+     * @param limit The maximum number of Books to return.
+     * @return The matching Books.
+     */
+    public List<Book> search(String query, int limit) {
+        lock.lock();
+        try {
+            return searchLocked(query, limit);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Search as above unless Books are being added or another search is
+     * running, so the caller never waits.
+     *
+     * @param query The search text.
+     * @param limit The maximum number of Books to return.
+     * @return The matching Books, or null if the index is busy.
+     */
+    public List<Book> trySearch(String query, int limit) {
+        if (!lock.tryLock()) {
+            return null;
+        }
+        try {
+            return searchLocked(query, limit);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<Book> searchLocked(String query, int limit) {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        if (scores.length < books.size()) {
+            scores = new int[books.size()];
+            tokenScores = new int[books.size()];
+        }
+        IntList matched = new IntList();
+        IntList tokenMatched = new IntList();
+
+        for (int t = 0; t < tokens.size(); t++) {
+            String token = tokens.get(t);
+            boolean last = t == tokens.size() - 1;
+
+            if (last && token.length() >= MIN_PREFIX_LENGTH) {
+                Node node = find(token);
+                if (node != null) {
+                    collectPrefix(node, tokenScores, tokenMatched);
+                }
+            } else {
+                Node node = find(token);
+                if (node != null) {
+                    collect(node, EXACT, tokenScores, tokenMatched);
+                }
+            }
+
+            if (token.length() >= MIN_FUZZY_LENGTH) {
+                int maxTypos = token.length() >= TWO_TYPO_LENGTH ? 2 : 1;
+                collectFuzzy(token, maxTypos, tokenScores, tokenMatched);
+            }
+
+            // Add the best score of this word for each Book to its total
+            for (int i = 0; i < tokenMatched.size; i++) {
+                int id = tokenMatched.values[i];
+                if (scores[id] == 0) {
+                    matched.add(id);
+                }
+                scores[id] += tokenScores[id];
+                tokenScores[id] = 0;
+            }
+            tokenMatched.size = 0;
+        }
+
+        return top(scores, matched, limit);
+    }
+
+    /**
+     * Return the number of Books in the index.
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return books.size() - firstLive;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void insert(String token, int id, int field) {
+        Node node = root;
+        for (int i = 0; i < token.length(); i++) {
+            node = node.addChild(token.charAt(i));
+        }
+        node.addPosting(id << 1 | field);
+    }
+
+    private Node find(String token) {
+        Node node = root;
+        for (int i = 0; i < token.length() && node != null; i++) {
+            node = node.child(token.charAt(i));
+        }
+        return node;
+    }
+
+    /**
+     * Score the postings of a node for one kind of match, keeping the best
+     * score of each Book for the current query word. Evicted Books are
+     * skipped.
+     */
+    private void collect(Node node, int kind, int[] tokenScores, IntList tokenMatched) {
+        for (int i = 0; i < node.postingCount; i++) {
+            int posting = node.postings[i];
+            int id = posting >>> 1;
+            if (id < firstLive) {
+                continue;
+            }
+            int score = SCORES[kind][posting & 1];
+
+            if (tokenScores[id] == 0) {
+                tokenMatched.add(id);
+            }
+            if (score > tokenScores[id]) {
+                tokenScores[id] = score;
+            }
+        }
+    }
+
+    /**
+     * Score the word ending at the node as an exact match and every longer
+     * word below it as a prefix match.
+     */
+    private void collectPrefix(Node prefix, int[] tokenScores, IntList tokenMatched) {
+        collect(prefix, EXACT, tokenScores, tokenMatched);
+
+        List<Node> stack = new ArrayList<>();
+        for (int i = 0; i < prefix.childCount; i++) {
+            stack.add(prefix.children[i]);
+        }
+        while (!stack.isEmpty()) {
+            Node node = stack.remove(stack.size() - 1);
+            collect(node, PREFIX, tokenScores, tokenMatched);
+            for (int i = 0; i < node.childCount; i++) {
+                stack.add(node.children[i]);
+            }
+        }
+    }
+
+    /**
+     * Score every indexed word within maxTypos edits of the token. The trie
+     * is walked with one row of the edit distance table per node, and a
+     * branch is abandoned once every entry of its row is over the limit.
+     */
+    private void collectFuzzy(String token, int maxTypos, int[] tokenScores, IntList tokenMatched) {
+        int[] firstRow = new int[token.length() + 1];
+        for (int i = 0; i < firstRow.length; i++) {
+            firstRow[i] = i;
+        }
+        for (int i = 0; i < root.childCount; i++) {
+            walkFuzzy(root.children[i], root.childKeys[i], token, firstRow, maxTypos,
+                    tokenScores, tokenMatched);
+        }
+    }
+
+    private void walkFuzzy(Node node, char c, String token, int[] previousRow, int maxTypos,
+                           int[] tokenScores, IntList tokenMatched) {
+        int columns = token.length() + 1;
+        int[] row = new int[columns];
+        row[0] = previousRow[0] + 1;
+
+        int rowMinimum = row[0];
+        for (int i = 1; i < columns; i++) {
+            int insert = row[i - 1] + 1;
+            int delete = previousRow[i] + 1;
+            int replace = previousRow[i - 1] + (token.charAt(i - 1) == c ? 0 : 1);
+            row[i] = Math.min(insert, Math.min(delete, replace));
+            rowMinimum = Math.min(rowMinimum, row[i]);
+        }
+
+        // Exact matches are scored separately
+        int distance = row[columns - 1];
+        if (distance > 0 && distance <= maxTypos && node.postingCount > 0) {
+            collect(node, FUZZY, tokenScores, tokenMatched);
+        }
+
+        if (rowMinimum <= maxTypos) {
+            for (int i = 0; i < node.childCount; i++) {
+                walkFuzzy(node.children[i], node.childKeys[i], token, row, maxTypos,
+                        tokenScores, tokenMatched);
+            }
+        }
+    }
+
+    /**
+     * Return the limit best scoring Books, highest score first and then in
+     * the order the Books were fetched, and clear their scores. The best
+     * Books are selected with a heap of at most limit ids rather than by
+     * sorting every match.
+     */
+    private List<Book> top(int[] scores, IntList matched, int limit) {
+        int[] heap = new int[Math.min(limit, matched.size)];
+        int heapSize = 0;
+
+        for (int i = 0; i < matched.size; i++) {
+            int id = matched.values[i];
+            if (heapSize < heap.length) {
+                heap[heapSize] = id;
+                siftUp(heap, heapSize++, scores);
+            } else if (ranksBefore(id, heap[0], scores)) {
+                heap[0] = id;
+                siftDown(heap, heapSize, scores);
+            }
+        }
+
+        // Empty the heap from the worst of the best Books to the best
+        Book[] results = new Book[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            results[i] = books.get(heap[0]);
+            heap[0] = heap[--heapSize];
+            siftDown(heap, heapSize, scores);
+        }
+
+        for (int i = 0; i < matched.size; i++) {
+            scores[matched.values[i]] = 0;
+        }
+        return new ArrayList<>(Arrays.asList(results));
+    }
+
+    /**
+     * Return true if the first Book ranks before the second.
+     */
+    private static boolean ranksBefore(int a, int b, int[] scores) {
+        return scores[a] != scores[b] ? scores[a] > scores[b] : a < b;
+    }
+
+    // The heap keeps the worst ranked Book at the root
+
+    private static void siftUp(int[] heap, int index, int[] scores) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!ranksBefore(heap[parent], heap[index], scores)) {
+                return;
+            }
+            swap(heap, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, int size, int[] scores) {
+        int index = 0;
+        while (true) {
+            int worst = index;
+            int left = index * 2 + 1;
+            int right = left + 1;
+            if (left < size && ranksBefore(heap[worst], heap[left], scores)) {
+                worst = left;
+            }
+            if (right < size && ranksBefore(heap[worst], heap[right], scores)) {
+                worst = right;
+            }
+            if (worst == index) {
+                return;
+            }
+            swap(heap, index, worst);
+            index = worst;
+        }
+    }
+
+    private static void swap(int[] heap, int a, int b) {
+        int value = heap[a];
+        heap[a] = heap[b];
+        heap[b] = value;
+    }
+
+    /**
+     * Split the text into lower case words of letters and digits.
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+
+        String lower = text.toLowerCase(Locale.US);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Growable list of ints.
+     */
+    private static final class IntList {
+        int[] values = new int[16];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+}
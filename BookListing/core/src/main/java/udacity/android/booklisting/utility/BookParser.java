@@ -0,0 +1,318 @@
+package udacity.android.booklisting.utility;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import udacity.android.booklisting.model.Book;
+import udacity.android.booklisting.model.BookDetail;
+
+/**
+ * This is a utility class that parses a Google Books API volumes response
+ * directly from the InputStream. It pulls one token at a time and skips
+ * every field that is not needed to build a Book, so the response is never
+ * held in memory as a String or a JSON object tree. A single volume
+ * resource is parsed the same way into a BookDetail.
+ *
+ * @author Joseph Stewart
+ * @version 1.5
+ */
+public final class BookParser {
+
+    /** JSON keys */
+    private static final String ITEMS = "items";
+    private static final String ID = "id";
+    private static final String VOLUME_INFO = "volumeInfo";
+    private static final String TITLE = "title";
+    private static final String AUTHORS = "authors";
+    private static final String PREVIEW_LINK = "previewLink";
+    private static final String IMAGE_LINKS = "imageLinks";
+    private static final String SMALL_THUMBNAIL = "smallThumbnail";
+    private static final String PUBLISHED_DATE = "publishedDate";
+    private static final String CATEGORIES = "categories";
+    private static final String SUBTITLE = "subtitle";
+    private static final String PUBLISHER = "publisher";
+    private static final String PAGE_COUNT = "pageCount";
+    private static final String DESCRIPTION = "description";
+    private static final String THUMBNAIL = "thumbnail";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Private constructor to avoid instantiation.
+     */
+    private BookParser() {
+        throw new AssertionError("BookParser class cannot be instantiated.");
+    }
+
+    /**
+     * Parse a volumes response and return the list of Books it contains.
+     * The stream is left open for the caller to close.
+     *
+     * @param inputStream The response body.
+     * @return The list of Books, empty if the response has no items.
+     * @throws IOException If the stream cannot be read or is malformed.
+     */
+    public static List<Book> parse(InputStream inputStream) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, UTF_8));
+        return readResponse(reader);
+    }
+
+    /**
+     * Parse a single volume resource and return its details. The stream
+     * is left open for the caller to close.
+     *
+     * @param inputStream The response body.
+     * @return The BookDetail, built from whatever values the volume has.
+     * @throws IOException If the stream cannot be read or is malformed.
+     */
+    public static BookDetail parseVolume(InputStream inputStream) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, UTF_8));
+        BookDetail.Builder builder = new BookDetail.Builder();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (ID.equals(name)) {
+                builder.id(nextString(reader));
+            } else if (VOLUME_INFO.equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                readVolumeDetail(reader, builder);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return builder.build();
+    }
+
+    /**
+     * Read the top level response object, skipping everything but the items.
+     */
+    private static List<Book> readResponse(JsonReader reader) throws IOException {
+        List<Book> books = new ArrayList<>();
+
+        // Reused for the authors and categories of every item, each Book keeps its own packed copy
+        List<String> authors = new ArrayList<>();
+        List<String> categories = new ArrayList<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (ITEMS.equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    Book book = readItem(reader, authors, categories);
+                    if (book != null) {
+                        books.add(book);
+                    }
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return books;
+    }
+
+    /**
+     * Read a single volume resource and return the Book built from its id
+     * and volumeInfo, or null if the item has no volumeInfo.
+     */
+    private static Book readItem(JsonReader reader, List<String> authors, List<String> categories)
+            throws IOException {
+        String id = null;
+        Book book = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (ID.equals(name)) {
+                id = nextString(reader);
+            } else if (VOLUME_INFO.equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                book = readVolumeInfo(reader, id, authors, categories);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        // The API sends the id before the volumeInfo, rebuild the Book if it came after
+        if (book != null && id != null && book.getId() == null) {
+            book = new Book(id, book.getTitle(), book.getAuthors(), book.getDescriptionUrl(),
+                    book.getThumbnailUrl(), book.getPublishedYear(), book.getCategories());
+        }
+        return book;
+    }
+
+    /**
+     * Read the title, authors, preview link, thumbnail link, publication
+     * year and categories from the volumeInfo object.
+     */
+    private static Book readVolumeInfo(JsonReader reader, String id, List<String> authors,
+                                       List<String> categories) throws IOException {
+        String title = null;
+        String descriptionUrl = null;
+        String thumbnailUrl = null;
+        int publishedYear = Book.UNKNOWN_YEAR;
+        authors.clear();
+        categories.clear();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case TITLE:
+                    title = nextString(reader);
+                    break;
+                case AUTHORS:
+                    readStrings(reader, authors);
+                    break;
+                case PREVIEW_LINK:
+                    descriptionUrl = nextString(reader);
+                    break;
+                case IMAGE_LINKS:
+                    thumbnailUrl = readThumbnail(reader);
+                    break;
+                case PUBLISHED_DATE:
+                    publishedYear = Book.parseYear(nextString(reader));
+                    break;
+                case CATEGORIES:
+                    readStrings(reader, categories);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new Book(id, title, authors, descriptionUrl, thumbnailUrl, publishedYear, categories);
+    }
+
+    /**
+     * Read the values of a BookDetail from the volumeInfo object.
+     */
+    private static void readVolumeDetail(JsonReader reader, BookDetail.Builder builder)
+            throws IOException {
+        List<String> authors = new ArrayList<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case TITLE:
+                    builder.title(nextString(reader));
+                    break;
+                case SUBTITLE:
+                    builder.subtitle(nextString(reader));
+                    break;
+                case AUTHORS:
+                    readStrings(reader, authors);
+                    break;
+                case PUBLISHER:
+                    builder.publisher(nextString(reader));
+                    break;
+                case PUBLISHED_DATE:
+                    builder.publishedDate(nextString(reader));
+                    break;
+                case PAGE_COUNT:
+                    builder.pageCount(nextInt(reader));
+                    break;
+                case DESCRIPTION:
+                    builder.description(nextString(reader));
+                    break;
+                case PREVIEW_LINK:
+                    builder.previewUrl(nextString(reader));
+                    break;
+                case IMAGE_LINKS:
+                    builder.thumbnailUrl(readImageLink(reader, THUMBNAIL));
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        builder.authors(authors);
+    }
+
+    /**
+     * Return the small thumbnail link from the imageLinks object.
+     */
+    private static String readThumbnail(JsonReader reader) throws IOException {
+        return readImageLink(reader, SMALL_THUMBNAIL);
+    }
+
+    /**
+     * Return the link with the given name from the imageLinks object.
+     */
+    private static String readImageLink(JsonReader reader, String linkName) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return null;
+        }
+
+        String thumbnailUrl = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (linkName.equals(reader.nextName())) {
+                thumbnailUrl = nextString(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return thumbnailUrl;
+    }
+
+    /**
+     * Add each string in an authors or categories array to the given list.
+     */
+    private static void readStrings(JsonReader reader, List<String> strings) throws IOException {
+        // Some books don't have author or category info so check first
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return;
+        }
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String string = nextString(reader);
+            if (string != null) {
+                strings.add(string);
+            }
+        }
+        reader.endArray();
+    }
+
+    /**
+     * Return the next number value as an int, or 0 if the value is not
+     * a number.
+     */
+    private static int nextInt(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NUMBER) {
+            return reader.nextInt();
+        }
+        reader.skipValue();
+        return 0;
+    }
+
+    /**
+     * Return the next string value, or null if the value is null or
+     * not a string.
+     */
+    private static String nextString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.STRING) {
+            return reader.nextString();
+        }
+        reader.skipValue();
+        return null;
+    }
+
+}
@@ -0,0 +1,232 @@
+package udacity.android.booklisting.utility;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import udacity.android.booklisting.model.Book;
+
+/**
+ * This class is the last stage of merging result sets: it removes duplicate
+ * results and puts the rest in order of a pluggable Scorer. A Book is a
+ * duplicate if it has the key of a Book before it, or if it is another
+ * edition of the same work, meaning its normalized title and set of
+ * normalized authors match. Both checks are hash lookups, so a result set
+ * of thousands of Books is de-duplicated in linear time; only the Books
+ * that remain are sorted, and not at all when they keep the API order.
+ * The app only applies it to merged live results and keeps API_ORDER,
+ * the relevance order of the API; another Scorer may be given to the
+ * QueryUtility by a caller of the core module.
+ *
+ * @author Joseph Stewart
+ * @version 1.2
+ */
+public class BookRanker {
+
+    // Combining marks left behind when accented letters are decomposed
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private static final String[] LEADING_ARTICLES = {"the ", "a ", "an "};
+
+    /**
+     * Interface for scoring the distinct works of a result set.
+     */
+    public interface Scorer {
+
+        /**
+         * Return the score of a work, higher first. Works with the same
+         * score keep their API order.
+         *
+         * @param book The first edition of the work in the results.
+         * @param position The position of the work among the distinct works, in API order.
+         * @param editions The number of editions of the work in the results.
+         * @return The score.
+         */
+        double score(Book book, int position, int editions);
+    }
+
+    /** Keeps the order the API returned, which is by relevance */
+    public static final Scorer API_ORDER = new Scorer() {
+        @Override
+        public double score(Book book, int position, int editions) {
+            return 0;
+        }
+    };
+
+    private final Scorer scorer;
+
+    /**
+     * Constructor that accepts the Scorer ranking the distinct works.
+     *
+     * @param scorer The Scorer, API_ORDER to only remove duplicates.
+     */
+    public BookRanker(Scorer scorer) {
+        this.scorer = scorer;
+    }
+
+    public Scorer getScorer() {
+        return scorer;
+    }
+
+    /**
+     * Return the Books without duplicates, keeping the first edition of
+     * each work, in order of score.
+     *
+     * @param books The Books in API order.
+     * @return A new list of the distinct works.
+     */
+    public List<Book> rank(List<Book> books) {
+        List<Book> works = new ArrayList<>(books.size());
+        int[] editions = new int[books.size()];
+
+        // The position in works of each key and each work seen so far
+        Map<String, Integer> byKey = new HashMap<>();
+        Map<String, Integer> byWork = new HashMap<>();
+
+        for (int i = 0; i < books.size(); i++) {
+            Book book = books.get(i);
+            String key = book.getKey();
+            String workKey = workKey(book);
+
+            Integer position = byKey.get(key);
+            if (position == null && workKey != null) {
+                position = byWork.get(workKey);
+            }
+
+            if (position == null) {
+                position = works.size();
+                works.add(book);
+                if (workKey != null) {
+                    byWork.put(workKey, position);
+                }
+            }
+            byKey.put(key, position);
+            editions[position]++;
+        }
+
+        if (scorer == API_ORDER || works.size() < 2) {
+            return works;
+        }
+        return sort(works, editions);
+    }
+
+    private List<Book> sort(List<Book> works, int[] editions) {
+        final double[] scores = new double[works.size()];
+        Integer[] order = new Integer[works.size()];
+        for (int i = 0; i < works.size(); i++) {
+            scores[i] = scorer.score(works.get(i), i, editions[i]);
+            order[i] = i;
+        }
+
+        // A stable sort, so ties keep the API order
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Double.compare(scores[b], scores[a]);
+            }
+        });
+
+        List<Book> ranked = new ArrayList<>(works.size());
+        for (Integer index : order) {
+            ranked.add(works.get(index));
+        }
+        return ranked;
+    }
+
+    /**
+     * Return the key of the work a Book is an edition of: its normalized
+     * title and the sorted set of its normalized authors. Books without a
+     * title or without authors are not matched to a work.
+     *
+     * @param book The Book.
+     * @return The work key, or null.
+     */
+    public static String workKey(Book book) {
+        String title = normalizeTitle(book.getTitle());
+        if (title.isEmpty() || book.getAuthorCount() == 0) {
+            return null;
+        }
+
+        String[] authors = new String[book.getAuthorCount()];
+        for (int i = 0; i < authors.length; i++) {
+            authors[i] = normalize(book.getAuthor(i));
+        }
+        Arrays.sort(authors);
+
+        StringBuilder builder = new StringBuilder(title);
+        String previous = null;
+        for (String author : authors) {
+            if (!author.isEmpty() && !author.equals(previous)) {
+                builder.append('\n').append(author);
+            }
+            previous = author;
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Return a title normalized for comparison, without a leading article.
+     *
+     * @param title The title, or null.
+     * @return The normalized title, empty if there is none.
+     */
+    static String normalizeTitle(String title) {
+        String normalized = normalize(title);
+        for (String article : LEADING_ARTICLES) {
+            if (normalized.startsWith(article)) {
+                return normalized.substring(article.length());
+            }
+        }
+        return normalized;
+    }
+
+    /**
+     * Return the text in lower case without accents, with each run of
+     * punctuation and spaces replaced by a single space, so that "J.R.R.
+     * Tolkien" and "J. R. R. Tolkien" are the same author.
+     *
+     * @param text The text, or null.
+     * @return The normalized text, empty if there is none.
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+
+        String lower = (isAscii(text) ? text
+                : COMBINING_MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll(""))
+                .toLowerCase(Locale.US);
+
+        StringBuilder builder = new StringBuilder(lower.length());
+        boolean space = false;
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (space && builder.length() > 0) {
+                    builder.append(' ');
+                }
+                builder.append(c);
+                space = false;
+            } else {
+                space = true;
+            }
+        }
+        return builder.toString();
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 0x7F) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,509 @@
+package udacity.android.booklisting.utility;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import udacity.android.booklisting.model.Book;
+
+/**
+ * This class saves a list of Books to a snapshot file and restores it
+ * without parsing the whole file. A snapshot starts with a version header
+ * and the key it was saved for, followed by a table of every distinct
+ * string, such as titles and author names, and the byte length of each
+ * string and each row as varints. Each row then refers to its strings by
+ * their index in the table. The rows are followed by the key and work key
+ * of every Book in sorted order, so a restored list can be checked for a
+ * Book without decoding its rows, and by the BookFacets counts of the
+ * Books, so they need not be counted again. The file is memory mapped
+ * when restored and only the two length indexes are decoded up front; a
+ * row, and the strings it uses, are decoded the first time the row is
+ * read.
+ *
+ * @author Joseph Stewart
+ * @version 1.1
+ */
+public final class BookSnapshot {
+
+    private static final Logger LOG = Logger.getLogger(BookSnapshot.class.getName());
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int MAGIC = 0x424B534E;
+    private static final int VERSION = 2;
+
+    // Stands for a null string wherever a string is referenced
+    private static final int NULL_REFERENCE = 0;
+
+    /**
+     * Private constructor to avoid instantiation.
+     */
+    private BookSnapshot() {
+        throw new AssertionError("BookSnapshot class cannot be instantiated.");
+    }
+
+    /**
+     * Inner class for a restored snapshot.
+     */
+    public static final class Restored {
+        private final SnapshotList books;
+        private final int indexStart;
+        private final int keyCount;
+        private final int facetsStart;
+
+        Restored(SnapshotList books, int indexStart, int keyCount, int facetsStart) {
+            this.books = books;
+            this.indexStart = indexStart;
+            this.keyCount = keyCount;
+            this.facetsStart = facetsStart;
+        }
+
+        /**
+         * Return the Books. The list is backed by the mapped file and
+         * decodes each Book when it is first read, so it can be restored on
+         * the main thread; it is unmodifiable and may be read from any
+         * thread.
+         */
+        public List<Book> getBooks() {
+            return books;
+        }
+
+        /**
+         * Return whether one of the Books has the key or work key, found
+         * by a binary search that decodes only the keys it compares.
+         *
+         * @param key The key of a Book or of the work it is an edition of.
+         * @return True if a restored Book has the key.
+         */
+        public boolean containsKey(String key) {
+            int low = 0;
+            int high = keyCount - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int comparison = books.string(books.buffer.getInt(indexStart + middle * 4)).compareTo(key);
+                if (comparison < 0) {
+                    low = middle + 1;
+                } else if (comparison > 0) {
+                    high = middle - 1;
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Add the saved counts of the Books to the facets.
+         *
+         * @param facets Facets which have not counted any of the Books.
+         */
+        public void restoreFacets(BookFacets facets) {
+            Cursor cursor = new Cursor(books.buffer, facetsStart);
+            facets.restoreBookCount(cursor.varint());
+            for (BookFacets.Facet facet : BookFacets.Facet.values()) {
+                int values = cursor.varint();
+                for (int i = 0; i < values; i++) {
+                    String label = books.string(cursor.varint());
+                    facets.restore(facet, label, cursor.varint());
+                }
+            }
+        }
+    }
+
+    /**
+     * Save the Books to the file, replacing any snapshot already there.
+     * The snapshot is written to a temporary file first, so a snapshot
+     * that is being restored is never seen half written.
+     *
+     * @param file The snapshot file.
+     * @param key Identifies what the Books are the results of.
+     * @param books The Books.
+     * @param facets The counts of the Books, or null to save none.
+     * @return True if the snapshot was saved.
+     */
+    public static boolean write(File file, String key, List<Book> books, BookFacets facets) {
+        File directory = file.getParentFile();
+        if (directory != null && !directory.exists() && !directory.mkdirs()) {
+            LOG.severe("Unable to create snapshot directory " + directory);
+            return false;
+        }
+
+        File temporary = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+            writeSnapshot(out, key, books, facets);
+            out.close();
+            out = null;
+
+            if (!temporary.renameTo(file)) {
+                throw new IOException("Unable to rename " + temporary + " to " + file);
+            }
+            return true;
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "Problem writing snapshot", e);
+            closeQuietly(out);
+            temporary.delete();
+            return false;
+        }
+    }
+
+    /**
+     * Restore the Books saved to the file for the key.
+     *
+     * @param file The snapshot file.
+     * @param key The key the Books must have been saved for.
+     * @return The snapshot, or null if there is no valid snapshot for the key.
+     */
+    public static Restored read(File file, String key) {
+        if (!file.exists()) {
+            return null;
+        }
+
+        RandomAccessFile in = null;
+        try {
+            in = new RandomAccessFile(file, "r");
+            FileChannel channel = in.getChannel();
+
+            // The mapping stays valid once the file is closed
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return open(buffer, key);
+        } catch (IOException | RuntimeException e) {
+            LOG.log(Level.SEVERE, "Problem reading snapshot", e);
+            file.delete();
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Delete all but the most recently written snapshots in a directory.
+     *
+     * @param directory The directory holding only snapshots.
+     * @param keep The number of snapshots to keep.
+     */
+    public static void trim(File directory, int keep) {
+        File[] files = directory.listFiles();
+        if (files == null || files.length <= keep) {
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long difference = b.lastModified() - a.lastModified();
+                return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+            }
+        });
+        for (int i = keep; i < files.length; i++) {
+            if (!files[i].delete()) {
+                LOG.warning("Unable to delete snapshot " + files[i]);
+            }
+        }
+    }
+
+    private static void writeSnapshot(DataOutputStream out, String key, List<Book> books,
+                                      BookFacets facets) throws IOException {
+        // Encode the rows first, collecting each distinct string in the table
+        Map<String, Integer> references = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        ByteArrayOutputStream rows = new ByteArrayOutputStream();
+        int[] rowLengths = new int[books.size()];
+
+        for (int i = 0; i < books.size(); i++) {
+            Book book = books.get(i);
+            int start = rows.size();
+
+            writeReference(rows, references, strings, book.getId());
+            writeReference(rows, references, strings, book.getTitle());
+            writeVarint(rows, book.getAuthorCount());
+            for (int index = 0; index < book.getAuthorCount(); index++) {
+                writeReference(rows, references, strings, book.getAuthor(index));
+            }
+            writeReference(rows, references, strings, book.getDescriptionUrl());
+            writeReference(rows, references, strings, book.getThumbnailUrl());
+            writeVarint(rows, book.getPublishedYear());
+            writeVarint(rows, book.getCategoryCount());
+            for (int index = 0; index < book.getCategoryCount(); index++) {
+                writeReference(rows, references, strings, book.getCategory(index));
+            }
+
+            rowLengths[i] = rows.size() - start;
+        }
+
+        // The keys are compared as strings when searched, so sort them the same way
+        TreeSet<String> keys = new TreeSet<>();
+        for (int i = 0; i < books.size(); i++) {
+            Book book = books.get(i);
+            keys.add(book.getKey());
+            String workKey = BookRanker.workKey(book);
+            if (workKey != null) {
+                keys.add(workKey);
+            }
+        }
+        ByteArrayOutputStream index = new ByteArrayOutputStream();
+        for (String bookKey : keys) {
+            int reference = reference(references, strings, bookKey);
+            index.write(reference >>> 24);
+            index.write(reference >>> 16);
+            index.write(reference >>> 8);
+            index.write(reference);
+        }
+
+        ByteArrayOutputStream counts = new ByteArrayOutputStream();
+        writeVarint(counts, facets != null ? facets.getBookCount() : 0);
+        for (BookFacets.Facet facet : BookFacets.Facet.values()) {
+            List<BookFacets.Count> values =
+                    facets != null ? facets.counts(facet) : new ArrayList<BookFacets.Count>();
+            writeVarint(counts, values.size());
+            for (BookFacets.Count count : values) {
+                writeReference(counts, references, strings, count.getLabel());
+                writeVarint(counts, count.getCount());
+            }
+        }
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        byte[] keyBytes = key.getBytes(UTF_8);
+        writeVarint(header, keyBytes.length);
+        header.write(keyBytes);
+        writeVarint(header, strings.size());
+        writeVarint(header, books.size());
+        writeVarint(header, keys.size());
+        writeVarint(header, counts.size());
+
+        ByteArrayOutputStream table = new ByteArrayOutputStream();
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(UTF_8);
+            writeVarint(header, bytes.length);
+            table.write(bytes);
+        }
+        for (int rowLength : rowLengths) {
+            writeVarint(header, rowLength);
+        }
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        header.writeTo(out);
+        table.writeTo(out);
+        rows.writeTo(out);
+        index.writeTo(out);
+        counts.writeTo(out);
+    }
+
+    private static void writeReference(ByteArrayOutputStream out, Map<String, Integer> references,
+                                       List<String> strings, String value) {
+        writeVarint(out, value != null ? reference(references, strings, value) : NULL_REFERENCE);
+    }
+
+    /**
+     * Return the reference to a string, adding it to the table if it is new.
+     */
+    private static int reference(Map<String, Integer> references, List<String> strings, String value) {
+        Integer reference = references.get(value);
+        if (reference == null) {
+            strings.add(value);
+            reference = strings.size();
+            references.put(value, reference);
+        }
+        return reference;
+    }
+
+    /**
+     * Write a non-negative int in as few bytes as it needs, seven bits at
+     * a time with the high bit set on every byte but the last.
+     */
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Check the header of a mapped snapshot and decode its length indexes.
+     */
+    private static Restored open(ByteBuffer buffer, String key) throws IOException {
+        if (buffer.limit() < 8 || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a snapshot of version " + VERSION);
+        }
+
+        Cursor cursor = new Cursor(buffer, 8);
+        int keyLength = cursor.varint();
+        if (!key.equals(cursor.string(keyLength))) {
+            return null;
+        }
+
+        int stringCount = cursor.varint();
+        int bookCount = cursor.varint();
+        int keyCount = cursor.varint();
+        int countsLength = cursor.varint();
+
+        // Turn the lengths into offsets from the start of the table and the rows
+        int[] stringOffsets = new int[stringCount + 1];
+        for (int i = 0; i < stringCount; i++) {
+            stringOffsets[i + 1] = stringOffsets[i] + cursor.varint();
+        }
+        int[] rowOffsets = new int[bookCount + 1];
+        for (int i = 0; i < bookCount; i++) {
+            rowOffsets[i + 1] = rowOffsets[i] + cursor.varint();
+        }
+
+        int tableStart = cursor.position;
+        int rowsStart = tableStart + stringOffsets[stringCount];
+        int indexStart = rowsStart + rowOffsets[bookCount];
+        int countsStart = indexStart + keyCount * 4;
+        if (countsStart + countsLength != buffer.limit()) {
+            throw new IOException("Snapshot is truncated");
+        }
+        return new Restored(new SnapshotList(buffer, tableStart, stringOffsets, rowsStart, rowOffsets),
+                indexStart, keyCount, countsStart);
+    }
+
+    /**
+     * Inner class for the Books of a mapped snapshot. Each Book and string
+     * is kept once decoded; two threads decoding the same row at once each
+     * get an equal, immutable Book.
+     */
+    private static final class SnapshotList extends AbstractList<Book> implements RandomAccess {
+        private final ByteBuffer buffer;
+        private final int tableStart;
+        private final int[] stringOffsets;
+        private final int rowsStart;
+        private final int[] rowOffsets;
+
+        private final String[] strings;
+        private final Book[] books;
+
+        SnapshotList(ByteBuffer buffer, int tableStart, int[] stringOffsets, int rowsStart,
+                     int[] rowOffsets) {
+            this.buffer = buffer;
+            this.tableStart = tableStart;
+            this.stringOffsets = stringOffsets;
+            this.rowsStart = rowsStart;
+            this.rowOffsets = rowOffsets;
+            this.strings = new String[stringOffsets.length - 1];
+            this.books = new Book[rowOffsets.length - 1];
+        }
+
+        @Override
+        public Book get(int index) {
+            if (index < 0 || index >= books.length) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + books.length);
+            }
+
+            Book book = books[index];
+            if (book == null) {
+                book = decode(new Cursor(buffer, rowsStart + rowOffsets[index]));
+                books[index] = book;
+            }
+            return book;
+        }
+
+        @Override
+        public int size() {
+            return books.length;
+        }
+
+        private Book decode(Cursor cursor) {
+            String id = string(cursor.varint());
+            String title = string(cursor.varint());
+            List<String> authors = strings(cursor);
+            String descriptionUrl = string(cursor.varint());
+            String thumbnailUrl = string(cursor.varint());
+            int publishedYear = cursor.varint();
+            List<String> categories = strings(cursor);
+            return new Book(id, title, authors, descriptionUrl, thumbnailUrl, publishedYear, categories);
+        }
+
+        private List<String> strings(Cursor cursor) {
+            int count = cursor.varint();
+            List<String> values = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                values.add(string(cursor.varint()));
+            }
+            return values;
+        }
+
+        private String string(int reference) {
+            if (reference == NULL_REFERENCE) {
+                return null;
+            }
+
+            int index = reference - 1;
+            String string = strings[index];
+            if (string == null) {
+                Cursor cursor = new Cursor(buffer, tableStart + stringOffsets[index]);
+                string = cursor.string(stringOffsets[index + 1] - stringOffsets[index]);
+                strings[index] = string;
+            }
+            return string;
+        }
+    }
+
+    /**
+     * Inner class reading varints and strings from a position in the
+     * buffer with absolute gets, so the buffer itself is never moved and
+     * can be shared between threads.
+     */
+    private static final class Cursor {
+        private final ByteBuffer buffer;
+        int position;
+
+        Cursor(ByteBuffer buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        int varint() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                byte b = buffer.get(position++);
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalStateException("Malformed varint at " + position);
+        }
+
+        String string(int length) {
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = buffer.get(position++);
+            }
+            return new String(bytes, UTF_8);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                LOG.log(Level.SEVERE, "Error closing snapshot file", e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+package udacity.android.booklisting.utility;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class stops requests to a failing API. After a number of failures
+ * in a row the circuit opens and requests are refused straight away, so
+ * callers fall back to cached results instead of waiting on timeouts and
+ * retries. Once the open period has passed a single trial request is let
+ * through: if it succeeds the circuit closes, if it fails the circuit
+ * opens again.
+ *
+ * @author Joseph Stewart
+ * @version 1.0
+ */
+public class CircuitBreaker {
+
+    /**
+     * The states of the circuit.
+     */
+    public enum State {
+        /** Requests are sent */
+        CLOSED,
+        /** Requests are refused */
+        OPEN,
+        /** A trial request is being sent */
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private int failures;
+
+    // When the circuit opened or the trial request was let through
+    private long openedAt;
+
+    /**
+     * Constructor that accepts the number of failures in a row that open
+     * the circuit and how long it stays open.
+     *
+     * @param failureThreshold The failures that open the circuit.
+     * @param openMillis How long requests are refused before a trial request.
+     */
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+    }
+
+    /**
+     * Return true if a request may be sent. When the open period has
+     * passed this lets one trial request through, and another only if the
+     * trial has not reported back within the same period.
+     *
+     * @return True if the request may be sent.
+     */
+    public synchronized boolean allowRequest() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        long now = System.nanoTime();
+        if (now - openedAt < openNanos) {
+            return false;
+        }
+        state = State.HALF_OPEN;
+        openedAt = now;
+        return true;
+    }
+
+    /**
+     * Record a request that reached a working API, closing the circuit.
+     */
+    public synchronized void recordSuccess() {
+        failures = 0;
+        state = State.CLOSED;
+    }
+
+    /**
+     * Record a failed request, opening the circuit after enough failures
+     * in a row or when the trial request fails.
+     */
+    public synchronized void recordFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Close the circuit and forget the failures recorded so far.
+     */
+    public synchronized void reset() {
+        recordSuccess();
+    }
+
+}
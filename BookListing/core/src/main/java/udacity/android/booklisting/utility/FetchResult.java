@@ -0,0 +1,185 @@
+package udacity.android.booklisting.utility;
+
+import java.net.HttpURLConnection;
+
+/**
+ * This class is the outcome of a query to the Google Books API. Instead
+ * of an empty or null response a caller is told whether the request
+ * succeeded, was answered with an error, failed on the network, was
+ * canceled or was never sent because the API is failing, along with the
+ * number of attempts made and how long the server asked to wait before
+ * the next one.
+ *
+ * @author Joseph Stewart
+ * @version 1.2
+ */
+public class FetchResult {
+
+    // Too Many Requests, which HttpURLConnection has no constant for
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    /**
+     * The kinds of outcome of a query.
+     */
+    public enum Status {
+        /** The Books were fetched */
+        OK,
+        /** The cached Books are still current */
+        NOT_MODIFIED,
+        /** The server answered with an error response code */
+        HTTP_ERROR,
+        /** The request failed before a response arrived */
+        NETWORK_ERROR,
+        /** The request was aborted by the caller */
+        CANCELED,
+        /** The request was not sent because the circuit breaker is open */
+        CIRCUIT_OPEN,
+        /** The query url is malformed */
+        INVALID_URL
+    }
+
+    private final Status status;
+    private final BookCache.Entry entry;
+    private final int responseCode;
+    private final long bytesReceived;
+    private final int attempts;
+    private final Exception error;
+    private final long retryAfterMillis;
+
+    private FetchResult(Status status, BookCache.Entry entry, int responseCode,
+                        long bytesReceived, int attempts, Exception error) {
+        this(status, entry, responseCode, bytesReceived, attempts, error, -1);
+    }
+
+    private FetchResult(Status status, BookCache.Entry entry, int responseCode,
+                        long bytesReceived, int attempts, Exception error, long retryAfterMillis) {
+        this.status = status;
+        this.entry = entry;
+        this.responseCode = responseCode;
+        this.bytesReceived = bytesReceived;
+        this.attempts = attempts;
+        this.error = error;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    static FetchResult ok(BookCache.Entry entry, long bytesReceived, int attempts) {
+        return new FetchResult(Status.OK, entry, HttpURLConnection.HTTP_OK, bytesReceived,
+                attempts, null);
+    }
+
+    static FetchResult notModified(BookCache.Entry entry, int attempts) {
+        return new FetchResult(Status.NOT_MODIFIED, entry, HttpURLConnection.HTTP_NOT_MODIFIED,
+                0, attempts, null);
+    }
+
+    static FetchResult httpError(int responseCode, int attempts) {
+        return httpError(responseCode, -1, attempts);
+    }
+
+    /**
+     * Return an HTTP_ERROR result, keeping the time to wait before a retry
+     * only for the responses it is defined for: 429 and 503.
+     */
+    static FetchResult httpError(int responseCode, long retryAfterMillis, int attempts) {
+        boolean canAskToWait = responseCode == HTTP_TOO_MANY_REQUESTS
+                || responseCode == HttpURLConnection.HTTP_UNAVAILABLE;
+        return new FetchResult(Status.HTTP_ERROR, null, responseCode, 0, attempts, null,
+                canAskToWait ? retryAfterMillis : -1);
+    }
+
+    static FetchResult networkError(Exception error, int attempts) {
+        return new FetchResult(Status.NETWORK_ERROR, null, 0, 0, attempts, error);
+    }
+
+    static FetchResult canceled(int attempts) {
+        return new FetchResult(Status.CANCELED, null, 0, 0, attempts, null);
+    }
+
+    static FetchResult circuitOpen(int attempts) {
+        return new FetchResult(Status.CIRCUIT_OPEN, null, 0, 0, attempts, null);
+    }
+
+    static FetchResult invalidUrl() {
+        return new FetchResult(Status.INVALID_URL, null, 0, 0, 0, null);
+    }
+
+    /**
+     * Return a copy of this result counting the given number of attempts.
+     */
+    FetchResult withAttempts(int totalAttempts) {
+        return new FetchResult(status, entry, responseCode, bytesReceived, totalAttempts, error,
+                retryAfterMillis);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Return the entry holding the fetched or still current Books, or
+     * null unless the status is OK or NOT_MODIFIED.
+     */
+    public BookCache.Entry getEntry() {
+        return entry;
+    }
+
+    /**
+     * Return the HTTP status code of the last response, or 0 if no
+     * response arrived.
+     */
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    /**
+     * Return the number of body bytes of the successful response received
+     * over the network, before decompression.
+     */
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * Return the number of requests sent, including retries and a hedged
+     * request.
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Return the exception behind a NETWORK_ERROR, or null.
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    /**
+     * Return how long the server asked to wait before retrying a 429 or
+     * 503 response, or -1 if it did not say.
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+
+    public boolean isSuccessful() {
+        return entry != null;
+    }
+
+    /**
+     * Return true if the failure is likely to be temporary: a network
+     * error, 429 Too Many Requests or a 5xx response.
+     */
+    public boolean isRetryable() {
+        return status == Status.NETWORK_ERROR
+                || (status == Status.HTTP_ERROR && (responseCode == HTTP_TOO_MANY_REQUESTS
+                        || responseCode >= HttpURLConnection.HTTP_INTERNAL_ERROR));
+    }
+
+    @Override
+    public String toString() {
+        return status + (responseCode != 0 ? " " + responseCode : "") + " after " + attempts
+                + (attempts == 1 ? " attempt" : " attempts");
+    }
+
+}
@@ -0,0 +1,488 @@
+package udacity.android.booklisting.utility;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * This is a utility class for making GET requests to the Google Books API.
+ * Connections are never disconnected, instead each response body is read to
+ * the end and closed so the connection goes back to the keep-alive pool for
+ * the next request. Compressed bodies are requested and conditional headers
+ * are sent when the caller holds an ETag or Last-Modified date. Requests
+ * go through a pluggable Transport, HttpURLConnection by default, so the
+ * same code can run on a server or against a test double. Connect time,
+ * time to first byte and body size are recorded in the Metrics. Other
+ * files, such as cover images, are downloaded without touching the API
+ * request Metrics, so those only measure the Books API. The connection to
+ * a host can be warmed before the first request is made. The size of the
+ * keep-alive pool is a setting of the whole process, so it is left to the
+ * app.
+ *
+ * @author Joseph Stewart
+ * @version 1.7
+ */
+public final class HttpClient {
+
+    private static final int READ_TIMEOUT = 10000;
+    private static final int CONNECT_TIMEOUT = 15000;
+
+    private static final String GZIP = "gzip";
+
+    // The date format of HTTP headers, such as Retry-After
+    private static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+    private static final Transport DEFAULT_TRANSPORT = new UrlConnectionTransport(true);
+
+    // Downloads other than API requests are not timed
+    private static final Transport UNTIMED_TRANSPORT = new UrlConnectionTransport(false);
+
+    private static volatile Transport transport = DEFAULT_TRANSPORT;
+
+    /**
+     * Private constructor to avoid instantiation.
+     */
+    private HttpClient() {
+        throw new AssertionError("HttpClient class cannot be instantiated.");
+    }
+
+    /**
+     * Inner class representing a response. The body must be closed once
+     * it has been read so the connection can be reused.
+     */
+    public static class Response implements Closeable {
+        private final int responseCode;
+        private final String etag;
+        private final String lastModified;
+        private final String retryAfter;
+        private final CountingInputStream rawStream;
+        private final InputStream body;
+
+        // Where the body size is recorded once the body is closed
+        private Histogram bytesHistogram = Metrics.HTTP_BYTES;
+
+        /**
+         * Constructor for a Transport to build the Response it received.
+         * The body is decompressed here if its content encoding is gzip.
+         *
+         * @param responseCode The HTTP status code.
+         * @param etag The ETag header, or null.
+         * @param lastModified The Last-Modified header, or null.
+         * @param contentEncoding The Content-Encoding header, or null.
+         * @param stream The body as received, or null if there is none.
+         * @throws IOException If a gzip body cannot be read.
+         */
+        public Response(int responseCode, String etag, String lastModified,
+                        String contentEncoding, InputStream stream) throws IOException {
+            this(responseCode, etag, lastModified, null, contentEncoding, stream);
+        }
+
+        /**
+         * Constructor for a Transport to build a Response that may ask the
+         * client to wait before retrying.
+         *
+         * @param responseCode The HTTP status code.
+         * @param etag The ETag header, or null.
+         * @param lastModified The Last-Modified header, or null.
+         * @param retryAfter The Retry-After header, or null.
+         * @param contentEncoding The Content-Encoding header, or null.
+         * @param stream The body as received, or null if there is none.
+         * @throws IOException If a gzip body cannot be read.
+         */
+        public Response(int responseCode, String etag, String lastModified, String retryAfter,
+                        String contentEncoding, InputStream stream) throws IOException {
+            this.responseCode = responseCode;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.retryAfter = retryAfter;
+
+            if (stream != null) {
+                rawStream = new CountingInputStream(stream);
+                body = GZIP.equalsIgnoreCase(contentEncoding) ? new GZIPInputStream(rawStream) : rawStream;
+            } else {
+                rawStream = null;
+                body = null;
+            }
+        }
+
+        public int getResponseCode() {
+            return responseCode;
+        }
+
+        public boolean isSuccessful() {
+            return responseCode == HttpURLConnection.HTTP_OK;
+        }
+
+        /**
+         * Return true if the server answered a conditional request with
+         * 304, meaning the copy the caller holds is still current.
+         */
+        public boolean isNotModified() {
+            return responseCode == HttpURLConnection.HTTP_NOT_MODIFIED;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Return how long the server asked the client to wait before
+         * retrying, given as a number of seconds or an HTTP date.
+         *
+         * @return The time to wait, 0 if the date has passed, or -1 if
+         * there is no valid Retry-After header.
+         */
+        public long getRetryAfterMillis() {
+            if (retryAfter == null) {
+                return -1;
+            }
+            String value = retryAfter.trim();
+            try {
+                long seconds = Long.parseLong(value);
+                return seconds >= 0 ? TimeUnit.SECONDS.toMillis(seconds) : -1;
+            } catch (NumberFormatException e) {
+                // Not a number of seconds, so it should be a date
+            }
+
+            SimpleDateFormat format = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("GMT"));
+            try {
+                return Math.max(0, format.parse(value).getTime() - System.currentTimeMillis());
+            } catch (ParseException e) {
+                return -1;
+            }
+        }
+
+        /**
+         * Return the decoded response body, or null if there is none.
+         */
+        public InputStream getBody() {
+            return body;
+        }
+
+        /**
+         * Return the number of body bytes received over the network,
+         * before any decompression.
+         */
+        public long getBytesReceived() {
+            return rawStream != null ? rawStream.getCount() : 0;
+        }
+
+        /**
+         * Read whatever is left of the body and close it, which returns
+         * the connection to the pool.
+         */
+        @Override
+        public void close() throws IOException {
+            if (body == null) {
+                return;
+            }
+            try {
+                byte[] buffer = new byte[1024];
+                while (rawStream.read(buffer) != -1) {
+                    // Discard the remaining bytes
+                }
+            } finally {
+                body.close();
+                bytesHistogram.record(rawStream.getCount());
+            }
+        }
+    }
+
+    /**
+     * Inner class that lets another thread abort a request. Cancelling
+     * closes the connection, so a blocked connect or read fails straight
+     * away instead of waiting for its timeout.
+     */
+    public static class Cancellation {
+        private Closeable connection;
+        private boolean canceled;
+
+        /**
+         * Abort the request, or the next request made with this Cancellation.
+         * Closing a connection can block, so it is done outside the lock.
+         */
+        public void cancel() {
+            Closeable attached;
+            synchronized (this) {
+                canceled = true;
+                notifyAll();
+                attached = connection;
+            }
+            if (attached != null) {
+                try {
+                    attached.close();
+                } catch (IOException e) {
+                    // The request fails either way
+                }
+            }
+        }
+
+        public synchronized boolean isCanceled() {
+            return canceled;
+        }
+
+        /**
+         * Wait for the given time, returning early if the request is
+         * canceled, for example while backing off before a retry.
+         *
+         * @param millis The time to wait.
+         * @return False if the request was canceled.
+         * @throws InterruptedException If the waiting thread is interrupted.
+         */
+        synchronized boolean sleep(long millis) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+            long remaining = millis;
+            while (!canceled && remaining > 0) {
+                wait(remaining);
+                remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            }
+            return !canceled;
+        }
+
+        /**
+         * Called by a Transport with the means to abort its request.
+         *
+         * @param connection Closed to abort the request.
+         * @throws IOException If the request was already canceled.
+         */
+        public synchronized void attach(Closeable connection) throws IOException {
+            if (canceled) {
+                throw new InterruptedIOException("Request canceled");
+            }
+            this.connection = connection;
+        }
+    }
+
+    /**
+     * Interface for the network layer that performs a GET request.
+     */
+    public interface Transport {
+
+        /**
+         * Make a GET request with the given headers.
+         *
+         * @param url The URL to request.
+         * @param headers The request headers.
+         * @param cancellation The Cancellation to attach the request to, or null.
+         * @return The Response, which the caller closes.
+         * @throws IOException If the request fails or is canceled.
+         */
+        Response get(URL url, Map<String, String> headers, Cancellation cancellation) throws IOException;
+    }
+
+    /**
+     * Replace the Transport used for every request.
+     *
+     * @param newTransport The Transport, or null to use HttpURLConnection.
+     */
+    public static void setTransport(Transport newTransport) {
+        transport = newTransport != null ? newTransport : DEFAULT_TRANSPORT;
+    }
+
+    /**
+     * Make a GET request to the given URL.
+     *
+     * @param url The URL to request.
+     * @param etag The ETag of the copy held by the caller, or null.
+     * @param lastModified The Last-Modified date of the copy held by the caller, or null.
+     * @return The Response, which must be closed.
+     * @throws IOException If the request fails.
+     */
+    public static Response get(URL url, String etag, String lastModified) throws IOException {
+        return get(url, etag, lastModified, null);
+    }
+
+    /**
+     * Make a GET request to the given URL that can be aborted through
+     * the given Cancellation.
+     *
+     * @param url The URL to request.
+     * @param etag The ETag of the copy held by the caller, or null.
+     * @param lastModified The Last-Modified date of the copy held by the caller, or null.
+     * @param cancellation The Cancellation for the request, or null.
+     * @return The Response, which must be closed.
+     * @throws IOException If the request fails or is canceled.
+     */
+    public static Response get(URL url, String etag, String lastModified,
+                               Cancellation cancellation) throws IOException {
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Accept-Encoding", GZIP);
+
+        if (etag != null) {
+            headers.put("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            headers.put("If-Modified-Since", lastModified);
+        }
+
+        Metrics.HTTP_REQUESTS.increment();
+        return transport.get(url, Collections.unmodifiableMap(headers), cancellation);
+    }
+
+    /**
+     * Make a GET request for a file that is not a Books API response, such
+     * as a cover image. It is counted in the image Metrics instead of the
+     * request Metrics, and its connect and first byte times are not
+     * recorded, so image traffic does not skew the latency of the API.
+     *
+     * @param url The URL to request.
+     * @param cancellation The Cancellation for the request, or null.
+     * @return The Response, which must be closed.
+     * @throws IOException If the request fails or is canceled.
+     */
+    public static Response download(URL url, Cancellation cancellation) throws IOException {
+        Transport current = transport;
+        Response response = (current == DEFAULT_TRANSPORT ? UNTIMED_TRANSPORT : current)
+                .get(url, Collections.<String, String>emptyMap(), cancellation);
+        Metrics.IMAGE_REQUESTS.increment();
+        response.bytesHistogram = Metrics.IMAGE_BYTES;
+        return response;
+    }
+
+    /**
+     * Resolve the host of the URL and connect to it before the first
+     * request is made, so that request finds the address cached and a
+     * connection, its TLS handshake done, waiting in the keep-alive pool.
+     * A HEAD request is sent, so no body is transferred. Nothing is sent
+     * when another Transport has been plugged in, as it has a pool of
+     * its own if any.
+     *
+     * @param url A URL on the host to connect to.
+     * @throws IOException If the host cannot be resolved or connected to.
+     */
+    public static void prewarm(URL url) throws IOException {
+        if (!(transport instanceof UrlConnectionTransport)) {
+            return;
+        }
+
+        long prewarmStart = System.nanoTime();
+        InetAddress.getAllByName(url.getHost());
+
+        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+        urlConnection.setReadTimeout(READ_TIMEOUT);
+        urlConnection.setConnectTimeout(CONNECT_TIMEOUT);
+        urlConnection.setRequestMethod("HEAD");
+
+        // Whatever the status, closing the empty body returns the connection to the pool
+        int responseCode = urlConnection.getResponseCode();
+        InputStream stream = responseCode < HttpURLConnection.HTTP_BAD_REQUEST
+                ? urlConnection.getInputStream() : urlConnection.getErrorStream();
+        if (stream != null) {
+            stream.close();
+        }
+        Metrics.HTTP_PREWARM.record(Metrics.elapsedMicros(prewarmStart));
+    }
+
+    /**
+     * Transport using HttpURLConnection and its keep-alive pool.
+     */
+    private static class UrlConnectionTransport implements Transport {
+        private final boolean timed;
+
+        UrlConnectionTransport(boolean timed) {
+            this.timed = timed;
+        }
+
+        @Override
+        public Response get(URL url, Map<String, String> headers,
+                            Cancellation cancellation) throws IOException {
+            final HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+            if (cancellation != null) {
+                cancellation.attach(new Closeable() {
+                    @Override
+                    public void close() {
+                        urlConnection.disconnect();
+                    }
+                });
+            }
+            urlConnection.setReadTimeout(READ_TIMEOUT);
+            urlConnection.setConnectTimeout(CONNECT_TIMEOUT);
+            urlConnection.setRequestMethod("GET");
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                urlConnection.setRequestProperty(header.getKey(), header.getValue());
+            }
+
+            // Time the lookup and connect apart from waiting for the response
+            long connectStart = System.nanoTime();
+            urlConnection.connect();
+            if (timed) {
+                Metrics.HTTP_CONNECT.record(Metrics.elapsedMicros(connectStart));
+            }
+
+            long requestStart = System.nanoTime();
+            int responseCode = urlConnection.getResponseCode();
+            if (timed) {
+                Metrics.HTTP_FIRST_BYTE.record(Metrics.elapsedMicros(requestStart));
+            }
+
+            // The error stream is read too so that the connection can be reused
+            InputStream stream = responseCode < HttpURLConnection.HTTP_BAD_REQUEST
+                    ? urlConnection.getInputStream() : urlConnection.getErrorStream();
+
+            return new Response(responseCode, urlConnection.getHeaderField("ETag"),
+                    urlConnection.getHeaderField("Last-Modified"),
+                    urlConnection.getHeaderField("Retry-After"),
+                    urlConnection.getContentEncoding(), stream);
+        }
+    }
+
+    /**
+     * InputStream that counts the bytes read through it.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+}
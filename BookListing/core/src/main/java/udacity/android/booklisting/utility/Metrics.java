@@ -0,0 +1,210 @@
+package udacity.android.booklisting.utility;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class holds the in-process metrics of the search pipeline: a
+ * Histogram for each stage of a request and counters for its outcomes.
+ * Durations are recorded in microseconds and sizes in bytes. The
+ * snapshot method returns a report of every metric, with percentiles,
+ * that can be logged or compared between builds. A WindowedHistogram
+ * holds only recent values, for decisions that follow current
+ * conditions.
+ *
+ * @author Joseph Stewart
+ * @version 1.5
+ */
+public final class Metrics {
+
+    private static final List<Histogram> histograms = new ArrayList<>();
+    private static final List<WindowedHistogram> windowedHistograms = new ArrayList<>();
+    private static final List<Counter> counters = new ArrayList<>();
+
+    /** DNS lookup and connect, close to zero when a pooled connection is reused */
+    public static final Histogram HTTP_CONNECT = histogram("http.connect_us");
+
+    /** Resolving and connecting to the API host ahead of the first request */
+    public static final Histogram HTTP_PREWARM = histogram("http.prewarm_us");
+
+    /** Sending the request until the status line arrives */
+    public static final Histogram HTTP_FIRST_BYTE = histogram("http.first_byte_us");
+
+    /** Body bytes received over the network, before decompression */
+    public static final Histogram HTTP_BYTES = histogram("http.body_bytes");
+
+    /** Body bytes of the cover images received over the network, kept apart from the API */
+    public static final Histogram IMAGE_BYTES = histogram("image.body_bytes");
+
+    /** Reading and parsing a response body, which are done in one streaming pass */
+    public static final Histogram PARSE = histogram("parse_us");
+
+    /** Removing duplicates from and ranking merged results */
+    public static final Histogram RANK = histogram("rank_us");
+
+    /** A whole fetch, from opening the connection to the parsed Books */
+    public static final Histogram FETCH = histogram("fetch_us");
+
+    /** Whole fetches of the last one to two minutes, which set when a request is hedged */
+    public static final WindowedHistogram RECENT_FETCH = windowedHistogram("fetch.recent_us", 60000);
+
+    /** Requests already waiting in the RequestScheduler when another one arrives */
+    public static final Histogram SCHEDULER_QUEUE_DEPTH = histogram("scheduler.queue_depth");
+
+    /** Waiting in the RequestScheduler for a connection and a token */
+    public static final Histogram SCHEDULER_WAIT = histogram("scheduler.wait_us");
+
+    /** Showing a page of results once it has loaded */
+    public static final Histogram BIND = histogram("bind_us");
+
+    /** A cold start, from the creation of the Application to the first frame of the search screen */
+    public static final Histogram STARTUP_LAUNCH = histogram("startup.launch_us");
+
+    /** Submitting a search until the first page of its results is shown */
+    public static final Histogram STARTUP_FIRST_RESULT = histogram("startup.first_result_us");
+
+    public static final Counter HTTP_REQUESTS = counter("http.requests");
+    public static final Counter HTTP_NOT_MODIFIED = counter("http.not_modified");
+    public static final Counter HTTP_ERRORS = counter("http.errors");
+    public static final Counter HTTP_RETRIES = counter("http.retries");
+    public static final Counter HTTP_HEDGES = counter("http.hedges");
+    public static final Counter CIRCUIT_REJECTED = counter("http.circuit_rejected");
+    public static final Counter IMAGE_REQUESTS = counter("image.requests");
+
+    /**
+     * Private constructor to avoid instantiation.
+     */
+    private Metrics() {
+        throw new AssertionError("Metrics class cannot be instantiated.");
+    }
+
+    /**
+     * Inner class for a count of events.
+     */
+    public static class Counter {
+        private final String name;
+        private final AtomicLong count = new AtomicLong();
+
+        Counter(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void increment() {
+            count.incrementAndGet();
+        }
+
+        public long get() {
+            return count.get();
+        }
+
+        void reset() {
+            count.set(0);
+        }
+    }
+
+    /**
+     * Return the microseconds elapsed since a System.nanoTime reading.
+     *
+     * @param startNanos The System.nanoTime value when the timed work started.
+     * @return The elapsed time in microseconds.
+     */
+    public static long elapsedMicros(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Return a report of every metric, one per line.
+     *
+     * @return The report.
+     */
+    public static String snapshot() {
+        StringBuilder builder = new StringBuilder();
+        synchronized (histograms) {
+            for (Histogram histogram : histograms) {
+                builder.append(histogram.snapshot()).append('\n');
+            }
+        }
+        synchronized (windowedHistograms) {
+            for (WindowedHistogram histogram : windowedHistograms) {
+                builder.append(histogram.snapshot()).append('\n');
+            }
+        }
+        synchronized (counters) {
+            for (Counter counter : counters) {
+                builder.append(counter.getName()).append(" count=").append(counter.get()).append('\n');
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Clear every metric.
+     */
+    public static void reset() {
+        synchronized (histograms) {
+            for (Histogram histogram : histograms) {
+                histogram.reset();
+            }
+        }
+        synchronized (windowedHistograms) {
+            for (WindowedHistogram histogram : windowedHistograms) {
+                histogram.reset();
+            }
+        }
+        synchronized (counters) {
+            for (Counter counter : counters) {
+                counter.reset();
+            }
+        }
+    }
+
+    /**
+     * Create a Histogram that is included in the snapshot.
+     *
+     * @param name The name, including the unit of the values.
+     * @return The Histogram.
+     */
+    public static Histogram histogram(String name) {
+        Histogram histogram = new Histogram(name);
+        synchronized (histograms) {
+            histograms.add(histogram);
+        }
+        return histogram;
+    }
+
+    /**
+     * Create a WindowedHistogram that is included in the snapshot.
+     *
+     * @param name The name, including the unit of the values.
+     * @param windowMillis How long a value is read for at least.
+     * @return The WindowedHistogram.
+     */
+    public static WindowedHistogram windowedHistogram(String name, long windowMillis) {
+        WindowedHistogram histogram = new WindowedHistogram(name, windowMillis);
+        synchronized (windowedHistograms) {
+            windowedHistograms.add(histogram);
+        }
+        return histogram;
+    }
+
+    /**
+     * Create a Counter that is included in the snapshot.
+     *
+     * @param name The name.
+     * @return The Counter.
+     */
+    public static Counter counter(String name) {
+        Counter counter = new Counter(name);
+        synchronized (counters) {
+            counters.add(counter);
+        }
+        return counter;
+    }
+
+}
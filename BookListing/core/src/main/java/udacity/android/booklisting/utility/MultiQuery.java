@@ -0,0 +1,298 @@
+package udacity.android.booklisting.utility;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import udacity.android.booklisting.model.Book;
+
+/**
+ * This class runs one search as several sub-queries in parallel, for
+ * example the plain terms, intitle: and inauthor:, and merges their
+ * results. Sub-queries run on a bounded executor, so the search takes as
+ * long as its slowest sub-query rather than the sum of them. The deadline
+ * is taken once when the search starts: every sub-query still running or
+ * waiting for a thread when it passes is aborted, so a sub-query queued
+ * behind slow ones never extends the search. Results are merged in
+ * sub-query order as each one arrives, and passed through the BookRanker
+ * so a volume or work found by several sub-queries is only shown once.
+ *
+ * @author Joseph Stewart
+ * @version 1.3
+ */
+public class MultiQuery {
+
+    private static final Logger LOG = Logger.getLogger(MultiQuery.class.getName());
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * Interface for the fetch of a single sub-query.
+     */
+    public interface Fetcher {
+
+        /**
+         * Return the Books for the url, or null if the request failed.
+         *
+         * @param url The sub-query url.
+         * @param cancellation Canceled when the sub-query is aborted.
+         * @return The Books or null.
+         */
+        List<Book> fetch(String url, HttpClient.Cancellation cancellation);
+    }
+
+    /**
+     * Interface for receiving the merged results as sub-queries complete.
+     */
+    public interface Listener {
+
+        /**
+         * Called on the thread running the MultiQuery each time a
+         * sub-query returns results.
+         *
+         * @param books The merged Books of every sub-query completed so far.
+         * @param completed The number of sub-queries finished.
+         * @param total The number of sub-queries.
+         */
+        void onResults(List<Book> books, int completed, int total);
+    }
+
+    /** Fetcher that queries the API directly */
+    public static final Fetcher NETWORK = new Fetcher() {
+        @Override
+        public List<Book> fetch(String url, HttpClient.Cancellation cancellation) {
+            FetchResult result = QueryUtility.fetch(url, null, cancellation);
+            return result.isSuccessful() ? result.getEntry().getBooks() : null;
+        }
+    };
+
+    private final ExecutorService executor;
+    private final List<String> urls;
+    private final long deadlineMillis;
+    private final Fetcher fetcher;
+
+    private final List<SubQuery> subQueries = new ArrayList<>();
+    private boolean canceled;
+
+    // When the search passes its deadline, taken as it starts to run
+    private volatile long deadlineAt;
+
+    /**
+     * Constructor that accepts the executor to run the sub-queries on,
+     * their urls in order of precedence, the deadline of the search and
+     * the Fetcher performing them.
+     *
+     * @param executor A bounded executor.
+     * @param urls The sub-query urls.
+     * @param deadlineMillis The longest the search may run.
+     * @param fetcher The Fetcher for each sub-query.
+     */
+    public MultiQuery(ExecutorService executor, List<String> urls, long deadlineMillis,
+                      Fetcher fetcher) {
+        this.executor = executor;
+        this.urls = new ArrayList<>(urls);
+        this.deadlineMillis = deadlineMillis;
+        this.fetcher = fetcher;
+    }
+
+    /**
+     * Return an executor with a fixed number of threads and a bounded
+     * queue for running sub-queries. Idle threads are released.
+     *
+     * @param threads The number of sub-queries run at once.
+     * @param queueCapacity The number of sub-queries that may wait.
+     * @return The executor.
+     */
+    public static ExecutorService newExecutor(int threads, int queueCapacity) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(queueCapacity), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "MultiQuery #" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Inner class for a sub-query.
+     */
+    private class SubQuery implements Callable<SubQuery> {
+        final int index;
+        final String url;
+        final HttpClient.Cancellation cancellation = new HttpClient.Cancellation();
+
+        volatile boolean done;
+
+        Future<SubQuery> future;
+        List<Book> books;
+
+        SubQuery(int index, String url) {
+            this.index = index;
+            this.url = url;
+        }
+
+        @Override
+        public SubQuery call() {
+            try {
+                // Picked up by a thread too late to run
+                if (System.nanoTime() - deadlineAt < 0) {
+                    books = fetcher.fetch(url, cancellation);
+                }
+            } finally {
+                done = true;
+            }
+            return this;
+        }
+
+        void abort() {
+            cancellation.cancel();
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * Run the sub-queries and return the merged results once every
+     * sub-query has returned or failed, or the deadline has passed.
+     *
+     * @param listener Receives the merged results as they arrive, or null.
+     * @return The merged Books, empty if the search was canceled.
+     * @throws InterruptedException If the calling thread is interrupted.
+     */
+    public List<Book> run(Listener listener) throws InterruptedException {
+        CompletionService<SubQuery> completion = new ExecutorCompletionService<>(executor);
+
+        int pending = 0;
+        deadlineAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+        synchronized (this) {
+            if (canceled) {
+                return new ArrayList<>();
+            }
+            for (int i = 0; i < urls.size(); i++) {
+                SubQuery subQuery = new SubQuery(i, urls.get(i));
+                try {
+                    subQuery.future = completion.submit(subQuery);
+                    subQueries.add(subQuery);
+                    pending++;
+                } catch (RejectedExecutionException e) {
+                    LOG.warning("Sub-query rejected, the executor is saturated: " + subQuery.url);
+                }
+            }
+        }
+
+        List<List<Book>> results = new ArrayList<>(Collections.<List<Book>>nCopies(urls.size(), null));
+        List<Book> merged = new ArrayList<>();
+        int completed = 0;
+
+        try {
+            while (pending > 0) {
+                Future<SubQuery> future = completion.poll(abortOverdue(), TimeUnit.MILLISECONDS);
+                if (future == null) {
+                    continue;
+                }
+                pending--;
+                completed++;
+
+                SubQuery subQuery;
+                try {
+                    subQuery = future.get();
+                } catch (ExecutionException e) {
+                    LOG.log(Level.SEVERE, "Sub-query failed", e.getCause());
+                    continue;
+                } catch (CancellationException e) {
+                    continue;
+                }
+
+                if (subQuery.books != null) {
+                    results.set(subQuery.index, subQuery.books);
+                    merged = merge(results);
+                    if (listener != null) {
+                        listener.onResults(merged, completed, urls.size());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            cancel();
+            throw e;
+        }
+
+        synchronized (this) {
+            return canceled ? new ArrayList<Book>() : merged;
+        }
+    }
+
+    /**
+     * Abort every sub-query that has not finished.
+     */
+    public void cancel() {
+        synchronized (this) {
+            canceled = true;
+        }
+        for (SubQuery subQuery : snapshot()) {
+            subQuery.abort();
+        }
+    }
+
+    /**
+     * Abort the sub-queries that are running or waiting for a thread once
+     * the deadline has passed, and return how long to wait until it does.
+     */
+    private long abortOverdue() {
+        long remaining = deadlineAt - System.nanoTime();
+        if (remaining > 0) {
+            return Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining));
+        }
+
+        for (SubQuery subQuery : snapshot()) {
+            if (!subQuery.done && !subQuery.future.isDone()) {
+                LOG.warning("Sub-query passed the deadline of the search: " + subQuery.url);
+                subQuery.abort();
+            }
+        }
+        return 1;
+    }
+
+    private synchronized List<SubQuery> snapshot() {
+        return new ArrayList<>(subQueries);
+    }
+
+    /**
+     * Concatenate the results in sub-query order and pass them through the
+     * BookRanker of the QueryUtility, which keeps the first occurrence of
+     * each volume and of each work.
+     *
+     * @param results The Books of each sub-query, null for those without results.
+     * @return The merged Books.
+     */
+    public static List<Book> merge(List<List<Book>> results) {
+        List<Book> concatenated = new ArrayList<>();
+        for (List<Book> books : results) {
+            if (books != null) {
+                concatenated.addAll(books);
+            }
+        }
+        return QueryUtility.rank(concatenated);
+    }
+
+}
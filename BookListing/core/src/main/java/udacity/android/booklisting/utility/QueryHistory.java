@@ -0,0 +1,244 @@
+package udacity.android.booklisting.utility;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class remembers the searches the user has made, how often and how
+ * recently, so the ones most likely to be made again can be fetched ahead
+ * of time. Searches are ranked by frecency: the number of times a search
+ * was made, halved for every week since it was last made. Only the best
+ * ranked searches are kept and the history is written to a small file
+ * after every change, so it must not be used on the main thread.
+ *
+ * @author Joseph Stewart
+ * @version 1.0
+ */
+public class QueryHistory {
+
+    private static final Logger LOG = Logger.getLogger(QueryHistory.class.getName());
+
+    private static final String FILE_NAME = "query_history";
+    private static final int RECORD_VERSION = 1;
+
+    private static final int MAX_QUERIES = 50;
+    private static final long HALF_LIFE_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+    private static QueryHistory instance;
+
+    private final File file;
+
+    // Loaded from the file on first use, keyed by the lower case query text
+    private Map<String, Query> queries;
+
+    /**
+     * Inner class for a search and how often and when it was last made.
+     */
+    private static class Query {
+        final String text;
+        int count;
+        long lastUsed;
+
+        Query(String text, int count, long lastUsed) {
+            this.text = text;
+            this.count = count;
+            this.lastUsed = lastUsed;
+        }
+
+        double score(long now) {
+            return count * Math.pow(0.5, (double) (now - lastUsed) / HALF_LIFE_MILLIS);
+        }
+    }
+
+    /**
+     * Constructor that accepts the file the history is stored in.
+     *
+     * @param file The history file.
+     */
+    public QueryHistory(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Return the process wide history stored in the given files directory.
+     *
+     * @param filesDir The application's files directory.
+     * @return The shared QueryHistory.
+     */
+    public static synchronized QueryHistory getInstance(File filesDir) {
+        if (instance == null) {
+            instance = new QueryHistory(new File(filesDir, FILE_NAME));
+        }
+        return instance;
+    }
+
+    /**
+     * Record that the user searched for the query text.
+     *
+     * @param queryText The search text.
+     */
+    public void record(String queryText) {
+        record(queryText, System.currentTimeMillis());
+    }
+
+    synchronized void record(String queryText, long now) {
+        String text = queryText.trim();
+        if (text.isEmpty()) {
+            return;
+        }
+
+        Map<String, Query> all = load();
+        String key = text.toLowerCase(Locale.US);
+        Query query = all.get(key);
+        if (query == null) {
+            query = new Query(text, 0, now);
+            all.put(key, query);
+        }
+        query.count++;
+        query.lastUsed = now;
+
+        // Forget the lowest ranked searches, but never the one just made
+        if (all.size() > MAX_QUERIES) {
+            List<Query> ranked = rank(now);
+            for (int i = ranked.size() - 1; i >= 0 && all.size() > MAX_QUERIES; i--) {
+                if (ranked.get(i) != query) {
+                    all.remove(ranked.get(i).text.toLowerCase(Locale.US));
+                }
+            }
+        }
+        save();
+    }
+
+    /**
+     * Return the query texts the user is most likely to search for again,
+     * best first.
+     *
+     * @param limit The maximum number of query texts.
+     * @return The query texts.
+     */
+    public List<String> top(int limit) {
+        return top(limit, System.currentTimeMillis());
+    }
+
+    synchronized List<String> top(int limit, long now) {
+        List<String> texts = new ArrayList<>();
+        for (Query query : rank(now)) {
+            if (texts.size() == limit) {
+                break;
+            }
+            texts.add(query.text);
+        }
+        return texts;
+    }
+
+    private List<Query> rank(final long now) {
+        List<Query> ranked = new ArrayList<>(load().values());
+        Collections.sort(ranked, new Comparator<Query>() {
+            @Override
+            public int compare(Query a, Query b) {
+                return Double.compare(b.score(now), a.score(now));
+            }
+        });
+        return ranked;
+    }
+
+    /**
+     * Return the searches, reading them from the file the first time.
+     */
+    private Map<String, Query> load() {
+        if (queries != null) {
+            return queries;
+        }
+
+        queries = new LinkedHashMap<>();
+        if (!file.exists()) {
+            return queries;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != RECORD_VERSION) {
+                return queries;
+            }
+
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                Query query = new Query(in.readUTF(), in.readInt(), in.readLong());
+                queries.put(query.text.toLowerCase(Locale.US), query);
+            }
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "Problem reading query history", e);
+        } finally {
+            closeQuietly(in);
+        }
+        return queries;
+    }
+
+    /**
+     * Write the searches to a temporary file and move it into place, so a
+     * failed write never leaves a truncated history.
+     */
+    private void save() {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            LOG.severe("Unable to create directory " + parent);
+            return;
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(RECORD_VERSION);
+            out.writeInt(queries.size());
+            for (Query query : queries.values()) {
+                out.writeUTF(query.text);
+                out.writeInt(query.count);
+                out.writeLong(query.lastUsed);
+            }
+            out.close();
+            out = null;
+
+            if (!temp.renameTo(file)) {
+                LOG.severe("Unable to replace query history " + file);
+                temp.delete();
+            }
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "Problem writing query history", e);
+            closeQuietly(out);
+            out = null;
+            temp.delete();
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // Nothing more can be done
+            }
+        }
+    }
+
+}
@@ -0,0 +1,655 @@
+package udacity.android.booklisting.utility;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import udacity.android.booklisting.model.Book;
+import udacity.android.booklisting.model.BookDetail;
+
+/**
+ * This is a utility class to accommodate http requests for the Google
+ * Books API. The extractBooks method receives the query url and returns
+ * a list of Books retrieved as a result of the request. It depends only
+ * on the JVM, so it runs the same in the app, in unit tests and on a
+ * server. The fetch and parse time of each request are recorded in the
+ * Metrics. Failed requests are retried, slow ones hedged, and a circuit
+ * breaker stops requests while the API keeps failing. Every request
+ * waits for a permit from the RequestScheduler, which limits the rate
+ * and number of requests and lets interactive searches ahead of
+ * prefetching. The Books of a response are returned as the API sent
+ * them, so a caller paging through results can tell a short page from
+ * the last one; merged result sets are passed through the BookRanker
+ * with rank. The details of a single volume are fetched with
+ * fetchDetail, and the connection to the API can be warmed with prewarm
+ * while the user is still typing.
+ *
+ * @author Joseph Stewart
+ * @version 2.5
+ */
+public final class QueryUtility {
+
+    private static final Logger LOG = Logger.getLogger(QueryUtility.class.getName());
+
+    // Requests for a query, the first one included
+    private static final int MAX_ATTEMPTS = 3;
+
+    // The backoff before the first retry, doubled for each retry after it
+    private static final long BASE_BACKOFF_MILLIS = 250;
+    private static final long MAX_BACKOFF_MILLIS = 4000;
+
+    // A search gives up rather than wait longer than this for a Retry-After
+    private static final long MAX_RETRY_AFTER_MILLIS = 10000;
+
+    // Requests are hedged once this many recent fetches have been timed
+    private static final int MIN_HEDGE_SAMPLES = 20;
+    private static final double HEDGE_PERCENTILE = 95;
+    private static final long MIN_HEDGE_DELAY_MILLIS = 50;
+
+    // Hedged requests run on up to this many threads, or unhedged on the caller's
+    private static final int FETCH_THREADS = 8;
+    private static final long FETCH_KEEP_ALIVE_SECONDS = 30;
+
+    // The circuit opens after this many failed tries in a row, for this long
+    private static final int CIRCUIT_FAILURES = 5;
+    private static final long CIRCUIT_OPEN_MILLIS = 30000;
+
+    private static final CircuitBreaker CIRCUIT = new CircuitBreaker(CIRCUIT_FAILURES, CIRCUIT_OPEN_MILLIS);
+
+    // At most this many requests at once, on average this many a second with bursts of this many
+    private static final int MAX_CONCURRENT_REQUESTS = 4;
+    private static final double REQUESTS_PER_SECOND = 5;
+    private static final int REQUEST_BURST = 10;
+
+    private static final RequestScheduler SCHEDULER =
+            new RequestScheduler(MAX_CONCURRENT_REQUESTS, REQUESTS_PER_SECOND, REQUEST_BURST);
+
+    // A warmed connection is assumed to still be pooled for this long
+    private static final long PREWARM_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    private static final AtomicLong prewarmedAt = new AtomicLong(System.nanoTime() - PREWARM_INTERVAL_NANOS);
+
+    private static final Random RANDOM = new Random();
+
+    private static volatile BookRanker ranker = new BookRanker(BookRanker.API_ORDER);
+
+    private static final ExecutorService FETCH_EXECUTOR = newFetchExecutor();
+
+    /**
+     * Private constructor to avoid instantiation.
+     */
+    private QueryUtility() {
+        throw new AssertionError("QueryUtility class cannot be instantiated.");
+    }
+
+    /**
+     * Return a list of Books that has been built up from
+     * parsing a JSON response.
+     */
+    public static List<Book> extractBooks(String urlString) {
+        BookCache.Entry entry = fetchBooks(urlString, null);
+
+        // Return the list of books
+        return entry != null ? entry.getBooks() : new ArrayList<Book>();
+    }
+
+    /**
+     * Query the API and return a new cache entry for the url. When a cached
+     * entry is given its validators are sent with the request, and if the
+     * server answers 304 the returned entry holds the same list of Books.
+     *
+     * @param urlString The query url.
+     * @param cached The entry currently cached for the url, or null.
+     * @return The fetched entry, or null if the request failed.
+     */
+    public static BookCache.Entry fetchBooks(String urlString, BookCache.Entry cached) {
+        return fetchBooks(urlString, cached, null);
+    }
+
+    /**
+     * Query the API as above with a request that can be aborted through
+     * the given Cancellation.
+     *
+     * @param urlString The query url.
+     * @param cached The entry currently cached for the url, or null.
+     * @param cancellation The Cancellation for the request, or null.
+     * @return The fetched entry, or null if the request failed or was canceled.
+     */
+    public static BookCache.Entry fetchBooks(String urlString, BookCache.Entry cached,
+                                             HttpClient.Cancellation cancellation) {
+        return fetch(urlString, cached, cancellation).getEntry();
+    }
+
+    /**
+     * Query the API and return the outcome. Network errors, 429 and 5xx
+     * responses are retried with a growing, jittered backoff, or after the
+     * time asked for by the Retry-After header of a 429 or 503. The first
+     * request is hedged: if it takes longer than the p95 of recent
+     * fetches a second one is sent and the first to succeed is used.
+     * While the circuit breaker is open no request is sent at all and
+     * the result is CIRCUIT_OPEN, so the caller can use its cache.
+     *
+     * @param urlString The query url.
+     * @param cached The entry currently cached for the url, or null.
+     * @param cancellation The Cancellation for the request, or null.
+     * @return The FetchResult.
+     */
+    public static FetchResult fetch(String urlString, BookCache.Entry cached,
+                                    HttpClient.Cancellation cancellation) {
+        return fetch(urlString, cached, cancellation, RequestScheduler.Priority.INTERACTIVE);
+    }
+
+    /**
+     * Query the API as above, waiting in the lane of the RequestScheduler
+     * for the given priority before each request is sent.
+     *
+     * @param urlString The query url.
+     * @param cached The entry currently cached for the url, or null.
+     * @param cancellation The Cancellation for the request, or null.
+     * @param priority The priority of the requests.
+     * @return The FetchResult.
+     */
+    public static FetchResult fetch(String urlString, BookCache.Entry cached,
+                                    HttpClient.Cancellation cancellation,
+                                    RequestScheduler.Priority priority) {
+
+        // Create URL object from string
+        URL url = createUrl(urlString);
+
+        // If the URL is null, then return early.
+        if (url == null) {
+            return FetchResult.invalidUrl();
+        }
+
+        FetchResult result = null;
+        int attempts = 0;
+        for (int tries = 0; tries < MAX_ATTEMPTS; tries++) {
+            if (tries > 0) {
+                if (result.getRetryAfterMillis() > MAX_RETRY_AFTER_MILLIS) {
+                    LOG.warning("Not retrying " + urlString + ", asked to wait "
+                            + result.getRetryAfterMillis() + " ms");
+                    return result.withAttempts(attempts);
+                }
+                Metrics.HTTP_RETRIES.increment();
+                if (!backOff(tries, result.getRetryAfterMillis(), cancellation)) {
+                    return FetchResult.canceled(attempts);
+                }
+            }
+
+            if (!CIRCUIT.allowRequest()) {
+                Metrics.CIRCUIT_REJECTED.increment();
+                return FetchResult.circuitOpen(attempts);
+            }
+
+            // Only the first try is hedged so a struggling API is not sent twice the retries
+            result = tries == 0 ? hedgedAttempt(url, cached, cancellation, priority)
+                    : attempt(url, cached, cancellation, priority);
+            attempts += result.getAttempts();
+
+            if (result.getStatus() == FetchResult.Status.CANCELED) {
+                return result.withAttempts(attempts);
+            } else if (result.isRetryable()) {
+                CIRCUIT.recordFailure();
+            } else {
+                CIRCUIT.recordSuccess();
+                return result.withAttempts(attempts);
+            }
+        }
+
+        LOG.severe("Giving up on " + urlString + ": " + result.withAttempts(attempts));
+        return result.withAttempts(attempts);
+    }
+
+    /**
+     * Return the circuit breaker shared by every query.
+     */
+    public static CircuitBreaker getCircuitBreaker() {
+        return CIRCUIT;
+    }
+
+    /**
+     * Replace the BookRanker applied to merged results. The app never
+     * does, so its merged results only have their duplicates removed.
+     *
+     * @param newRanker The BookRanker, or null to only remove duplicates.
+     */
+    public static void setRanker(BookRanker newRanker) {
+        ranker = newRanker != null ? newRanker : new BookRanker(BookRanker.API_ORDER);
+    }
+
+    /**
+     * Return the BookRanker applied to merged results.
+     */
+    public static BookRanker getRanker() {
+        return ranker;
+    }
+
+    /**
+     * Remove duplicates from the Books and rank them with the current
+     * BookRanker.
+     *
+     * @param books The Books in API order.
+     * @return The ranked Books.
+     */
+    public static List<Book> rank(List<Book> books) {
+        long rankStart = System.nanoTime();
+        List<Book> ranked = ranker.rank(books);
+        Metrics.RANK.record(Metrics.elapsedMicros(rankStart));
+        return ranked;
+    }
+
+    /**
+     * Return the scheduler every request waits in.
+     */
+    public static RequestScheduler getScheduler() {
+        return SCHEDULER;
+    }
+
+    /**
+     * Resolve the API host and open a connection to it ahead of the first
+     * request, unless that was done within the last minute. The request
+     * waits in the BACKGROUND lane of the scheduler, so it never holds up
+     * a search, and none is sent unless the circuit breaker is closed.
+     * This blocks, so it is called on a background thread.
+     *
+     * @param urlString A url on the API host.
+     * @return True if a connection was opened.
+     */
+    public static boolean prewarm(String urlString) {
+        long now = System.nanoTime();
+        long last = prewarmedAt.get();
+        if (now - last < PREWARM_INTERVAL_NANOS || !prewarmedAt.compareAndSet(last, now)) {
+            return false;
+        }
+
+        URL url = createUrl(urlString);
+        if (url == null || CIRCUIT.getState() != CircuitBreaker.State.CLOSED) {
+            return false;
+        }
+
+        RequestScheduler.Permit permit;
+        try {
+            permit = SCHEDULER.acquire(RequestScheduler.Priority.BACKGROUND, null);
+        } catch (InterruptedIOException e) {
+            return false;
+        }
+
+        try {
+            HttpClient.prewarm(url);
+            return true;
+        } catch (IOException e) {
+            // The first request will connect and report the problem itself
+            LOG.log(Level.FINE, "Could not warm the connection.", e);
+            return false;
+        } finally {
+            permit.close();
+        }
+    }
+
+    /**
+     * Fetch the details of a single volume. The request is sent once,
+     * without retries or hedging, since details are fetched ahead of use
+     * and the list already shows the essentials, and it waits in the
+     * PREFETCH lane of the scheduler. It is refused while the circuit
+     * breaker is open and its outcome counts towards the circuit.
+     *
+     * @param urlString The volume url.
+     * @param cancellation The Cancellation for the request, or null.
+     * @return The BookDetail, or null if the request failed or was refused.
+     */
+    public static BookDetail fetchDetail(String urlString, HttpClient.Cancellation cancellation) {
+        URL url = createUrl(urlString);
+        if (url == null) {
+            return null;
+        }
+        if (!CIRCUIT.allowRequest()) {
+            Metrics.CIRCUIT_REJECTED.increment();
+            return null;
+        }
+
+        RequestScheduler.Permit permit;
+        try {
+            permit = SCHEDULER.acquire(RequestScheduler.Priority.PREFETCH, cancellation);
+        } catch (InterruptedIOException e) {
+            return null;
+        }
+
+        HttpClient.Response response = null;
+        try {
+            response = HttpClient.get(url, null, null, cancellation);
+            if (response.isSuccessful()) {
+                BookDetail detail = BookParser.parseVolume(response.getBody());
+                CIRCUIT.recordSuccess();
+                return detail;
+            }
+
+            Metrics.HTTP_ERRORS.increment();
+            LOG.warning("Error response code: " + response.getResponseCode());
+            if (FetchResult.httpError(response.getResponseCode(), 1).isRetryable()) {
+                CIRCUIT.recordFailure();
+            } else {
+                CIRCUIT.recordSuccess();
+            }
+            return null;
+        } catch (IOException e) {
+            if (cancellation == null || !cancellation.isCanceled()) {
+                Metrics.HTTP_ERRORS.increment();
+                CIRCUIT.recordFailure();
+                LOG.log(Level.WARNING, "Problem retrieving the volume details.", e);
+            }
+            return null;
+        } finally {
+            if (response != null) {
+                try {
+                    response.close();
+                } catch (IOException e) {
+                    LOG.log(Level.SEVERE, "Error closing input stream", e);
+                }
+            }
+            permit.close();
+        }
+    }
+
+    /**
+     * Make a single request, once the scheduler allows it, and parse the response.
+     */
+    private static FetchResult attempt(URL url, BookCache.Entry cached,
+                                       HttpClient.Cancellation cancellation,
+                                       RequestScheduler.Priority priority) {
+        RequestScheduler.Permit permit;
+        try {
+            permit = SCHEDULER.acquire(priority, cancellation);
+        } catch (InterruptedIOException e) {
+            // Nothing was sent
+            return FetchResult.canceled(0);
+        }
+
+        long fetchStart = System.nanoTime();
+        HttpClient.Response response = null;
+        try {
+            response = HttpClient.get(url,
+                    cached != null ? cached.getEtag() : null,
+                    cached != null ? cached.getLastModified() : null, cancellation);
+
+            if (response.isNotModified() && cached != null) {
+                // The cached books are still current
+                Metrics.HTTP_NOT_MODIFIED.increment();
+                recordFetch(fetchStart);
+                return FetchResult.notModified(new BookCache.Entry(cached.getBooks(),
+                        response.getEtag() != null ? response.getEtag() : cached.getEtag(),
+                        response.getLastModified() != null ? response.getLastModified() : cached.getLastModified(),
+                        System.currentTimeMillis(), false), 1);
+            } else if (response.isSuccessful()) {
+                // Parse the input stream as it is read
+                long parseStart = System.nanoTime();
+                List<Book> books = BookParser.parse(response.getBody());
+                Metrics.PARSE.record(Metrics.elapsedMicros(parseStart));
+                recordFetch(fetchStart);
+                return FetchResult.ok(new BookCache.Entry(books, response.getEtag(),
+                        response.getLastModified(), System.currentTimeMillis(), false),
+                        response.getBytesReceived(), 1);
+            } else {
+                Metrics.HTTP_ERRORS.increment();
+                LOG.warning("Error response code: " + response.getResponseCode());
+                return FetchResult.httpError(response.getResponseCode(),
+                        response.getRetryAfterMillis(), 1);
+            }
+        } catch (IOException e) {
+            if (cancellation != null && cancellation.isCanceled()) {
+                return FetchResult.canceled(1);
+            }
+            Metrics.HTTP_ERRORS.increment();
+            LOG.log(Level.WARNING, "Problem retrieving the JSON results.", e);
+            return FetchResult.networkError(e, 1);
+        } finally {
+            if (response != null) {
+                try {
+                    response.close();
+                } catch (IOException e) {
+                    LOG.log(Level.SEVERE, "Error closing input stream", e);
+                }
+            }
+            permit.close();
+        }
+    }
+
+    /**
+     * Make a request and, once it has taken longer than the hedge delay,
+     * a second identical request, returning the first usable result.
+     * Both run on the fetch executor so the caller can return as soon as
+     * either succeeds, however long the other takes to abort.
+     */
+    private static FetchResult hedgedAttempt(URL url, BookCache.Entry cached,
+                                             HttpClient.Cancellation cancellation,
+                                             RequestScheduler.Priority priority) {
+        long delay = hedgeDelayMillis();
+        Race race = new Race(url, cached, priority);
+        if (delay < 0 || !race.submit()) {
+            return attempt(url, cached, cancellation, priority);
+        }
+
+        try {
+            if (cancellation != null) {
+                cancellation.attach(race);
+            }
+            if (race.await(delay) == null && race.submit()) {
+                Metrics.HTTP_HEDGES.increment();
+            }
+            return race.await(0);
+        } catch (IOException e) {
+            // Canceled before the race was attached
+            race.close();
+            return FetchResult.canceled(race.getAttempts());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            race.close();
+            return FetchResult.canceled(race.getAttempts());
+        }
+    }
+
+    /**
+     * Return how long to wait before hedging a request: the p95 of the
+     * fetches of the last minute or two, or -1 until enough of them have
+     * been timed. Older fetches are left out so the delay follows the
+     * network as it speeds up or slows down.
+     */
+    private static long hedgeDelayMillis() {
+        if (Metrics.RECENT_FETCH.getCount() < MIN_HEDGE_SAMPLES) {
+            return -1;
+        }
+        long p95 = TimeUnit.MICROSECONDS.toMillis(Metrics.RECENT_FETCH.getValueAtPercentile(HEDGE_PERCENTILE));
+        return Math.max(MIN_HEDGE_DELAY_MILLIS, p95);
+    }
+
+    /**
+     * Record the time of a whole fetch, for the Metrics and the hedge delay.
+     */
+    private static void recordFetch(long fetchStart) {
+        long micros = Metrics.elapsedMicros(fetchStart);
+        Metrics.FETCH.record(micros);
+        Metrics.RECENT_FETCH.record(micros);
+    }
+
+    /**
+     * Wait before a retry for the time the server asked for or, if it did
+     * not say, for a random time between half and all of a delay that
+     * doubles with each retry, so clients that failed together do not
+     * retry together.
+     *
+     * @param retryAfterMillis The time asked for by the server, or -1.
+     * @return False if the request was canceled while waiting.
+     */
+    private static boolean backOff(int retry, long retryAfterMillis,
+                                   HttpClient.Cancellation cancellation) {
+        long ceiling = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << (retry - 1));
+        long delay = retryAfterMillis >= 0 ? retryAfterMillis
+                : ceiling / 2 + (long) (RANDOM.nextDouble() * ceiling / 2);
+        try {
+            if (cancellation != null) {
+                return cancellation.sleep(delay);
+            }
+            Thread.sleep(delay);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Inner class for a request and its hedged copy. The first to return
+     * a usable result wins and the other one is aborted, while a failure
+     * only decides the race once no request is left running.
+     */
+    private static class Race implements Closeable {
+        private final URL url;
+        private final BookCache.Entry cached;
+        private final RequestScheduler.Priority priority;
+        private final List<HttpClient.Cancellation> running = new ArrayList<>();
+        private int attempts;
+        private boolean closed;
+        private FetchResult winner;
+
+        Race(URL url, BookCache.Entry cached, RequestScheduler.Priority priority) {
+            this.url = url;
+            this.cached = cached;
+            this.priority = priority;
+        }
+
+        /**
+         * Start another request on the fetch executor.
+         *
+         * @return False if the race is over or the executor is saturated.
+         */
+        boolean submit() {
+            final HttpClient.Cancellation request = new HttpClient.Cancellation();
+            synchronized (this) {
+                if (winner != null || closed) {
+                    return false;
+                }
+                running.add(request);
+                attempts++;
+            }
+
+            try {
+                FETCH_EXECUTOR.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        finish(request, attempt(url, cached, request, priority));
+                    }
+                });
+                return true;
+            } catch (RejectedExecutionException e) {
+                synchronized (this) {
+                    running.remove(request);
+                    attempts--;
+                }
+                return false;
+            }
+        }
+
+        void finish(HttpClient.Cancellation request, FetchResult result) {
+            List<HttpClient.Cancellation> losers;
+            synchronized (this) {
+                running.remove(request);
+                if (winner != null) {
+                    return;
+                }
+
+                boolean usable = result.getStatus() != FetchResult.Status.CANCELED && !result.isRetryable();
+                if (!usable && !running.isEmpty()) {
+                    return;
+                }
+                winner = result;
+                losers = new ArrayList<>(running);
+                notifyAll();
+            }
+
+            // Aborting a connection can block, so it is done outside the lock
+            for (HttpClient.Cancellation loser : losers) {
+                loser.cancel();
+            }
+        }
+
+        /**
+         * Wait for the race to be decided.
+         *
+         * @param millis The longest time to wait, or 0 to wait until it is.
+         * @return The winning result, or null if it is not decided yet.
+         */
+        synchronized FetchResult await(long millis) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+            while (winner == null) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (millis > 0 && remaining <= 0) {
+                    return null;
+                }
+                wait(millis > 0 ? remaining : 0);
+            }
+            return winner.withAttempts(attempts);
+        }
+
+        synchronized int getAttempts() {
+            return attempts;
+        }
+
+        /**
+         * Abort every request, called when the caller cancels.
+         */
+        @Override
+        public void close() {
+            List<HttpClient.Cancellation> requests;
+            synchronized (this) {
+                closed = true;
+                requests = new ArrayList<>(running);
+            }
+            for (HttpClient.Cancellation request : requests) {
+                request.cancel();
+            }
+        }
+    }
+
+    private static ExecutorService newFetchExecutor() {
+        return new ThreadPoolExecutor(0, FETCH_THREADS,
+                FETCH_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+                new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Fetch #" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Returns new URL object from the given string URL.
+     */
+    private static URL createUrl(String stringUrl) {
+        URL url = null;
+        try {
+            url = new URL(stringUrl);
+        } catch (MalformedURLException e) {
+            LOG.log(Level.SEVERE, "Error creating URL ", e);
+        }
+        return url;
+    }
+
+}
@@ -0,0 +1,235 @@
+package udacity.android.booklisting.utility;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class decides when a request to the API may be sent. A token
+ * bucket limits the rate of requests while allowing a short burst, and
+ * no more than a fixed number of requests may hold a connection at once.
+ * Requests wait in a lane for their Priority and are let through strictly
+ * in order of priority, first come first served within a lane, so a
+ * search the user is waiting for is never queued behind prefetching. The
+ * lower lanes also leave one connection and one token spare, so an
+ * interactive request arriving while they are busy is sent straight away.
+ *
+ * @author Joseph Stewart
+ * @version 1.1
+ */
+public class RequestScheduler {
+
+    /**
+     * The lanes requests wait in, highest priority first.
+     */
+    public enum Priority {
+        /** A search the user is waiting for */
+        INTERACTIVE,
+        /** Details fetched ahead of the user opening them */
+        PREFETCH,
+        /** Cache warming and revalidation nobody is waiting for */
+        BACKGROUND
+    }
+
+    private final int maxConcurrent;
+    private final double tokensPerNano;
+    private final double burst;
+
+    private final ArrayDeque<Waiter>[] lanes;
+
+    private double tokens;
+    private long refilledAt;
+    private int active;
+
+    /**
+     * Constructor that accepts the most requests that may be sent at once,
+     * the sustained rate of requests and the largest burst.
+     *
+     * @param maxConcurrent The most requests holding a connection at once.
+     * @param requestsPerSecond The rate at which tokens are added.
+     * @param burst The most tokens the bucket holds.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public RequestScheduler(int maxConcurrent, double requestsPerSecond, int burst) {
+        if (maxConcurrent < 1 || requestsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Limits must be positive");
+        }
+        this.maxConcurrent = maxConcurrent;
+        this.tokensPerNano = requestsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+
+        lanes = new ArrayDeque[Priority.values().length];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new ArrayDeque<>();
+        }
+        tokens = burst;
+        refilledAt = System.nanoTime();
+    }
+
+    /**
+     * Inner class for a request allowed through, which must be closed once
+     * its response has been read to free its connection for the next one.
+     */
+    public class Permit implements Closeable {
+        private boolean released;
+
+        private Permit() {
+        }
+
+        @Override
+        public void close() {
+            synchronized (RequestScheduler.this) {
+                if (!released) {
+                    released = true;
+                    active--;
+                    RequestScheduler.this.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Inner class for a request waiting in a lane. It is attached to the
+     * Cancellation of the request while it waits, so canceling the request
+     * wakes it up.
+     */
+    private class Waiter implements Closeable {
+        private final Priority priority;
+        private boolean canceled;
+
+        Waiter(Priority priority) {
+            this.priority = priority;
+        }
+
+        @Override
+        public void close() {
+            synchronized (RequestScheduler.this) {
+                canceled = true;
+                RequestScheduler.this.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Wait until the request may be sent.
+     *
+     * @param priority The lane of the request.
+     * @param cancellation The Cancellation of the request, or null.
+     * @return The Permit, to be closed once the response has been read.
+     * @throws InterruptedIOException If the request is canceled or the thread interrupted while waiting.
+     */
+    public Permit acquire(Priority priority, HttpClient.Cancellation cancellation)
+            throws InterruptedIOException {
+        Waiter waiter = new Waiter(priority);
+        if (cancellation != null) {
+            try {
+                cancellation.attach(waiter);
+            } catch (InterruptedIOException e) {
+                throw e;
+            } catch (IOException e) {
+                throw new InterruptedIOException(e.getMessage());
+            }
+        }
+
+        long waitStart = System.nanoTime();
+        synchronized (this) {
+            Metrics.SCHEDULER_QUEUE_DEPTH.record(getQueueDepth());
+            ArrayDeque<Waiter> lane = lanes[priority.ordinal()];
+            lane.addLast(waiter);
+            try {
+                while (true) {
+                    if (waiter.canceled) {
+                        throw new InterruptedIOException("Request canceled");
+                    }
+
+                    long waitNanos = 0;
+                    if (isNext(waiter) && active < maxActive(priority)) {
+                        refill();
+                        double required = priority == Priority.INTERACTIVE ? 1 : Math.min(2, burst);
+                        if (tokens >= required) {
+                            tokens--;
+                            active++;
+                            Metrics.SCHEDULER_WAIT.record(Metrics.elapsedMicros(waitStart));
+                            return new Permit();
+                        }
+                        waitNanos = (long) Math.ceil((required - tokens) / tokensPerNano);
+                    }
+
+                    // Wait for a token, or for a connection or the lanes ahead to free up
+                    if (waitNanos > 0) {
+                        TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+                    } else {
+                        wait();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting to send the request");
+            } finally {
+                // The next request may be able to go once this one leaves the lane
+                lane.remove(waiter);
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Return the number of requests waiting in a lane.
+     */
+    public synchronized int getQueueDepth(Priority priority) {
+        return lanes[priority.ordinal()].size();
+    }
+
+    /**
+     * Return the number of requests waiting in every lane.
+     */
+    public synchronized int getQueueDepth() {
+        int depth = 0;
+        for (ArrayDeque<Waiter> lane : lanes) {
+            depth += lane.size();
+        }
+        return depth;
+    }
+
+    /**
+     * Return the number of requests holding a connection.
+     */
+    public synchronized int getActive() {
+        return active;
+    }
+
+    /**
+     * Fill the bucket, as if no request had been sent for a long time.
+     */
+    public synchronized void reset() {
+        tokens = burst;
+        refilledAt = System.nanoTime();
+        notifyAll();
+    }
+
+    /**
+     * Return true if the waiter is at the head of its lane and every
+     * lane of a higher priority is empty.
+     */
+    private boolean isNext(Waiter waiter) {
+        for (int i = 0; i < waiter.priority.ordinal(); i++) {
+            if (!lanes[i].isEmpty()) {
+                return false;
+            }
+        }
+        return lanes[waiter.priority.ordinal()].peekFirst() == waiter;
+    }
+
+    private int maxActive(Priority priority) {
+        return priority == Priority.INTERACTIVE ? maxConcurrent : Math.max(1, maxConcurrent - 1);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+    }
+
+}
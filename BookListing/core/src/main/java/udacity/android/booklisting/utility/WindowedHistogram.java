@@ -0,0 +1,107 @@
+package udacity.android.booklisting.utility;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is a Histogram of the values recorded in the last one to two
+ * windows of time, for decisions that should follow current conditions
+ * rather than the whole life of the process. Every value is recorded in
+ * two Histograms that are cleared in turn once a window has passed, and
+ * read from the one cleared longer ago, so a slow period is forgotten
+ * within two windows of its end.
+ *
+ * @author Joseph Stewart
+ * @version 1.0
+ */
+public class WindowedHistogram {
+
+    private final long windowNanos;
+    private final Histogram[] halves;
+    private final AtomicLong rotatedAt = new AtomicLong(System.nanoTime());
+
+    // The half that is read, the other one was cleared more recently
+    private volatile int current;
+
+    /**
+     * Constructor that accepts the name the histogram is reported under
+     * and the length of a window.
+     *
+     * @param name The name, including the unit of the values.
+     * @param windowMillis How long a value is read for at least.
+     */
+    public WindowedHistogram(String name, long windowMillis) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.halves = new Histogram[]{new Histogram(name), new Histogram(name)};
+    }
+
+    public String getName() {
+        return halves[0].getName();
+    }
+
+    /**
+     * Record a value, negative values are recorded as zero.
+     *
+     * @param value The value.
+     */
+    public void record(long value) {
+        rotateIfDue();
+        halves[0].record(value);
+        halves[1].record(value);
+    }
+
+    /**
+     * Return the value at the given percentile of the recent values.
+     *
+     * @param percentile The percentile, from 0 to 100.
+     * @return The value, or 0 if nothing was recorded recently.
+     */
+    public long getValueAtPercentile(double percentile) {
+        rotateIfDue();
+        return halves[current].getValueAtPercentile(percentile);
+    }
+
+    public long getCount() {
+        rotateIfDue();
+        return halves[current].getCount();
+    }
+
+    /**
+     * Return a copy of the current counts of the recent values.
+     *
+     * @return The Snapshot.
+     */
+    public Histogram.Snapshot snapshot() {
+        rotateIfDue();
+        return halves[current].snapshot();
+    }
+
+    /**
+     * Clear every recorded value.
+     */
+    public void reset() {
+        halves[0].reset();
+        halves[1].reset();
+        rotatedAt.set(System.nanoTime());
+    }
+
+    private void rotateIfDue() {
+        long now = System.nanoTime();
+        long last = rotatedAt.get();
+        // Only the thread that moves the time on rotates
+        if (now - last >= windowNanos && rotatedAt.compareAndSet(last, now)) {
+            rotate();
+        }
+    }
+
+    /**
+     * Clear the half that is read and read the other one, which holds
+     * the values since the last rotation.
+     */
+    void rotate() {
+        int read = current;
+        halves[read].reset();
+        current = 1 - read;
+    }
+
+}
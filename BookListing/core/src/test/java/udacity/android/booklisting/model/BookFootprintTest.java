@@ -0,0 +1,133 @@
+package udacity.android.booklisting.model;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests comparing the compact Book with the previous bean that
+ * held an ArrayList of authors per instance. The heap is measured as the
+ * bytes allocated by the test thread, which unlike the used heap does not
+ * depend on when the garbage collector runs.
+ */
+public class BookFootprintTest {
+
+    private static final int BOOKS = 20000;
+
+    private static final String[] AUTHOR_NAMES = {
+            "Bill Phillips", "Chris Stewart", "Kristin Marsicano", "Reto Meier",
+            "Mario Zechner", "Robert Green", "Ian G. Clifton", "Dawn Griffiths"
+    };
+
+    /**
+     * The previous Book: a mutable bean with its own author list.
+     */
+    private static class LegacyBook {
+        String title;
+        List<String> authors;
+        String descriptionUrl;
+        String authorsText;
+
+        LegacyBook(String title, List<String> authors, String descriptionUrl) {
+            this.title = title;
+            this.authors = authors;
+            this.descriptionUrl = descriptionUrl;
+
+            StringBuilder builder = new StringBuilder();
+            for (String author : authors) {
+                builder.append(author).append(" ");
+            }
+            this.authorsText = authors.isEmpty() ? null : builder.toString().trim();
+        }
+    }
+
+    @Test
+    public void book_allocatesLessThanLegacyBean() {
+        // Build once to load the classes before measuring
+        buildLegacy(10);
+        buildCompact(10);
+
+        long legacyBytes = allocatedBytes();
+        List<LegacyBook> legacy = buildLegacy(BOOKS);
+        legacyBytes = allocatedBytes() - legacyBytes;
+        assertEquals(BOOKS, legacy.size());
+
+        long compactBytes = allocatedBytes();
+        List<Book> compact = buildCompact(BOOKS);
+        compactBytes = allocatedBytes() - compactBytes;
+        assertEquals(BOOKS, compact.size());
+
+        assertTrue(compactBytes < legacyBytes);
+    }
+
+    @Test
+    public void book_sharesAuthorNames() {
+        Book first = new Book("A", Arrays.asList(new String("Reto Meier")), null);
+        Book second = new Book("B", Arrays.asList(new String("Reto Meier")), null);
+
+        assertSame(first.getAuthors().get(0), second.getAuthors().get(0));
+        assertSame(first.getAuthorsText(), first.getAuthors().get(0));
+    }
+
+    @Test
+    public void book_withoutAuthors() {
+        Book book = new Book("Title", new ArrayList<String>(), "url");
+
+        assertTrue(book.getAuthors().isEmpty());
+        assertEquals(0, book.getAuthorCount());
+        assertNull(book.getAuthorsText());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void book_authorsAreUnmodifiable() {
+        new Book("Title", Arrays.asList("Reto Meier"), "url").getAuthors().set(0, "Someone");
+    }
+
+    private static List<LegacyBook> buildLegacy(int count) {
+        List<LegacyBook> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            books.add(new LegacyBook(title(i), authors(i), url(i)));
+        }
+        return books;
+    }
+
+    private static List<Book> buildCompact(int count) {
+        List<Book> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            books.add(new Book(title(i), authors(i), url(i)));
+        }
+        return books;
+    }
+
+    private static String title(int i) {
+        return "Android Programming " + i;
+    }
+
+    private static String url(int i) {
+        return "http://books.google.com/books?id=" + i + "&printsec=frontcover&source=gbs_api";
+    }
+
+    /**
+     * Return zero to two author names, each a new String as parsing
+     * a response would produce.
+     */
+    private static List<String> authors(int i) {
+        List<String> authors = new ArrayList<>();
+        for (int index = 0; index < i % 3; index++) {
+            authors.add(new String(AUTHOR_NAMES[(i + index) % AUTHOR_NAMES.length]));
+        }
+        return authors;
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+}
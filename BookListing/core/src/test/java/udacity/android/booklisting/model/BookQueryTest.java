@@ -0,0 +1,111 @@
+package udacity.android.booklisting.model;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import udacity.android.booklisting.utility.BookCache;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the BookQuery url and its use as a cache key.
+ */
+public class BookQueryTest {
+
+    private static final String FIELDS =
+            "fields=items%28id%2CvolumeInfo%28title%2Cauthors%2CpublishedDate%2Ccategories%2CpreviewLink%2C"
+                    + "imageLinks%2FsmallThumbnail%29%29%2CtotalItems";
+
+    @Test
+    public void toUrl_projectsFieldsAndPages() {
+        BookQuery query = new BookQuery.Builder(" harry potter ").build();
+
+        assertEquals("https://www.googleapis.com/books/v1/volumes?q=harry+potter&" + FIELDS
+                + "&maxResults=10&startIndex=0", query.toUrl());
+    }
+
+    @Test
+    public void toUrl_addsScopeFiltersAndOrder() {
+        BookQuery query = new BookQuery.Builder("tolkien")
+                .scope(BookQuery.Scope.AUTHOR)
+                .filter(BookQuery.Filter.FREE_EBOOKS)
+                .printType(BookQuery.PrintType.BOOKS)
+                .orderBy(BookQuery.OrderBy.NEWEST)
+                .language("en")
+                .page(20, 40)
+                .build();
+
+        assertEquals("https://www.googleapis.com/books/v1/volumes?q=inauthor%3Atolkien&" + FIELDS
+                + "&filter=free-ebooks&langRestrict=en&maxResults=40&orderBy=newest"
+                + "&printType=books&startIndex=20", query.toUrl());
+        assertEquals("tolkien", query.getTerms());
+    }
+
+    @Test
+    public void toUrl_equivalentQueriesShareCacheKey() {
+        BookQuery query = new BookQuery.Builder("c++ & java")
+                .orderBy(BookQuery.OrderBy.RELEVANCE)
+                .build();
+        BookQuery same = new BookQuery.Builder("  C++ & Java")
+                .orderBy(BookQuery.OrderBy.RELEVANCE)
+                .page(0, 10)
+                .build();
+
+        String key = BookCache.normalize(query.toUrl());
+        assertEquals(key, BookCache.normalize(same.toUrl()));
+        assertEquals(key, BookCache.normalize(key));
+    }
+
+    @Test
+    public void toBuilder_keepsEverythingButThePage() {
+        BookQuery first = new BookQuery.Builder("android")
+                .filter(BookQuery.Filter.EBOOKS)
+                .build();
+        BookQuery second = first.toBuilder().page(10, 20).build();
+
+        assertEquals(BookQuery.Filter.EBOOKS, second.getFilter());
+        assertEquals(10, second.getStartIndex());
+        assertEquals(20, second.getMaxResults());
+        assertEquals(first, second.toBuilder().page(0, 10).build());
+        assertNotEquals(first, second);
+    }
+
+    @Test
+    public void serializes() throws Exception {
+        BookQuery query = new BookQuery.Builder("android")
+                .scope(BookQuery.Scope.TITLE)
+                .language("de")
+                .build();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(query);
+        out.close();
+        Object copy = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+        assertEquals(query, copy);
+        assertEquals(query.toUrl(), ((BookQuery) copy).toUrl());
+    }
+
+    @Test
+    public void volumeUrl_projectsDetailFields() {
+        assertEquals("https://www.googleapis.com/books/v1/volumes/wZcQAwAAQBAJ?fields=id%2CvolumeInfo%28title%2C"
+                + "subtitle%2Cauthors%2Cpublisher%2CpublishedDate%2Cdescription%2CpageCount%2CpreviewLink%2C"
+                + "imageLinks%2Fthumbnail%29", BookQuery.volumeUrl("wZcQAwAAQBAJ"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builder_rejectsEmptyTerms() {
+        new BookQuery.Builder("  ");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builder_rejectsPagesOverTheLimit() {
+        new BookQuery.Builder("android").page(0, BookQuery.MAX_RESULTS_LIMIT + 1);
+    }
+
+}
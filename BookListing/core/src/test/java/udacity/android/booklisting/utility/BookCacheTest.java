@@ -0,0 +1,126 @@
+package udacity.android.booklisting.utility;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import udacity.android.booklisting.model.Book;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the BookCache storing entries on disk and evicting
+ * the least recently used ones.
+ */
+public class BookCacheTest {
+
+    private static final String URL = "https://www.googleapis.com/books/v1/volumes?q=";
+    private static final long TTL_MILLIS = 60000;
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("book_cache", null);
+        directory.delete();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void get_returnsStoredEntry() {
+        BookCache cache = new BookCache(directory, Long.MAX_VALUE, TTL_MILLIS);
+        cache.put(URL + "android", entry("a", "\"etag\""));
+
+        BookCache.Entry entry = cache.get(URL + "Android");
+
+        assertEquals("\"etag\"", entry.getEtag());
+        assertEquals(Collections.singletonList("a"), ids(entry.getBooks()));
+        assertFalse(entry.isStale());
+        assertNull(cache.get(URL + "java"));
+    }
+
+    @Test
+    public void put_leavesNoTemporaryFiles() {
+        BookCache cache = new BookCache(directory, Long.MAX_VALUE, TTL_MILLIS);
+        cache.put(URL + "android", entry("a", null));
+        cache.put(URL + "android", entry("b", null));
+
+        assertEquals(1, directory.listFiles().length);
+        assertEquals(Collections.singletonList("b"), ids(cache.get(URL + "android").getBooks()));
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsedEntry() {
+        long entryBytes = entryBytes();
+        BookCache cache = new BookCache(directory, entryBytes * 5 / 2, TTL_MILLIS);
+        cache.put(URL + "aaa", entry("a", null));
+        cache.put(URL + "bbb", entry("b", null));
+
+        // Reading the first entry makes the second the least recently used
+        assertNotNull(cache.get(URL + "aaa"));
+        cache.put(URL + "ccc", entry("c", null));
+
+        assertNull(cache.get(URL + "bbb"));
+        assertNotNull(cache.get(URL + "aaa"));
+        assertNotNull(cache.get(URL + "ccc"));
+        assertEquals(2, directory.listFiles().length);
+    }
+
+    @Test
+    public void getAllBooks_returnsLeastRecentlyUsedFirst() {
+        BookCache cache = new BookCache(directory, Long.MAX_VALUE, TTL_MILLIS);
+        cache.put(URL + "aaa", entry("a", null));
+        cache.put(URL + "bbb", entry("b", null));
+        cache.put(URL + "ccc", entry("c", null));
+        assertNotNull(cache.get(URL + "aaa"));
+
+        List<String> ids = new ArrayList<>();
+        for (List<Book> books : cache.getAllBooks()) {
+            ids.addAll(ids(books));
+        }
+        assertEquals(Arrays.asList("b", "c", "a"), ids);
+    }
+
+    /**
+     * Return the size on disk of one entry as written by the tests.
+     */
+    private long entryBytes() {
+        BookCache cache = new BookCache(directory, Long.MAX_VALUE, TTL_MILLIS);
+        cache.put(URL + "zzz", entry("z", null));
+        File[] files = directory.listFiles();
+        long length = files[0].length();
+        files[0].delete();
+        return length;
+    }
+
+    private static BookCache.Entry entry(String id, String etag) {
+        List<Book> books = Collections.singletonList(
+                new Book(id, "Title " + id, Collections.singletonList("Author"), null, null));
+        return new BookCache.Entry(books, etag, null, System.currentTimeMillis(), false);
+    }
+
+    private static List<String> ids(List<Book> books) {
+        List<String> ids = new ArrayList<>();
+        for (Book book : books) {
+            ids.add(book.getId());
+        }
+        return ids;
+    }
+
+}
@@ -0,0 +1,101 @@
+package udacity.android.booklisting.utility;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import udacity.android.booklisting.model.Book;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for BookFacets counting pages of Books as they arrive.
+ */
+public class BookFacetsTest {
+
+    @Test
+    public void add_countsEachFacet() {
+        BookFacets facets = new BookFacets();
+        facets.add(Arrays.asList(
+                book("a", 2016, Arrays.asList("Bill Phillips", "Chris Stewart"), "Computers"),
+                book("b", 2016, Collections.singletonList("Bill Phillips"), "Computers"),
+                book("c", 2013, Collections.singletonList("Reto Meier"), "Fiction")));
+
+        assertEquals(3, facets.getBookCount());
+        assertEquals(2, facets.getCount(BookFacets.Facet.AUTHOR, "Bill Phillips"));
+        assertEquals(1, facets.getCount(BookFacets.Facet.AUTHOR, "Reto Meier"));
+        assertEquals(2, facets.getCount(BookFacets.Facet.YEAR, "2016"));
+        assertEquals(1, facets.getCount(BookFacets.Facet.CATEGORY, "Fiction"));
+        assertEquals(0, facets.getCount(BookFacets.Facet.CATEGORY, "Poetry"));
+    }
+
+    @Test
+    public void add_skipsBooksAlreadyCounted() {
+        BookFacets facets = new BookFacets();
+        Book first = book("a", 2016, Collections.singletonList("Reto Meier"), "Computers");
+        Book second = book("b", 2017, Collections.singletonList("Reto Meier"), "Computers");
+
+        // A partial result delivered again along with the rest
+        assertEquals(1, facets.add(Collections.singletonList(first)));
+        assertEquals(1, facets.add(Arrays.asList(first, second)));
+
+        assertEquals(2, facets.getCount(BookFacets.Facet.AUTHOR, "Reto Meier"));
+        assertEquals(2, facets.getBookCount());
+    }
+
+    @Test
+    public void add_ignoresUnknownYears() {
+        BookFacets facets = new BookFacets();
+        facets.add(Collections.singletonList(new Book("a", "Title", null, null, null)));
+
+        assertTrue(facets.top(BookFacets.Facet.YEAR, 5).isEmpty());
+        assertEquals(0, facets.getCount(BookFacets.Facet.YEAR, "0"));
+    }
+
+    @Test
+    public void top_ordersByCountThenLabel() {
+        BookFacets facets = new BookFacets();
+        facets.add(Arrays.asList(
+                book("a", 2015, Collections.singletonList("Zed"), "Computers"),
+                book("b", 2015, Collections.singletonList("Zed"), "Computers"),
+                book("c", 2016, Collections.singletonList("Amy"), "Computers"),
+                book("d", 2017, Collections.singletonList("Bob"), "Computers")));
+
+        List<BookFacets.Count> top = facets.top(BookFacets.Facet.AUTHOR, 2);
+        assertEquals(2, top.size());
+        assertEquals("Zed", top.get(0).getLabel());
+        assertEquals(2, top.get(0).getCount());
+        assertEquals("Amy", top.get(1).getLabel());
+
+        assertEquals("2015 (2)", facets.top(BookFacets.Facet.YEAR, 1).get(0).toString());
+    }
+
+    @Test
+    public void add_growsPastInitialCapacity() {
+        BookFacets facets = new BookFacets();
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            books.add(book("id" + i, 1900 + i % 120, Collections.singletonList("Author " + i % 700),
+                    "Category " + i % 40));
+        }
+
+        // Stream the Books in pages, as they arrive from the API
+        for (int start = 0; start < books.size(); start += 40) {
+            facets.add(books.subList(start, Math.min(start + 40, books.size())));
+        }
+
+        assertEquals(5000, facets.getBookCount());
+        assertEquals(8, facets.getCount(BookFacets.Facet.AUTHOR, "Author 3"));
+        assertEquals(125, facets.getCount(BookFacets.Facet.CATEGORY, "Category 39"));
+        assertEquals(42, facets.getCount(BookFacets.Facet.YEAR, "1900"));
+        assertEquals(40, facets.top(BookFacets.Facet.CATEGORY, 100).size());
+    }
+
+    private static Book book(String id, int year, List<String> authors, String category) {
+        return new Book(id, "Title " + id, authors, null, null, year, Collections.singletonList(category));
+    }
+
+}
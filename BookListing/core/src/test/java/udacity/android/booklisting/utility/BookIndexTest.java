@@ -0,0 +1,263 @@
+package udacity.android.booklisting.utility;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import udacity.android.booklisting.model.Book;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the BookIndex, including searches of an index of
+ * 100k synthetic Books. Search times are measured by IndexBenchmark.
+ */
+public class BookIndexTest {
+
+    private static final int SYNTHETIC_BOOKS = 100000;
+    private static final int SEARCHES = 2000;
+
+    private static final String[] SYLLABLES = {
+            "an", "dro", "id", "ja", "va", "pro", "gram", "ming", "kot", "lin",
+            "de", "sign", "pat", "tern", "net", "work", "da", "ta", "ba", "se",
+            "al", "go", "rithm", "struc", "ture", "sys", "tem", "cloud", "mo", "bile"
+    };
+
+    private BookIndex index;
+
+    @Before
+    public void setUp() {
+        index = new BookIndex();
+        index.addAll(Arrays.asList(
+                book("Android Programming", "https://books/1", "Bill Phillips", "Brian Hardy"),
+                book("Java Concurrency in Practice", "https://books/2", "Brian Goetz"),
+                book("Effective Java", "https://books/3", "Joshua Bloch"),
+                book("Android Developer Tools Essentials", "https://books/4")));
+    }
+
+    @Test
+    public void search_exactWord() {
+        assertEquals(titles("Java Concurrency in Practice"), titlesOf(index.search("concurrency", 10)));
+    }
+
+    @Test
+    public void search_prefixOfLastWord() {
+        assertEquals(titles("Android Programming", "Android Developer Tools Essentials"),
+                titlesOf(index.search("andr", 10)));
+        assertEquals(titles("Effective Java"), titlesOf(index.search("java eff", 1)));
+    }
+
+    @Test
+    public void search_prefixOnlyAppliesToLastWord() {
+        assertEquals(titles("Android Programming"), titlesOf(index.search("andr programming", 10)));
+    }
+
+    @Test
+    public void search_toleratesTypos() {
+        // One substitution, one transposed pair and one missing letter
+        assertEquals(titles("Java Concurrency in Practice"), titlesOf(index.search("practise", 10)));
+        assertEquals("Effective Java", index.search("efefctive", 10).get(0).getTitle());
+        assertEquals(titles("Effective Java"), titlesOf(index.search("bloh", 10)));
+    }
+
+    @Test
+    public void search_shortWordsAreNotFuzzy() {
+        assertEquals(2, index.search("jav", 10).size());
+        assertTrue(index.search("x", 10).isEmpty());
+    }
+
+    @Test
+    public void search_titleRanksAboveAuthor() {
+        index.addAll(Collections.singletonList(book("Brian's Song", "https://books/5", "William Blinn")));
+
+        List<Book> results = index.search("brian", 10);
+        assertEquals("Brian's Song", results.get(0).getTitle());
+        assertEquals(3, results.size());
+    }
+
+    @Test
+    public void search_moreMatchingWordsRankFirst() {
+        List<Book> results = index.search("android essentials", 10);
+        assertEquals("Android Developer Tools Essentials", results.get(0).getTitle());
+        assertEquals("Android Programming", results.get(1).getTitle());
+    }
+
+    @Test
+    public void addAll_skipsBooksAlreadyIndexed() {
+        index.addAll(Collections.singletonList(book("Effective Java", "https://books/3", "Joshua Bloch")));
+        assertEquals(4, index.size());
+        assertEquals(1, index.search("effective", 10).size());
+    }
+
+    @Test
+    public void addAll_evictsOldestBooksAtMaxBooks() {
+        BookIndex small = new BookIndex(2);
+        small.addAll(Arrays.asList(book("Android Programming", "https://books/1"),
+                book("Effective Java", "https://books/3"), book("Android in Action", "https://books/6")));
+
+        assertEquals(2, small.size());
+        assertEquals(titles("Android in Action"), titlesOf(small.search("android", 10)));
+        assertEquals(titles("Effective Java"), titlesOf(small.search("java", 10)));
+    }
+
+    @Test
+    public void addAll_keepsNewestBooksAcrossRebuilds() {
+        BookIndex small = new BookIndex(3);
+        for (int i = 0; i < 20; i++) {
+            small.addAll(Collections.singletonList(book("Volume " + i, "https://books/" + i)));
+        }
+
+        assertEquals(3, small.size());
+        assertEquals(titles("Volume 17", "Volume 18", "Volume 19"), titlesOf(small.search("volume", 10)));
+        assertTrue(small.search("12", 10).isEmpty());
+
+        // An evicted Book is indexed again when it is fetched again
+        small.addAll(Collections.singletonList(book("Volume 0", "https://books/0")));
+        assertEquals(titles("Volume 0"), titlesOf(small.search("0", 10)));
+    }
+
+    @Test
+    public void trySearch_returnsNullWhileBooksAreAdded() throws Exception {
+        final CountDownLatch adding = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        // A page whose Books are handed over only once the test allows it
+        final List<Book> page = new AbstractList<Book>() {
+            @Override
+            public Book get(int position) {
+                adding.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return book("Android in Action", "https://books/6");
+            }
+
+            @Override
+            public int size() {
+                return 1;
+            }
+        };
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                index.addAll(page);
+            }
+        });
+        writer.start();
+        adding.await();
+
+        assertNull(index.trySearch("android", 10));
+
+        release.countDown();
+        writer.join();
+        assertEquals(3, index.trySearch("android", 10).size());
+    }
+
+    @Test
+    public void search_emptyQuery() {
+        assertTrue(index.search("  ", 10).isEmpty());
+        assertTrue(index.search(null, 10).isEmpty());
+    }
+
+    @Test
+    public void search_syntheticBooksFindsEveryQuery() {
+        Random random = new Random(42);
+        List<String> words = vocabulary(random, 5000);
+        List<String> names = vocabulary(random, 3000);
+
+        BookIndex large = new BookIndex();
+        List<Book> page = new ArrayList<>();
+        for (int i = 0; i < SYNTHETIC_BOOKS; i++) {
+            page.add(book(phrase(random, words, 2 + random.nextInt(4)), "https://books/s" + i,
+                    phrase(random, names, 2)));
+
+            // Add in pages as the loaders do
+            if (page.size() == 40) {
+                large.addAll(page);
+                page.clear();
+            }
+        }
+        large.addAll(page);
+        assertEquals(SYNTHETIC_BOOKS, large.size());
+
+        // Queries as typed: a whole word and a partial last word, some with a typo
+        String[] queries = new String[SEARCHES];
+        for (int i = 0; i < SEARCHES; i++) {
+            String first = words.get(random.nextInt(words.size()));
+            String second = words.get(random.nextInt(words.size()));
+            String partial = second.substring(0, Math.min(second.length(), 3 + random.nextInt(3)));
+            queries[i] = (i % 4 == 0 ? typo(random, first) : first) + " " + partial;
+        }
+
+        for (String query : queries) {
+            List<Book> results = large.search(query, 10);
+            assertFalse("No results for " + query, results.isEmpty());
+            assertTrue(results.size() <= 10);
+        }
+    }
+
+    /**
+     * Build a vocabulary of distinct made up words from the syllables.
+     */
+    private static List<String> vocabulary(Random random, int size) {
+        List<String> words = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        while (words.size() < size) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 2 + random.nextInt(3);
+            for (int i = 0; i < syllables; i++) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            if (seen.add(word.toString())) {
+                words.add(word.toString());
+            }
+        }
+        return words;
+    }
+
+    private static String phrase(Random random, List<String> words, int length) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            builder.append(i == 0 ? "" : " ").append(words.get(random.nextInt(words.size())));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Replace one letter of the word.
+     */
+    private static String typo(Random random, String word) {
+        char[] letters = word.toCharArray();
+        int position = 1 + random.nextInt(letters.length - 1);
+        letters[position] = letters[position] == 'x' ? 'q' : 'x';
+        return new String(letters);
+    }
+
+    private static Book book(String title, String url, String... authors) {
+        return new Book(title, Arrays.asList(authors), url);
+    }
+
+    private static List<String> titles(String... titles) {
+        return Arrays.asList(titles);
+    }
+
+    private static List<String> titlesOf(List<Book> books) {
+        List<String> titles = new ArrayList<>();
+        for (Book book : books) {
+            titles.add(book.getTitle());
+        }
+        return titles;
+    }
+
+}
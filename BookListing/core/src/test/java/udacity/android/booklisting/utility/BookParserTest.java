@@ -0,0 +1,166 @@
+package udacity.android.booklisting.utility;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import udacity.android.booklisting.model.Book;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the streaming BookParser. The output is compared
+ * against the previous String + org.json implementation on a recorded
+ * Google Books API response.
+ */
+public class BookParserTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int FULL_PAGE = 40;
+
+    private byte[] recorded;
+    private byte[] fullPage;
+
+    @Before
+    public void setUp() throws Exception {
+        recorded = readFixture("volumes_response.json");
+
+        // Repeat the recorded items to build a maxResults=40 sized page
+        JSONObject response = new JSONObject(new String(recorded, UTF_8));
+        JSONArray items = response.getJSONArray("items");
+        JSONArray repeated = new JSONArray();
+        for (int i = 0; i < FULL_PAGE; i++) {
+            repeated.put(items.get(i % items.length()));
+        }
+        response.put("items", repeated);
+        fullPage = response.toString().getBytes(UTF_8);
+    }
+
+    @Test
+    public void parse_matchesJsonObjectPath() throws Exception {
+        List<Book> expected = legacyExtract(new ByteArrayInputStream(recorded));
+        List<Book> actual = BookParser.parse(new ByteArrayInputStream(recorded));
+
+        assertEquals(4, actual.size());
+        assertEquals(toStrings(expected), toStrings(actual));
+        assertTrue(actual.get(2).getAuthors().isEmpty());
+        assertTrue(actual.get(0).getThumbnailUrl().contains("id=wZcQAwAAQBAJ"));
+        assertEquals("wZcQAwAAQBAJ", actual.get(0).getId());
+    }
+
+    @Test
+    public void parse_readsPublishedYearAndCategories() throws Exception {
+        List<Book> books = BookParser.parse(new ByteArrayInputStream(recorded));
+
+        assertEquals(2017, books.get(0).getPublishedYear());
+        assertEquals(2013, books.get(2).getPublishedYear());
+        assertEquals(Collections.singletonList("Computers"), books.get(0).getCategories());
+    }
+
+    @Test
+    public void parseYear_acceptsPartialDates() {
+        assertEquals(2016, Book.parseYear("2016-08-12"));
+        assertEquals(2016, Book.parseYear("2016"));
+        assertEquals(Book.UNKNOWN_YEAR, Book.parseYear("201"));
+        assertEquals(Book.UNKNOWN_YEAR, Book.parseYear(null));
+    }
+
+    @Test
+    public void parse_emptyResponse() throws Exception {
+        byte[] empty = "{\"kind\":\"books#volumes\",\"totalItems\":0}".getBytes(UTF_8);
+        assertTrue(BookParser.parse(new ByteArrayInputStream(empty)).isEmpty());
+    }
+
+    @Test
+    public void parse_allocatesLessThanJsonObjectPath() throws Exception {
+        // Warm up both paths so class loading is not counted
+        for (int i = 0; i < 50; i++) {
+            legacyExtract(new ByteArrayInputStream(fullPage));
+            BookParser.parse(new ByteArrayInputStream(fullPage));
+        }
+
+        long legacyBytes = allocatedBytes();
+        List<Book> expected = legacyExtract(new ByteArrayInputStream(fullPage));
+        legacyBytes = allocatedBytes() - legacyBytes;
+
+        long streamingBytes = allocatedBytes();
+        List<Book> actual = BookParser.parse(new ByteArrayInputStream(fullPage));
+        streamingBytes = allocatedBytes() - streamingBytes;
+
+        assertEquals(toStrings(expected), toStrings(actual));
+        assertTrue(streamingBytes < legacyBytes);
+    }
+
+    /**
+     * The previous extraction: read the whole stream into a String and
+     * build the org.json tree before picking out the Book fields.
+     */
+    private static List<Book> legacyExtract(InputStream inputStream) throws Exception {
+        StringBuilder output = new StringBuilder();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, UTF_8));
+        String line = reader.readLine();
+        while (line != null) {
+            output.append(line);
+            line = reader.readLine();
+        }
+
+        List<Book> books = new ArrayList<>();
+        JSONArray itemsArray = new JSONObject(output.toString()).getJSONArray("items");
+        for (int i = 0; i < itemsArray.length(); i++) {
+            JSONObject volumeInfo = itemsArray.getJSONObject(i).getJSONObject("volumeInfo");
+            List<String> authors = new ArrayList<>();
+            if (volumeInfo.has("authors")) {
+                JSONArray authorArray = volumeInfo.getJSONArray("authors");
+                for (int index = 0; index < authorArray.length(); index++) {
+                    authors.add(authorArray.getString(index));
+                }
+            }
+            books.add(new Book(volumeInfo.getString("title"), authors,
+                    volumeInfo.getString("previewLink")));
+        }
+        return books;
+    }
+
+    private static List<String> toStrings(List<Book> books) {
+        List<String> strings = new ArrayList<>();
+        for (Book book : books) {
+            strings.add(book.toString());
+        }
+        return strings;
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private byte[] readFixture(String name) throws IOException {
+        InputStream in = getClass().getClassLoader().getResourceAsStream(name);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+}
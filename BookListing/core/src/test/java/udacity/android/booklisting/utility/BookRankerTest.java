@@ -0,0 +1,125 @@
+package udacity.android.booklisting.utility;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import udacity.android.booklisting.model.Book;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the BookRanker removing duplicate editions and
+ * ranking the distinct works. How ranking time grows with the number of
+ * Books is measured by RankerBenchmark.
+ */
+public class BookRankerTest {
+
+    // Puts the works with the most editions first
+    private static final BookRanker.Scorer MOST_EDITIONS = new BookRanker.Scorer() {
+        @Override
+        public double score(Book book, int position, int editions) {
+            return editions;
+        }
+    };
+
+    @Test
+    public void rank_removesDuplicateVolumesAndEditions() {
+        List<Book> books = Arrays.asList(
+                book("a", "The Hobbit", 1937, "J.R.R. Tolkien"),
+                book("b", "Hobbit", 1995, "J. R. R. Tolkien"),
+                book("a", "The Hobbit", 1937, "J.R.R. Tolkien"),
+                book("c", "The Hobbit", 2012, "Someone Else"),
+                book("d", "Les Mis\u00e9rables", 1862, "Victor Hugo"),
+                book("e", "LES MISERABLES!", 1987, "Hugo, Victor", "victor hugo"));
+
+        List<Book> ranked = new BookRanker(BookRanker.API_ORDER).rank(books);
+
+        assertEquals(Arrays.asList("a", "c", "d", "e"), ids(ranked));
+    }
+
+    @Test
+    public void rank_matchesAuthorSetInAnyOrder() {
+        List<Book> books = Arrays.asList(
+                book("a", "Android Programming", 2015, "Bill Phillips", "Chris Stewart"),
+                book("b", "Android Programming.", 2017, "Chris Stewart", "Bill Phillips"),
+                book("c", "Android Programming", 2019, "Bill Phillips"));
+
+        assertEquals(Arrays.asList("a", "c"), ids(new BookRanker(BookRanker.API_ORDER).rank(books)));
+    }
+
+    @Test
+    public void rank_keepsBooksWithoutAuthorsApart() {
+        List<Book> books = Arrays.asList(
+                new Book("a", "Poems", null, null, null),
+                new Book("b", "Poems", null, null, null));
+
+        assertEquals(2, new BookRanker(BookRanker.API_ORDER).rank(books).size());
+    }
+
+    @Test
+    public void rank_ordersByScorerKeepingApiOrderForTies() {
+        List<Book> books = Arrays.asList(
+                book("a", "First", 2001, "Author"),
+                book("b", "Second", 2010, "Author"),
+                book("c", "Third", 2001, "Author"),
+                book("d", "Second", 2012, "Author"));
+
+        assertEquals(Arrays.asList("b", "a", "c"), ids(new BookRanker(MOST_EDITIONS).rank(books)));
+
+        BookRanker reversed = new BookRanker(new BookRanker.Scorer() {
+            @Override
+            public double score(Book book, int position, int editions) {
+                return position;
+            }
+        });
+        assertEquals(Arrays.asList("c", "b", "a"), ids(reversed.rank(books)));
+    }
+
+    @Test
+    public void rank_largeResultSets() {
+        BookRanker ranker = new BookRanker(MOST_EDITIONS);
+
+        assertEquals(2500, ranker.rank(generate(5000)).size());
+        assertEquals(25000, ranker.rank(generate(50000)).size());
+    }
+
+    @Test
+    public void normalize_foldsCaseAccentsAndPunctuation() {
+        assertEquals("j r r tolkien", BookRanker.normalize(" J.R.R.  Tolkien "));
+        assertEquals("les miserables", BookRanker.normalize("Les Mis\u00e9rables"));
+        assertEquals("hobbit", BookRanker.normalizeTitle("The Hobbit"));
+        assertEquals("", BookRanker.normalize(null));
+    }
+
+    /**
+     * Return the Books with every work in two editions, one of them
+     * with the title in upper case.
+     */
+    private static List<Book> generate(int count) {
+        List<Book> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int work = i / 2;
+            String title = "Title of work " + work;
+            books.add(book("id" + i, i % 2 == 0 ? title : title.toUpperCase(), 1900 + work % 120,
+                    "Author " + work % 700));
+        }
+        return books;
+    }
+
+    private static Book book(String id, String title, int year, String... authors) {
+        return new Book(id, title, Arrays.asList(authors), null, null, year, Collections.<String>emptyList());
+    }
+
+    private static List<String> ids(List<Book> books) {
+        List<String> ids = new ArrayList<>();
+        for (Book book : books) {
+            ids.add(book.getId());
+        }
+        return ids;
+    }
+
+}
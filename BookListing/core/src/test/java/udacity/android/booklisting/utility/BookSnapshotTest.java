@@ -0,0 +1,176 @@
+package udacity.android.booklisting.utility;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import udacity.android.booklisting.model.Book;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for saving and restoring BookSnapshots. Load times are
+ * compared with parsing JSON by SnapshotBenchmark.
+ */
+public class BookSnapshotTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String KEY = "https://www.googleapis.com/books/v1/volumes?q=android";
+
+    private static final int BOOKS = 2000;
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("snapshot", null);
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void read_returnsWrittenBooks() {
+        List<Book> books = Arrays.asList(
+                new Book("wZcQAwAAQBAJ", "Android Programming", Arrays.asList("Bill Phillips", "Chris Stewart"),
+                        "http://books.google.com/preview", "http://books.google.com/cover", 2017,
+                        Collections.singletonList("Computers")),
+                new Book(null, "Untitled \u00e9dition", null, null, null),
+                new Book("x", "Same Author", Collections.singletonList("Bill Phillips"), null, null, 1999, null));
+
+        assertTrue(BookSnapshot.write(file, KEY, books, null));
+        List<Book> restored = BookSnapshot.read(file, KEY).getBooks();
+
+        assertEquals(3, restored.size());
+        for (int i = 0; i < books.size(); i++) {
+            assertEquals(books.get(i).toString(), restored.get(i).toString());
+            assertEquals(books.get(i).getKey(), restored.get(i).getKey());
+            assertEquals(books.get(i).getPublishedYear(), restored.get(i).getPublishedYear());
+            assertEquals(books.get(i).getCategories(), restored.get(i).getCategories());
+            assertEquals(books.get(i).getThumbnailUrl(), restored.get(i).getThumbnailUrl());
+        }
+        assertNull(restored.get(1).getId());
+        assertSame(restored.get(0).getAuthor(0), restored.get(2).getAuthor(0));
+    }
+
+    @Test
+    public void read_emptyList() {
+        assertTrue(BookSnapshot.write(file, KEY, Collections.<Book>emptyList(), null));
+        assertTrue(BookSnapshot.read(file, KEY).getBooks().isEmpty());
+        assertFalse(BookSnapshot.read(file, KEY).containsKey("volume0"));
+    }
+
+    @Test
+    public void containsKey_findsKeysAndWorkKeysOfEveryBook() {
+        List<Book> books = generate(50);
+        BookSnapshot.write(file, KEY, books, null);
+        BookSnapshot.Restored restored = BookSnapshot.read(file, KEY);
+
+        for (Book book : books) {
+            assertTrue(restored.containsKey(book.getKey()));
+            assertTrue(restored.containsKey(BookRanker.workKey(book)));
+        }
+        assertFalse(restored.containsKey("volume50"));
+        assertFalse(restored.containsKey(""));
+    }
+
+    @Test
+    public void restoreFacets_returnsSavedCounts() {
+        List<Book> books = generate(100);
+        BookFacets facets = new BookFacets();
+        facets.add(books);
+        BookSnapshot.write(file, KEY, books, facets);
+
+        BookFacets restored = new BookFacets();
+        BookSnapshot.read(file, KEY).restoreFacets(restored);
+
+        assertEquals(100, restored.getBookCount());
+        for (BookFacets.Facet facet : BookFacets.Facet.values()) {
+            assertEquals(facets.top(facet, 5).toString(), restored.top(facet, 5).toString());
+        }
+        assertEquals(facets.getCount(BookFacets.Facet.YEAR, "1955"),
+                restored.getCount(BookFacets.Facet.YEAR, "1955"));
+    }
+
+    @Test
+    public void read_ignoresSnapshotOfAnotherKey() {
+        BookSnapshot.write(file, KEY, generate(3), null);
+
+        assertNull(BookSnapshot.read(file, KEY + "&startIndex=10"));
+        assertEquals(3, BookSnapshot.read(file, KEY).getBooks().size());
+    }
+
+    @Test
+    public void read_rejectsTruncatedSnapshot() throws Exception {
+        BookSnapshot.write(file, KEY, generate(10), null);
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        out.setLength(out.length() - 3);
+        out.close();
+
+        assertNull(BookSnapshot.read(file, KEY));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void read_missingFile() {
+        file.delete();
+        assertNull(BookSnapshot.read(file, KEY));
+    }
+
+    @Test
+    public void write_smallerThanJsonResponse() throws Exception {
+        List<Book> books = generate(BOOKS);
+        byte[] json = toJson(books);
+        BookSnapshot.write(file, KEY, books, null);
+
+        assertTrue(file.length() < json.length);
+        assertEquals(BookParser.parse(new ByteArrayInputStream(json)).toString(),
+                BookSnapshot.read(file, KEY).getBooks().toString());
+    }
+
+    private static List<Book> generate(int count) {
+        List<Book> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String id = "volume" + i;
+            books.add(new Book(id, "Title of book " + i,
+                    Arrays.asList("Author " + i % 300, "Author " + (i + 7) % 300),
+                    "http://books.google.com/books?id=" + id,
+                    "http://books.google.com/books/content?id=" + id + "&zoom=5",
+                    1950 + i % 70, Collections.singletonList("Category " + i % 25)));
+        }
+        return books;
+    }
+
+    /**
+     * Write the Books as a Google Books API response.
+     */
+    private static byte[] toJson(List<Book> books) throws Exception {
+        JSONArray items = new JSONArray();
+        for (Book book : books) {
+            JSONObject volumeInfo = new JSONObject();
+            volumeInfo.put("title", book.getTitle());
+            volumeInfo.put("authors", new JSONArray(book.getAuthors()));
+            volumeInfo.put("publishedDate", String.valueOf(book.getPublishedYear()));
+            volumeInfo.put("categories", new JSONArray(book.getCategories()));
+            volumeInfo.put("previewLink", book.getDescriptionUrl());
+            volumeInfo.put("imageLinks", new JSONObject().put("smallThumbnail", book.getThumbnailUrl()));
+
+            items.put(new JSONObject().put("id", book.getId()).put("volumeInfo", volumeInfo));
+        }
+        return new JSONObject().put("totalItems", books.size()).put("items", items).toString().getBytes(UTF_8);
+    }
+
+}
@@ -0,0 +1,50 @@
+package udacity.android.booklisting.utility;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the CircuitBreaker states.
+ */
+public class CircuitBreakerTest {
+
+    @Test
+    public void opensAfterFailuresInARow() {
+        CircuitBreaker breaker = new CircuitBreaker(3, 60000);
+        breaker.recordFailure();
+        breaker.recordFailure();
+        breaker.recordSuccess();
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertTrue(breaker.allowRequest());
+
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void trialRequestClosesOrReopens() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(1, 50);
+        breaker.recordFailure();
+        assertFalse(breaker.allowRequest());
+
+        Thread.sleep(60);
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        // Only one trial request until it reports back
+        assertFalse(breaker.allowRequest());
+
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        Thread.sleep(60);
+        assertTrue(breaker.allowRequest());
+        breaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+}
@@ -0,0 +1,92 @@
+package udacity.android.booklisting.utility;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the Histogram buckets and percentiles.
+ */
+public class HistogramTest {
+
+    // Largest relative error of a reported value
+    private static final double PRECISION = 1.0 / 32;
+
+    @Test
+    public void index_bucketsAreOrderedAndCoverTheirValues() {
+        long previousHighest = -1;
+        for (int index = 0; Histogram.highestValue(index) < Long.MAX_VALUE / 4; index++) {
+            long highest = Histogram.highestValue(index);
+            assertTrue(highest > previousHighest);
+            assertEquals(index, Histogram.index(previousHighest + 1));
+            assertEquals(index, Histogram.index(highest));
+            previousHighest = highest;
+        }
+        assertTrue(Histogram.index(Long.MAX_VALUE) >= 0);
+    }
+
+    @Test
+    public void snapshot_smallValuesAreExact() {
+        Histogram histogram = new Histogram("small");
+        for (int value = 1; value <= 20; value++) {
+            histogram.record(value);
+        }
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(20, snapshot.getCount());
+        assertEquals(10, snapshot.getValueAtPercentile(50));
+        assertEquals(19, snapshot.getValueAtPercentile(95));
+        assertEquals(20, snapshot.getValueAtPercentile(100));
+        assertEquals(10.5, snapshot.getMean(), 0.001);
+    }
+
+    @Test
+    public void snapshot_percentilesWithinPrecision() {
+        Histogram histogram = new Histogram("latency_us");
+        Random random = new Random(7);
+        long[] values = new long[100000];
+        for (int i = 0; i < values.length; i++) {
+            // A long tailed latency distribution
+            values[i] = (long) (1000 * Math.exp(random.nextGaussian()));
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        for (double percentile : new double[]{50, 90, 95, 99, 99.9}) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long reported = snapshot.getValueAtPercentile(percentile);
+            assertTrue(percentile + ": " + reported + " vs " + exact,
+                    Math.abs(reported - exact) <= exact * PRECISION + 1);
+        }
+        assertEquals(values[values.length - 1], snapshot.getMax());
+    }
+
+    @Test
+    public void reset_clearsValues() {
+        Histogram histogram = new Histogram("reset");
+        histogram.record(-5);
+        histogram.record(1000);
+        assertEquals(2, histogram.snapshot().getCount());
+
+        histogram.reset();
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getValueAtPercentile(99));
+    }
+
+    @Test
+    public void metricsSnapshot_listsEveryMetric() {
+        Metrics.PARSE.record(1500);
+        Metrics.HTTP_REQUESTS.increment();
+
+        String snapshot = Metrics.snapshot();
+        assertTrue(snapshot.contains("parse_us count="));
+        assertTrue(snapshot.contains("http.connect_us count="));
+        assertTrue(snapshot.contains("http.requests count="));
+    }
+
+}
@@ -0,0 +1,197 @@
+package udacity.android.booklisting.utility;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import udacity.android.booklisting.model.Book;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for HttpClient against a local test server, checking
+ * connection reuse and warming, compressed bodies, conditional requests,
+ * Retry-After headers and downloads kept out of the API metrics, and
+ * against a plugged in Transport.
+ */
+public class HttpClientTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private MockWebServer server;
+    private byte[] body;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+
+        InputStream in = getClass().getClassLoader().getResourceAsStream("volumes_response.json");
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            body = out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        HttpClient.setTransport(null);
+        server.shutdown();
+    }
+
+    @Test
+    public void get_reusesConnection() throws Exception {
+        server.enqueue(new MockResponse().setBody(new String(body, UTF_8)));
+        server.enqueue(new MockResponse().setBody(new String(body, UTF_8)));
+
+        URL url = server.url("/books/v1/volumes?q=android").url();
+        for (int i = 0; i < 2; i++) {
+            HttpClient.Response response = HttpClient.get(url, null, null);
+            try {
+                assertEquals(4, BookParser.parse(response.getBody()).size());
+            } finally {
+                response.close();
+            }
+        }
+
+        // The second request is the second on the first connection
+        assertEquals(0, server.takeRequest().getSequenceNumber());
+        assertEquals(1, server.takeRequest().getSequenceNumber());
+    }
+
+    @Test
+    public void get_decodesGzipBody() throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+        gzip.write(body);
+        gzip.close();
+
+        server.enqueue(new MockResponse()
+                .setHeader("Content-Encoding", "gzip")
+                .setBody(new Buffer().write(compressed.toByteArray())));
+
+        HttpClient.Response response = HttpClient.get(server.url("/volumes").url(), null, null);
+        List<Book> books;
+        try {
+            books = BookParser.parse(response.getBody());
+        } finally {
+            response.close();
+        }
+
+        RecordedRequest request = server.takeRequest();
+        assertEquals("gzip", request.getHeader("Accept-Encoding"));
+        assertEquals(4, books.size());
+        assertEquals(compressed.size(), response.getBytesReceived());
+        assertTrue(response.getBytesReceived() < body.length / 2);
+    }
+
+    @Test
+    public void get_sendsValidatorsAndReportsNotModified() throws Exception {
+        String etag = "\"abc123\"";
+        String lastModified = "Mon, 03 Oct 2016 10:00:00 GMT";
+        server.enqueue(new MockResponse().setResponseCode(304).setHeader("ETag", etag));
+
+        HttpClient.Response response = HttpClient.get(server.url("/volumes").url(), etag, lastModified);
+        response.close();
+
+        RecordedRequest request = server.takeRequest();
+        assertEquals(etag, request.getHeader("If-None-Match"));
+        assertEquals(lastModified, request.getHeader("If-Modified-Since"));
+        assertTrue(response.isNotModified());
+        assertEquals(0, response.getBytesReceived());
+    }
+
+    @Test
+    public void get_readsRetryAfter() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503).setHeader("Retry-After", "3"));
+        server.enqueue(new MockResponse().setResponseCode(429)
+                .setHeader("Retry-After", "Mon, 03 Oct 2016 10:00:00 GMT"));
+        server.enqueue(new MockResponse().setResponseCode(503).setHeader("Retry-After", "soon"));
+        server.enqueue(new MockResponse().setResponseCode(503));
+
+        URL url = server.url("/volumes").url();
+        long[] expected = {3000, 0, -1, -1};
+        for (long millis : expected) {
+            HttpClient.Response response = HttpClient.get(url, null, null);
+            response.close();
+            assertEquals(millis, response.getRetryAfterMillis());
+        }
+    }
+
+    @Test
+    public void prewarm_leavesConnectionForFirstRequest() throws Exception {
+        // The API answers a request without a query with an error
+        server.enqueue(new MockResponse().setResponseCode(400));
+        server.enqueue(new MockResponse().setBody(new String(body, UTF_8)));
+
+        HttpClient.prewarm(server.url("/books/v1/volumes").url());
+        HttpClient.Response response = HttpClient.get(server.url("/books/v1/volumes?q=android").url(), null, null);
+        response.close();
+
+        RecordedRequest prewarm = server.takeRequest();
+        assertEquals("HEAD", prewarm.getMethod());
+        assertEquals(0, prewarm.getSequenceNumber());
+
+        // The first search is sent on the warmed connection
+        assertEquals(1, server.takeRequest().getSequenceNumber());
+    }
+
+    @Test
+    public void download_leavesApiMetricsUnchanged() throws Exception {
+        Metrics.reset();
+        server.enqueue(new MockResponse().setBody(new Buffer().write(new byte[2048])));
+
+        HttpClient.Response response = HttpClient.download(server.url("/cover.jpg").url(), null);
+        response.close();
+
+        assertEquals(0, Metrics.HTTP_REQUESTS.get());
+        assertEquals(0, Metrics.HTTP_CONNECT.getCount());
+        assertEquals(0, Metrics.HTTP_FIRST_BYTE.getCount());
+        assertEquals(0, Metrics.HTTP_BYTES.getCount());
+        assertEquals(1, Metrics.IMAGE_REQUESTS.get());
+        assertEquals(1, Metrics.IMAGE_BYTES.getCount());
+    }
+
+    @Test
+    public void fetchBooks_usesPluggedTransport() throws Exception {
+        final List<Map<String, String>> sentHeaders = new ArrayList<>();
+        HttpClient.setTransport(new HttpClient.Transport() {
+            @Override
+            public HttpClient.Response get(URL url, Map<String, String> headers,
+                                           HttpClient.Cancellation cancellation) throws IOException {
+                sentHeaders.add(headers);
+                return new HttpClient.Response(200, "\"v1\"", null, null,
+                        new ByteArrayInputStream(body));
+            }
+        });
+
+        BookCache.Entry entry = QueryUtility.fetchBooks("https://books.example/volumes?q=android", null);
+
+        assertEquals(4, entry.getBooks().size());
+        assertEquals("\"v1\"", entry.getEtag());
+        assertEquals("gzip", sentHeaders.get(0).get("Accept-Encoding"));
+    }
+
+}
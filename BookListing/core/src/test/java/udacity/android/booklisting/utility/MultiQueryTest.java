@@ -0,0 +1,200 @@
+package udacity.android.booklisting.utility;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import udacity.android.booklisting.model.Book;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for MultiQuery with a Fetcher whose sub-queries each
+ * wait for a latch, so the tests decide when and in which order they
+ * return instead of timing them.
+ */
+public class MultiQueryTest {
+
+    // Long enough never to pass unless a sub-query is held back on purpose
+    private static final long DEADLINE_MILLIS = 10000;
+    private static final long SHORT_DEADLINE_MILLIS = 200;
+
+    private ExecutorService executor;
+
+    // Books of each sub-query url, and the latch it waits for before returning them
+    private final Map<String, List<Book>> responses = new HashMap<>();
+    private final Map<String, CountDownLatch> gates = new ConcurrentHashMap<>();
+
+    // Counted down as each sub-query starts, and the sub-queries that were aborted
+    private volatile CountDownLatch started = new CountDownLatch(3);
+    private final Set<String> aborted = Collections.synchronizedSet(new HashSet<String>());
+
+    private final MultiQuery.Fetcher fetcher = new MultiQuery.Fetcher() {
+        @Override
+        public List<Book> fetch(String url, HttpClient.Cancellation cancellation) {
+            started.countDown();
+            CountDownLatch gate = gates.get(url);
+            try {
+                while (!gate.await(5, TimeUnit.MILLISECONDS)) {
+                    if (cancellation.isCanceled()) {
+                        aborted.add(url);
+                        return null;
+                    }
+                }
+            } catch (InterruptedException e) {
+                aborted.add(url);
+                return null;
+            }
+            return responses.get(url);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        executor = MultiQuery.newExecutor(3, 8);
+
+        respond("plain", book("a", "Android Programming"), book("b", "Android Basics"));
+        respond("intitle", book("b", "Android Basics"), book("c", "Android in Action"));
+        respond("inauthor", book("d", "Hello, Android"), book("a", "Android Programming"));
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void run_runsSubQueriesAtOnce() throws Exception {
+        // No sub-query returns until all three have started
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    started.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (CountDownLatch gate : gates.values()) {
+                    gate.countDown();
+                }
+            }
+        }).start();
+
+        List<Book> books = new MultiQuery(executor, Arrays.asList("plain", "intitle", "inauthor"),
+                DEADLINE_MILLIS, fetcher).run(null);
+
+        assertEquals(Arrays.asList("a", "b", "c", "d"), ids(books));
+        assertTrue(aborted.isEmpty());
+    }
+
+    @Test
+    public void run_mergesInSubQueryOrderWithoutDuplicates() throws Exception {
+        // The last sub-query arrives first but its results still go last
+        gates.get("inauthor").countDown();
+        final List<String> order = Arrays.asList("intitle", "plain");
+
+        final List<Integer> arrivals = Collections.synchronizedList(new ArrayList<Integer>());
+        List<Book> books = new MultiQuery(executor, Arrays.asList("plain", "intitle", "inauthor"),
+                DEADLINE_MILLIS, fetcher).run(new MultiQuery.Listener() {
+            @Override
+            public void onResults(List<Book> books, int completed, int total) {
+                arrivals.add(books.size());
+                assertEquals(3, total);
+
+                // Let the next sub-query return
+                if (completed <= order.size()) {
+                    gates.get(order.get(completed - 1)).countDown();
+                }
+            }
+        });
+
+        assertEquals(Arrays.asList("a", "b", "c", "d"), ids(books));
+        assertEquals(Arrays.asList(2, 4, 4), arrivals);
+    }
+
+    @Test
+    public void run_abortsSubQueryPastDeadline() throws Exception {
+        gates.get("plain").countDown();
+        gates.get("inauthor").countDown();
+
+        List<Book> books = new MultiQuery(executor, Arrays.asList("plain", "intitle", "inauthor"),
+                SHORT_DEADLINE_MILLIS, fetcher).run(null);
+
+        assertEquals(Arrays.asList("a", "b", "d"), ids(books));
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(DEADLINE_MILLIS, TimeUnit.MILLISECONDS));
+        assertEquals(Collections.singleton("intitle"), new HashSet<>(aborted));
+    }
+
+    @Test
+    public void run_abortsQueuedSubQueryAtDeadlineOfSearch() throws Exception {
+        // The second sub-query waits for the only thread, held by the first
+        ExecutorService single = MultiQuery.newExecutor(1, 8);
+        started = new CountDownLatch(2);
+
+        List<Book> books = new MultiQuery(single, Arrays.asList("plain", "intitle"),
+                SHORT_DEADLINE_MILLIS, fetcher).run(null);
+
+        assertTrue(books.isEmpty());
+        single.shutdown();
+        assertTrue(single.awaitTermination(DEADLINE_MILLIS, TimeUnit.MILLISECONDS));
+        assertEquals(Collections.singleton("plain"), new HashSet<>(aborted));
+        assertEquals(1, started.getCount());
+    }
+
+    @Test
+    public void cancel_returnsNoResults() throws Exception {
+        started = new CountDownLatch(2);
+        final MultiQuery query = new MultiQuery(executor, Arrays.asList("plain", "intitle"),
+                DEADLINE_MILLIS, fetcher);
+
+        // Cancel once both sub-queries are running
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    started.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                query.cancel();
+            }
+        }).start();
+
+        assertTrue(query.run(null).isEmpty());
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(DEADLINE_MILLIS, TimeUnit.MILLISECONDS));
+        assertEquals(new HashSet<>(Arrays.asList("plain", "intitle")), new HashSet<>(aborted));
+    }
+
+    private void respond(String url, Book... books) {
+        responses.put(url, Arrays.asList(books));
+        gates.put(url, new CountDownLatch(1));
+    }
+
+    private static Book book(String id, String title) {
+        return new Book(id, title, Collections.singletonList("Author"), null, null);
+    }
+
+    private static List<String> ids(List<Book> books) {
+        List<String> ids = new ArrayList<>();
+        for (Book book : books) {
+            ids.add(book.getId());
+        }
+        return ids;
+    }
+
+}
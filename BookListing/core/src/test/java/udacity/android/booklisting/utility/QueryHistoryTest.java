@@ -0,0 +1,76 @@
+package udacity.android.booklisting.utility;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the QueryHistory ranking and storage.
+ */
+public class QueryHistoryTest {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("query_history", null);
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void top_ranksByCountAndRecency() {
+        QueryHistory history = new QueryHistory(file);
+        long now = 100 * DAY;
+
+        // Searched often but weeks ago
+        for (int i = 0; i < 4; i++) {
+            history.record("Tolkien", now - 21 * DAY);
+        }
+        history.record("android", now - DAY);
+        history.record("Android ", now);
+        history.record("kotlin", now);
+
+        assertEquals(Arrays.asList("android", "kotlin", "Tolkien"), history.top(5, now));
+        assertEquals(Arrays.asList("android"), history.top(1, now));
+    }
+
+    @Test
+    public void record_persistsAcrossInstances() {
+        QueryHistory history = new QueryHistory(file);
+        history.record("java", DAY);
+        history.record("java", DAY);
+        history.record("scala", DAY);
+        history.record("  ", DAY);
+
+        QueryHistory reloaded = new QueryHistory(file);
+        assertEquals(Arrays.asList("java", "scala"), reloaded.top(5, DAY));
+    }
+
+    @Test
+    public void record_keepsBestRankedQueries() {
+        QueryHistory history = new QueryHistory(file);
+        history.record("favourite", DAY);
+        history.record("favourite", DAY);
+        for (int i = 0; i < 60; i++) {
+            history.record("query " + i, DAY);
+        }
+
+        assertEquals(50, history.top(100, DAY).size());
+        assertEquals("favourite", history.top(1, DAY).get(0));
+        assertTrue(history.top(100, DAY).contains("query 59"));
+    }
+
+}
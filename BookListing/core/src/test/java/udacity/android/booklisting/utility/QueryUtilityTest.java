@@ -0,0 +1,277 @@
+package udacity.android.booklisting.utility;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import udacity.android.booklisting.model.BookDetail;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the retries, hedged requests and circuit breaker
+ * of QueryUtility against a local test server injecting faults.
+ */
+public class QueryUtilityTest {
+
+    private MockWebServer server;
+    private String body;
+
+    @Before
+    public void setUp() throws Exception {
+        Metrics.reset();
+        QueryUtility.getCircuitBreaker().reset();
+        QueryUtility.getScheduler().reset();
+
+        server = new MockWebServer();
+        server.start();
+
+        InputStream in = getClass().getClassLoader().getResourceAsStream("volumes_response.json");
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            body = out.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Metrics.reset();
+        QueryUtility.getCircuitBreaker().reset();
+        QueryUtility.getScheduler().reset();
+        server.shutdown();
+    }
+
+    private String url() {
+        return server.url("/books/v1/volumes?q=android").toString();
+    }
+
+    @Test
+    public void fetch_retriesServerErrors() {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(429));
+        server.enqueue(new MockResponse().setBody(body));
+
+        FetchResult result = QueryUtility.fetch(url(), null, null);
+
+        assertEquals(FetchResult.Status.OK, result.getStatus());
+        assertEquals(4, result.getEntry().getBooks().size());
+        assertEquals(3, result.getAttempts());
+        assertEquals(3, server.getRequestCount());
+        assertEquals(2, Metrics.HTTP_RETRIES.get());
+    }
+
+    @Test
+    public void fetch_retriesDroppedConnections() {
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY).setBody(body));
+        server.enqueue(new MockResponse().setBody(body));
+
+        FetchResult result = QueryUtility.fetch(url(), null, null);
+
+        assertEquals(FetchResult.Status.OK, result.getStatus());
+        assertEquals(2, result.getAttempts());
+    }
+
+    @Test
+    public void fetch_retriesAfterTheTimeAskedFor() {
+        server.enqueue(new MockResponse().setResponseCode(503).setHeader("Retry-After", "0"));
+        server.enqueue(new MockResponse().setBody(body));
+
+        FetchResult result = QueryUtility.fetch(url(), null, null);
+
+        assertEquals(FetchResult.Status.OK, result.getStatus());
+        assertEquals(2, result.getAttempts());
+    }
+
+    @Test
+    public void fetch_givesUpWhenAskedToWaitTooLong() {
+        server.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "120"));
+        server.enqueue(new MockResponse().setBody(body));
+
+        FetchResult result = QueryUtility.fetch(url(), null, null);
+
+        assertEquals(FetchResult.Status.HTTP_ERROR, result.getStatus());
+        assertEquals(120000, result.getRetryAfterMillis());
+        assertEquals(1, result.getAttempts());
+        assertEquals(1, server.getRequestCount());
+        assertEquals(0, Metrics.HTTP_RETRIES.get());
+    }
+
+    @Test
+    public void fetch_doesNotRetryClientErrors() {
+        server.enqueue(new MockResponse().setResponseCode(400));
+
+        FetchResult result = QueryUtility.fetch(url(), null, null);
+
+        assertEquals(FetchResult.Status.HTTP_ERROR, result.getStatus());
+        assertEquals(400, result.getResponseCode());
+        assertFalse(result.isRetryable());
+        assertNull(result.getEntry());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void fetch_givesUpAfterMaxAttempts() {
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setResponseCode(500));
+        }
+
+        FetchResult result = QueryUtility.fetch(url(), null, null);
+
+        assertEquals(FetchResult.Status.HTTP_ERROR, result.getStatus());
+        assertEquals(500, result.getResponseCode());
+        assertEquals(3, result.getAttempts());
+    }
+
+    @Test
+    public void fetch_failsFastWhileCircuitIsOpen() {
+        for (int i = 0; i < 6; i++) {
+            server.enqueue(new MockResponse().setResponseCode(500));
+        }
+
+        // Two failed fetches make five failed tries in a row
+        QueryUtility.fetch(url(), null, null);
+        FetchResult second = QueryUtility.fetch(url(), null, null);
+        assertEquals(5, server.getRequestCount());
+        assertEquals(FetchResult.Status.CIRCUIT_OPEN, second.getStatus());
+
+        FetchResult third = QueryUtility.fetch(url(), null, null);
+
+        assertEquals(FetchResult.Status.CIRCUIT_OPEN, third.getStatus());
+        assertEquals(0, third.getAttempts());
+        assertEquals(5, server.getRequestCount());
+    }
+
+    @Test
+    public void fetch_hedgesSlowRequest() {
+        // Recent fetches took 100 ms
+        for (int i = 0; i < 20; i++) {
+            Metrics.RECENT_FETCH.record(100000);
+        }
+
+        // The first request is not answered until the fetch has returned,
+        // so only the hedged request can have succeeded
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger requests = new AtomicInteger();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                if (requests.getAndIncrement() == 0) {
+                    release.await();
+                }
+                return new MockResponse().setBody(body);
+            }
+        });
+
+        try {
+            FetchResult result = QueryUtility.fetch(url(), null, null);
+
+            assertEquals(FetchResult.Status.OK, result.getStatus());
+            assertEquals(2, result.getAttempts());
+            assertEquals(1, Metrics.HTTP_HEDGES.get());
+            assertEquals(2, requests.get());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void fetch_stopsRetryingWhenCanceled() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setBody(body));
+
+        final HttpClient.Cancellation cancellation = new HttpClient.Cancellation();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // Cancel while backing off before the retry
+                    server.takeRequest();
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                cancellation.cancel();
+            }
+        }).start();
+
+        FetchResult result = QueryUtility.fetch(url(), null, cancellation);
+
+        assertEquals(FetchResult.Status.CANCELED, result.getStatus());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void fetch_returnsEveryItemOfThePage() {
+        // Two editions of one work, which a pager must still count as two items
+        server.enqueue(new MockResponse().setBody("{\"totalItems\":2,\"items\":["
+                + "{\"id\":\"a\",\"volumeInfo\":{\"title\":\"The Hobbit\",\"authors\":[\"J.R.R. Tolkien\"]}},"
+                + "{\"id\":\"b\",\"volumeInfo\":{\"title\":\"Hobbit\",\"authors\":[\"J. R. R. Tolkien\"]}}]}"));
+
+        FetchResult result = QueryUtility.fetch(url(), null, null);
+
+        assertEquals(2, result.getEntry().getBooks().size());
+    }
+
+    @Test
+    public void fetch_reportsInvalidUrl() {
+        assertEquals(FetchResult.Status.INVALID_URL, QueryUtility.fetch("not a url", null, null).getStatus());
+    }
+
+    @Test
+    public void fetchDetail_parsesVolume() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"id\":\"wZcQAwAAQBAJ\",\"volumeInfo\":{"
+                + "\"title\":\"Android Programming\",\"subtitle\":\"The Big Nerd Ranch Guide\","
+                + "\"authors\":[\"Bill Phillips\",\"Chris Stewart\"],\"publisher\":\"Pearson\","
+                + "\"publishedDate\":\"2017-02-10\",\"pageCount\":624,\"description\":\"<b>Learn</b>\","
+                + "\"imageLinks\":{\"thumbnail\":\"http://books.google.com/cover\"}}}"));
+
+        BookDetail detail = QueryUtility.fetchDetail(
+                server.url("/books/v1/volumes/wZcQAwAAQBAJ").toString(), null);
+
+        assertEquals("wZcQAwAAQBAJ", detail.getId());
+        assertEquals("The Big Nerd Ranch Guide", detail.getSubtitle());
+        assertEquals(2, detail.getAuthors().size());
+        assertEquals("Pearson", detail.getPublisher());
+        assertEquals(624, detail.getPageCount());
+        assertEquals("<b>Learn</b>", detail.getDescription());
+        assertEquals("http://books.google.com/cover", detail.getThumbnailUrl());
+        assertNull(detail.getPreviewUrl());
+    }
+
+    @Test
+    public void fetch_waitsInSchedulerLane() {
+        server.enqueue(new MockResponse().setBody(body));
+
+        FetchResult result = QueryUtility.fetch(url(), null, null, RequestScheduler.Priority.BACKGROUND);
+
+        assertEquals(FetchResult.Status.OK, result.getStatus());
+        assertEquals(1, Metrics.SCHEDULER_WAIT.getCount());
+        assertEquals(0, QueryUtility.getScheduler().getActive());
+    }
+
+    @Test
+    public void fetchDetail_isNotRetried() {
+        server.enqueue(new MockResponse().setResponseCode(503));
+
+        assertNull(QueryUtility.fetchDetail(server.url("/books/v1/volumes/missing").toString(), null));
+        assertEquals(1, server.getRequestCount());
+    }
+
+}
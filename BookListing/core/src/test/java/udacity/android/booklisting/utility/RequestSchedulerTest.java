@@ -0,0 +1,155 @@
+package udacity.android.booklisting.utility;
+
+import org.junit.Test;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the RequestScheduler limits and priority lanes.
+ */
+public class RequestSchedulerTest {
+
+    private static final double UNLIMITED_RATE = 1000000;
+
+    @Test
+    public void acquire_capsConcurrentRequests() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler(2, UNLIMITED_RATE, 100);
+        RequestScheduler.Permit first = scheduler.acquire(RequestScheduler.Priority.INTERACTIVE, null);
+        scheduler.acquire(RequestScheduler.Priority.INTERACTIVE, null);
+
+        Waiting third = new Waiting(scheduler, RequestScheduler.Priority.INTERACTIVE, null, null);
+        third.start();
+        awaitQueueDepth(scheduler, 1);
+        assertFalse(third.acquired.await(50, TimeUnit.MILLISECONDS));
+
+        first.close();
+        assertTrue(third.acquired.await(1, TimeUnit.SECONDS));
+        assertEquals(2, scheduler.getActive());
+    }
+
+    @Test
+    public void acquire_letsInteractiveAheadOfWaitingBackground() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler(1, UNLIMITED_RATE, 100);
+        RequestScheduler.Permit busy = scheduler.acquire(RequestScheduler.Priority.INTERACTIVE, null);
+        List<RequestScheduler.Priority> order = Collections.synchronizedList(
+                new ArrayList<RequestScheduler.Priority>());
+
+        Waiting background = new Waiting(scheduler, RequestScheduler.Priority.BACKGROUND, null, order);
+        background.start();
+        awaitQueueDepth(scheduler, 1);
+        Waiting interactive = new Waiting(scheduler, RequestScheduler.Priority.INTERACTIVE, null, order);
+        interactive.start();
+        awaitQueueDepth(scheduler, 2);
+        assertEquals(1, scheduler.getQueueDepth(RequestScheduler.Priority.BACKGROUND));
+
+        busy.close();
+        assertTrue(background.acquired.await(1, TimeUnit.SECONDS));
+        assertEquals(RequestScheduler.Priority.INTERACTIVE, order.get(0));
+        assertEquals(RequestScheduler.Priority.BACKGROUND, order.get(1));
+    }
+
+    @Test
+    public void acquire_keepsAConnectionSpareForInteractive() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler(2, UNLIMITED_RATE, 100);
+        scheduler.acquire(RequestScheduler.Priority.PREFETCH, null);
+
+        Waiting prefetch = new Waiting(scheduler, RequestScheduler.Priority.PREFETCH, null, null);
+        prefetch.start();
+        awaitQueueDepth(scheduler, 1);
+        assertFalse(prefetch.acquired.await(50, TimeUnit.MILLISECONDS));
+
+        // The search is not held up by the waiting prefetch
+        scheduler.acquire(RequestScheduler.Priority.INTERACTIVE, null);
+        assertEquals(2, scheduler.getActive());
+    }
+
+    @Test
+    public void acquire_limitsRateAfterBurst() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler(10, 20, 2);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 6; i++) {
+            scheduler.acquire(RequestScheduler.Priority.INTERACTIVE, null).close();
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Two from the burst, then one every 50 ms
+        assertTrue("Took " + elapsedMillis + " ms", elapsedMillis >= 180);
+    }
+
+    @Test
+    public void acquire_stopsWaitingWhenCanceled() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler(1, UNLIMITED_RATE, 100);
+        scheduler.acquire(RequestScheduler.Priority.INTERACTIVE, null);
+
+        HttpClient.Cancellation cancellation = new HttpClient.Cancellation();
+        Waiting waiting = new Waiting(scheduler, RequestScheduler.Priority.BACKGROUND, cancellation, null);
+        waiting.start();
+        awaitQueueDepth(scheduler, 1);
+
+        cancellation.cancel();
+        waiting.join(1000);
+        assertTrue(waiting.failure instanceof InterruptedIOException);
+        assertEquals(0, scheduler.getQueueDepth());
+        assertEquals(1, scheduler.getActive());
+    }
+
+    @Test(expected = InterruptedIOException.class)
+    public void acquire_refusesCanceledRequest() throws Exception {
+        HttpClient.Cancellation cancellation = new HttpClient.Cancellation();
+        cancellation.cancel();
+        new RequestScheduler(1, UNLIMITED_RATE, 1).acquire(RequestScheduler.Priority.INTERACTIVE, cancellation);
+    }
+
+    private static void awaitQueueDepth(RequestScheduler scheduler, int depth) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (scheduler.getQueueDepth() < depth && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(depth, scheduler.getQueueDepth());
+    }
+
+    /**
+     * Thread that waits for a permit and releases it straight away,
+     * noting the order in which permits were handed out.
+     */
+    private static class Waiting extends Thread {
+        private final RequestScheduler scheduler;
+        private final RequestScheduler.Priority priority;
+        private final HttpClient.Cancellation cancellation;
+        private final List<RequestScheduler.Priority> order;
+        final CountDownLatch acquired = new CountDownLatch(1);
+        volatile Exception failure;
+
+        Waiting(RequestScheduler scheduler, RequestScheduler.Priority priority,
+                HttpClient.Cancellation cancellation, List<RequestScheduler.Priority> order) {
+            this.scheduler = scheduler;
+            this.priority = priority;
+            this.cancellation = cancellation;
+            this.order = order;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                RequestScheduler.Permit permit = scheduler.acquire(priority, cancellation);
+                if (order != null) {
+                    order.add(priority);
+                    permit.close();
+                }
+                acquired.countDown();
+            } catch (Exception e) {
+                failure = e;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,48 @@
+package udacity.android.booklisting.utility;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the WindowedHistogram forgetting old values.
+ */
+public class WindowedHistogramTest {
+
+    // Long enough that only the tests rotate the windows
+    private static final long WINDOW_MILLIS = 3600000;
+
+    @Test
+    public void getValueAtPercentile_keepsValuesForAWindowAfterRotation() {
+        WindowedHistogram histogram = new WindowedHistogram("latency_us", WINDOW_MILLIS);
+        for (int i = 0; i < 20; i++) {
+            histogram.record(1000);
+        }
+        histogram.rotate();
+        histogram.record(10);
+
+        assertEquals(21, histogram.getCount());
+        assertEquals(1000, histogram.getValueAtPercentile(95), 1000 / 32);
+    }
+
+    @Test
+    public void getValueAtPercentile_forgetsValuesAfterTwoRotations() {
+        WindowedHistogram histogram = new WindowedHistogram("latency_us", WINDOW_MILLIS);
+        for (int i = 0; i < 20; i++) {
+            histogram.record(100000);
+        }
+        histogram.rotate();
+        for (int i = 0; i < 5; i++) {
+            histogram.record(10);
+        }
+        histogram.rotate();
+
+        assertEquals(5, histogram.getCount());
+        assertEquals(10, histogram.getValueAtPercentile(95));
+
+        histogram.rotate();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(95));
+    }
+
+}